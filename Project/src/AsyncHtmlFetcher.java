@@ -0,0 +1,435 @@
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fetches HTML without blocking the calling thread, following redirects the
+ * same way as {@link HtmlFetcher#fetch(URL, int)}. Requests go through one
+ * {@link HttpClient}, which keeps connections to each host open and reuses them
+ * for later requests instead of connecting and closing for every page.
+ *
+ * At most a fixed number of pages are fetched at once, from all hosts and from
+ * any one host, and pages of one host can be started a minimum delay apart.
+ * Pages requested beyond that wait in a {@link CrawlFrontier} without holding up
+ * any thread, where hosts take turns so one host with many pages does not hold
+ * up the others. A redirect is followed within the turn of the page that was
+ * first requested.
+ *
+ * Each page is streamed into an {@link HtmlTokenizer}, which decodes the body
+ * as it arrives instead of building the whole page as a string.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see HtmlFetcher
+ */
+public class AsyncHtmlFetcher {
+
+	/** The default number of pages fetched at once. */
+	public static final int DEFAULT_REQUESTS = 16;
+
+	/** The default number of pages fetched at once from one host. */
+	public static final int DEFAULT_HOST_REQUESTS = 4;
+
+	/** How long to wait for a connection. */
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+	/** How long to wait for a response. */
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	/** The client, which holds the pooled connections. */
+	private final HttpClient client;
+
+	/** Pages being fetched and waiting for a turn to be fetched. */
+	private final CrawlFrontier<Fetch<?>> frontier;
+
+	/**
+	 * When the next page is started for a host that waits for its delay, in
+	 * nanoseconds, or 0 if no start is scheduled.
+	 */
+	private long wakeup;
+
+	/** Number of pages fetched, whether they were HTML or not. */
+	private final LongAdder fetched;
+
+	/**
+	 * Creates a fetcher that fetches up to {@link #DEFAULT_REQUESTS} pages at once.
+	 */
+	public AsyncHtmlFetcher() {
+		this(DEFAULT_REQUESTS);
+	}
+
+	/**
+	 * Creates a fetcher that fetches up to {@link #DEFAULT_HOST_REQUESTS} pages
+	 * of a host at once, without any delay.
+	 *
+	 * @param requests the most pages fetched at once
+	 */
+	public AsyncHtmlFetcher(int requests) {
+		this(requests, DEFAULT_HOST_REQUESTS, 0);
+	}
+
+	/**
+	 * Creates a fetcher.
+	 *
+	 * @param requests the most pages fetched at once
+	 * @param perHost  the most pages fetched at once from one host
+	 * @param delay    milliseconds between starting two pages of the same host
+	 */
+	public AsyncHtmlFetcher(int requests, int perHost, long delay) {
+
+		// Redirects are followed here so they count against the same limit as before
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(HttpClient.Redirect.NEVER).connectTimeout(CONNECT_TIMEOUT).build();
+		this.frontier = new CrawlFrontier<>(requests, Math.min(perHost, requests), delay);
+		this.wakeup = 0;
+		this.fetched = new LongAdder();
+	}
+
+	/**
+	 * Fetches a page and writes the HTML to a tokenizer while it arrives, closing
+	 * the tokenizer once the page is done. Only a status code of 200 with an HTML
+	 * content type is read, and redirects are followed while the number of
+	 * redirects is greater than 0. The future completes with the tokenizer, or
+	 * with {@code null} if there was no HTML or the page failed part way, in
+	 * which case the tokenizer may have read part of it.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param tokenizer the tokenizer to write the html to
+	 * @return the future tokenizer, {@code null} if unable to fetch the resource
+	 *         or the resource is not html
+	 */
+	public CompletableFuture<HtmlTokenizer> fetch(URL url, int redirects, HtmlTokenizer tokenizer) {
+
+		return start(new Fetch<>(url, redirects,
+				() -> HttpResponse.BodySubscribers.fromSubscriber(new Decoder(tokenizer), decoder -> tokenizer)));
+	}
+
+	/**
+	 * Queues a page, and starts it right away if its host has a turn.
+	 *
+	 * @param <T>   the type of the result
+	 * @param fetch the page
+	 * @return the future result
+	 */
+	private <T> CompletableFuture<T> start(Fetch<T> fetch) {
+
+		frontier.add(fetch.host, fetch);
+		next();
+		return fetch.result;
+	}
+
+	/**
+	 * Returns the number of hosts pages were requested from.
+	 *
+	 * @return number of hosts
+	 */
+	public int getHosts() {
+		return frontier.getHosts();
+	}
+
+	/**
+	 * Returns the number of pages fetched so far.
+	 *
+	 * @return number of fetched pages
+	 */
+	public long getFetched() {
+		return fetched.sum();
+	}
+
+	/**
+	 * Starts every waiting page whose host has a turn, and schedules another try
+	 * for when a host waiting for its delay is ready.
+	 */
+	private void next() {
+
+		Fetch<?> fetch;
+
+		while ((fetch = frontier.poll()) != null) {
+
+			if (!fetch.send(fetch.url, fetch.redirects)) {
+				// Could not even be requested, so it is done and the turn passes on
+				frontier.done(fetch.host);
+				fetch.result.complete(null);
+			}
+		}
+
+		long wait = frontier.getWait();
+
+		if (wait < 0) {
+			return;
+		}
+
+		long time = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+
+		synchronized (frontier) {
+
+			if (wakeup != 0 && wakeup - time <= 0) {
+				// An earlier try is already scheduled
+				return;
+			}
+
+			wakeup = time;
+		}
+
+		CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS).execute(() -> {
+
+			synchronized (frontier) {
+
+				if (wakeup == time) {
+					wakeup = 0;
+				}
+			}
+
+			next();
+		});
+	}
+
+	/**
+	 * A page being fetched, through any redirects.
+	 *
+	 * @param <T> the type of the result
+	 */
+	private class Fetch<T> {
+
+		/** The url first requested. */
+		private final URL url;
+
+		/** The number of redirects first allowed. */
+		private final int redirects;
+
+		/** The host of the url first requested. */
+		private final String host;
+
+		/** Creates what reads the html once a page with html arrives. */
+		private final Supplier<HttpResponse.BodySubscriber<T>> reader;
+
+		/** Completes with the html, as read. */
+		private final CompletableFuture<T> result;
+
+		/**
+		 * Creates a page to fetch.
+		 *
+		 * @param url       the url to fetch
+		 * @param redirects the number of times to follow redirects
+		 * @param reader    creates what reads the html
+		 */
+		private Fetch(URL url, int redirects, Supplier<HttpResponse.BodySubscriber<T>> reader) {
+
+			this.url = url;
+			this.redirects = redirects;
+			this.host = CrawlFrontier.host(url);
+			this.reader = reader;
+			this.result = new CompletableFuture<>();
+		}
+
+		/**
+		 * Sends a request, and follows a redirect or completes the page once the
+		 * response arrives.
+		 *
+		 * @param current   the url to request
+		 * @param remaining the number of redirects left to follow
+		 * @return True if the request was sent, false if the url cannot be
+		 *         requested
+		 */
+		private boolean send(URL current, int remaining) {
+
+			HttpRequest request;
+
+			try {
+
+				request = HttpRequest.newBuilder(current.toURI()).timeout(REQUEST_TIMEOUT).GET().build();
+
+			} catch (URISyntaxException | IllegalArgumentException e) {
+
+				return false;
+			}
+
+			// Only HTML is read, other bodies are skipped so the connection can be reused
+			client.sendAsync(request, info -> info.statusCode() == 200
+					&& info.headers().firstValue("Content-Type").orElse("").startsWith("text/html")
+							? reader.get()
+							: HttpResponse.BodySubscribers.<T>replacing(null))
+					.whenComplete((response, error) -> {
+
+						if (error != null) {
+
+							complete(null);
+							return;
+						}
+
+						if (response.body() != null) {
+
+							fetched.increment();
+							complete(response.body());
+							return;
+						}
+
+						int status = response.statusCode();
+						String location = response.headers().firstValue("Location").orElse("");
+
+						if (status >= 300 && status <= 399 && !location.isEmpty() && remaining > 0) {
+
+							try {
+
+								if (send(new URL(current, location), remaining - 1)) {
+									return;
+								}
+
+							} catch (MalformedURLException e) {
+								// Not a location that can be followed
+							}
+						}
+
+						// Redirects followed are only counted once they end
+						fetched.increment();
+						complete(null);
+					});
+
+			return true;
+		}
+
+		/**
+		 * Completes the page and lets the next waiting page start.
+		 *
+		 * @param html the html as read, or {@code null}
+		 */
+		private void complete(T html) {
+
+			frontier.done(host);
+			next();
+			result.complete(html);
+		}
+	}
+
+	/**
+	 * Decodes the body of a page as UTF-8 while it arrives and writes it to a
+	 * tokenizer. Bytes of a character split between buffers are kept until the
+	 * rest arrives.
+	 */
+	private static class Decoder implements Flow.Subscriber<List<ByteBuffer>> {
+
+		/** The tokenizer to write to. */
+		private final HtmlTokenizer tokenizer;
+
+		/** The decoder, replacing malformed input the same way as a string. */
+		private final CharsetDecoder decoder;
+
+		/** Bytes not decoded yet. */
+		private ByteBuffer bytes;
+
+		/** Decoded characters not written yet. */
+		private final CharBuffer chars;
+
+		/** The subscription, asked for one list of buffers at a time. */
+		private Flow.Subscription subscription;
+
+		/**
+		 * Creates a decoder.
+		 *
+		 * @param tokenizer the tokenizer to write to
+		 */
+		private Decoder(HtmlTokenizer tokenizer) {
+
+			this.tokenizer = tokenizer;
+			this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.bytes = ByteBuffer.allocate(1 << 14);
+			this.chars = CharBuffer.allocate(1 << 13);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+
+			for (ByteBuffer buffer : buffers) {
+
+				if (bytes.remaining() < buffer.remaining()) {
+
+					ByteBuffer larger = ByteBuffer.allocate(bytes.position() + buffer.remaining());
+					bytes.flip();
+					bytes = larger.put(bytes);
+				}
+
+				bytes.put(buffer);
+				decode(false);
+			}
+
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			// The page completes with null
+		}
+
+		@Override
+		public void onComplete() {
+
+			decode(true);
+
+			while (decoder.flush(chars).isOverflow()) {
+				write();
+			}
+
+			write();
+			tokenizer.close();
+		}
+
+		/**
+		 * Decodes as many of the bytes as possible and writes the characters.
+		 *
+		 * @param end whether no more bytes will arrive
+		 */
+		private void decode(boolean end) {
+
+			bytes.flip();
+
+			CoderResult result;
+
+			do {
+
+				result = decoder.decode(bytes, chars, end);
+				write();
+
+			} while (result.isOverflow());
+
+			bytes.compact();
+		}
+
+		/**
+		 * Writes the decoded characters to the tokenizer.
+		 */
+		private void write() {
+
+			chars.flip();
+			tokenizer.write(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+			chars.clear();
+		}
+	}
+}
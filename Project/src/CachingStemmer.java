@@ -0,0 +1,231 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Stemmer that can be shared by any number of threads. Each thread stems with
+ * its own {@link SnowballStemmer}, since those keep state between calls, and
+ * stems can be remembered in a cache shared by all threads so common words are
+ * only stemmed once.
+ *
+ * The cache holds at most a set number of words, split into stripes by the
+ * hash of the word so threads rarely wait for each other. Each stripe forgets
+ * its least recently used words once it is full, so the cache follows the
+ * vocabulary of the text being stemmed instead of keeping whatever came first.
+ * Looking a word up costs more than stemming it with a fast stemmer, so the
+ * cache is off unless a limit is set; the hit rate shows whether it pays off.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see TextFileStemmer#STEMMER
+ */
+public class CachingStemmer implements Stemmer {
+
+	/** The number of words to remember when caching is turned on. */
+	public static final int DEFAULT_LIMIT = 1 << 16;
+
+	/** Number of stripes of the cache. */
+	private static final int STRIPES = 16;
+
+	/** The stemmer of each thread. */
+	private final ThreadLocal<SnowballStemmer> stemmers;
+
+	/** Stem of each remembered word, split by the hash of the word. */
+	private final Stripe[] stripes;
+
+	/** The most words each stripe remembers, or 0 to not cache. */
+	private volatile int capacity;
+
+	/** Number of words found in the cache. */
+	private final LongAdder hits;
+
+	/** Number of words that had to be stemmed. */
+	private final LongAdder misses;
+
+	/** Number of words forgotten to make room for others. */
+	private final LongAdder evictions;
+
+	/**
+	 * Creates a stemmer for the algorithm that remembers no words until a limit
+	 * is set.
+	 *
+	 * @param algorithm the stemming algorithm
+	 *
+	 * @see #setLimit(int)
+	 */
+	public CachingStemmer(SnowballStemmer.ALGORITHM algorithm) {
+		this(algorithm, 0);
+	}
+
+	/**
+	 * Creates a stemmer for the algorithm.
+	 *
+	 * @param algorithm the stemming algorithm
+	 * @param limit     the most words to remember, or 0 to remember none
+	 */
+	public CachingStemmer(SnowballStemmer.ALGORITHM algorithm, int limit) {
+
+		this.stemmers = ThreadLocal.withInitial(() -> new SnowballStemmer(algorithm));
+		this.stripes = new Stripe[STRIPES];
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+
+		for (int i = 0; i < STRIPES; i++) {
+			this.stripes[i] = new Stripe();
+		}
+
+		setLimit(limit);
+	}
+
+	/**
+	 * Sets the most words to remember. Words beyond a lower limit are forgotten
+	 * as others are added.
+	 *
+	 * @param limit the most words to remember, or 0 to remember none
+	 */
+	public void setLimit(int limit) {
+		this.capacity = (Math.max(limit, 0) + STRIPES - 1) / STRIPES;
+	}
+
+	@Override
+	public String stem(CharSequence word) {
+
+		String key = word.toString();
+		int capacity = this.capacity;
+
+		if (capacity == 0) {
+
+			misses.increment();
+			return stemmers.get().stem(key).toString();
+		}
+
+		Stripe stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+		String stem;
+
+		synchronized (stripe) {
+			stem = stripe.get(key);
+		}
+
+		if (stem != null) {
+
+			hits.increment();
+			return stem;
+		}
+
+		misses.increment();
+		// Stemmed outside the lock, so a word may be stemmed twice by threads at once
+		stem = stemmers.get().stem(key).toString();
+
+		synchronized (stripe) {
+			stripe.put(key, stem, capacity);
+		}
+
+		return stem;
+	}
+
+	/**
+	 * Returns the number of words found in the cache.
+	 *
+	 * @return number of cache hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of words that were not in the cache and had to be
+	 * stemmed.
+	 *
+	 * @return number of cache misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of words forgotten to make room for others.
+	 *
+	 * @return number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the fraction of words found in the cache.
+	 *
+	 * @return the hit rate between 0 and 1, or 0 if nothing was stemmed yet
+	 */
+	public double getHitRate() {
+
+		long found = getHits();
+		long total = found + getMisses();
+		return total == 0 ? 0 : (double) found / total;
+	}
+
+	/**
+	 * Returns the number of words remembered.
+	 *
+	 * @return number of cached words
+	 */
+	public int size() {
+
+		int size = 0;
+
+		for (Stripe stripe : stripes) {
+
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%% hit rate), %d cached, %d evicted", getHits(), getMisses(),
+				getHitRate() * 100, size(), getEvictions());
+	}
+
+	/** One stripe of the cache, in least recently used order. */
+	private class Stripe extends LinkedHashMap<String, String> {
+
+		/** Unused, a stripe is never serialized. */
+		private static final long serialVersionUID = 1L;
+
+		/** Creates an empty stripe that orders words by their last use. */
+		private Stripe() {
+			super(16, 0.75f, true);
+		}
+
+		/**
+		 * Remembers the stem of a word, forgetting the least recently used words
+		 * beyond the capacity.
+		 *
+		 * @param word     the word
+		 * @param stem     the stem of the word
+		 * @param capacity the most words to keep
+		 */
+		private void put(String word, String stem, int capacity) {
+
+			put(word, stem);
+
+			Iterator<String> eldest = keySet().iterator();
+
+			while (size() > capacity) {
+
+				eldest.next();
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+	}
+}
@@ -0,0 +1,326 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Sorted set of word positions stored as variable-byte encoded gaps. Each
+ * position is written as the difference from the previous position using seven
+ * bits per byte, with the high bit set on every byte except the last. Small
+ * gaps between occurrences of a word therefore usually take a single byte.
+ *
+ * Positions are decoded lazily while iterating. The number of positions and
+ * the last position are kept alongside the bytes, so counting matches and
+ * appending in increasing order never decode anything.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see PositionList
+ */
+public class CompressedPositionList extends AbstractSet<Integer> implements Positions {
+
+	/** Shared empty array for new lists. */
+	private static final byte[] EMPTY = new byte[0];
+
+	/** The encoded gaps, only the first {@link #length} bytes are in use. */
+	private byte[] bytes;
+
+	/** Number of bytes in use. */
+	private int length;
+
+	/** Number of positions stored. */
+	private int size;
+
+	/** The largest position stored. */
+	private int last;
+
+	/** Creates an empty compressed position list. */
+	public CompressedPositionList() {
+
+		this.bytes = EMPTY;
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+	}
+
+	@Override
+	public boolean add(int position) {
+
+		if (size == 0 || last < position) {
+			// Positions normally arrive in increasing order
+			append(position);
+			return true;
+		}
+
+		if (contains(position)) {
+
+			return false;
+		}
+
+		int[] array = toIntArray();
+		int index = -(Arrays.binarySearch(array, position) + 1);
+
+		int[] inserted = new int[array.length + 1];
+		System.arraycopy(array, 0, inserted, 0, index);
+		inserted[index] = position;
+		System.arraycopy(array, index, inserted, index + 1, array.length - index);
+
+		encode(inserted, inserted.length);
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	@Override
+	public void addAll(Positions other) {
+
+		if (other.isEmpty()) {
+
+			return;
+		}
+
+		var iterator = other.positions();
+		int first = iterator.nextInt();
+
+		if (size == 0 || last < first) {
+			// Other positions come entirely after this list
+			append(first);
+
+			while (iterator.hasNext()) {
+				append(iterator.nextInt());
+			}
+
+			return;
+		}
+
+		int[] mine = toIntArray();
+		int[] theirs = other.toIntArray();
+		int[] merged = new int[mine.length + theirs.length];
+		int i = 0, j = 0, k = 0;
+
+		while (i < mine.length && j < theirs.length) {
+
+			if (mine[i] < theirs[j]) {
+
+				merged[k++] = mine[i++];
+
+			} else if (mine[i] > theirs[j]) {
+
+				merged[k++] = theirs[j++];
+
+			} else {
+
+				merged[k++] = mine[i++];
+				j++;
+			}
+		}
+
+		while (i < mine.length) {
+			merged[k++] = mine[i++];
+		}
+
+		while (j < theirs.length) {
+			merged[k++] = theirs[j++];
+		}
+
+		encode(merged, k);
+	}
+
+	@Override
+	public boolean contains(int position) {
+
+		if (size == 0 || position > last) {
+
+			return false;
+		}
+
+		var iterator = positions();
+
+		while (iterator.hasNext()) {
+
+			int next = iterator.nextInt();
+
+			if (next >= position) {
+
+				return next == position;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int last() {
+		return last;
+	}
+
+	@Override
+	public boolean isCompressed() {
+		return true;
+	}
+
+	/**
+	 * Returns the number of bytes used by the encoded positions.
+	 *
+	 * @return encoded size in bytes
+	 */
+	public int byteSize() {
+		return length;
+	}
+
+	/**
+	 * Writes the encoded positions in the snapshot format.
+	 *
+	 * @param out the output to write to
+	 * @throws IOException if unable to write
+	 *
+	 * @see IndexSnapshot
+	 */
+	public void write(DataOutput out) throws IOException {
+
+		IndexSnapshot.writeVarInt(out, size);
+		IndexSnapshot.writeVarInt(out, last);
+		IndexSnapshot.writeVarInt(out, length);
+		out.write(bytes, 0, length);
+	}
+
+	/**
+	 * Reads encoded positions written by {@link #write(DataOutput)}. The bytes are
+	 * copied as they are without decoding.
+	 *
+	 * @param in the input to read from
+	 * @return the positions read
+	 * @throws IOException if unable to read
+	 */
+	public static CompressedPositionList read(DataInput in) throws IOException {
+
+		CompressedPositionList list = new CompressedPositionList();
+
+		list.size = IndexSnapshot.readVarInt(in);
+		list.last = IndexSnapshot.readVarInt(in);
+		list.length = IndexSnapshot.readVarInt(in);
+		list.bytes = new byte[list.length];
+		in.readFully(list.bytes);
+
+		return list;
+	}
+
+	/** Releases any unused capacity at the end of the backing array. */
+	public void trimToSize() {
+
+		if (bytes.length > length) {
+
+			bytes = length == 0 ? EMPTY : Arrays.copyOf(bytes, length);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return positions();
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt positions() {
+
+		return new PrimitiveIterator.OfInt() {
+
+			/** Offset of the next byte to decode. */
+			private int offset = 0;
+
+			/** The last position decoded. */
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				return offset < length;
+			}
+
+			@Override
+			public int nextInt() {
+
+				if (!hasNext()) {
+
+					throw new NoSuchElementException();
+				}
+
+				int gap = 0;
+				int shift = 0;
+				byte b;
+
+				do {
+
+					b = bytes[offset++];
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+
+				} while (b < 0);
+
+				position += gap;
+				return position;
+			}
+		};
+	}
+
+	/**
+	 * Appends a position larger than every position already stored.
+	 *
+	 * @param position the position to append
+	 */
+	private void append(int position) {
+
+		int gap = position - last;
+
+		if (bytes.length - length < 5) {
+			// A 32 bit gap never needs more than five bytes
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length + (bytes.length >> 1), length + 5));
+		}
+
+		while ((gap & ~0x7F) != 0) {
+
+			bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+			gap >>>= 7;
+		}
+
+		bytes[length++] = (byte) gap;
+		last = position;
+		size++;
+	}
+
+	/**
+	 * Replaces the contents of this list with the sorted positions.
+	 *
+	 * @param positions sorted positions without duplicates
+	 * @param count     number of positions in use in the array
+	 */
+	private void encode(int[] positions, int count) {
+
+		this.bytes = EMPTY;
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+
+		for (int i = 0; i < count; i++) {
+			append(positions[i]);
+		}
+	}
+}
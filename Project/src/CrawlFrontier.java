@@ -0,0 +1,234 @@
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Decides which waiting page to fetch next so that no host is overloaded. Each
+ * host has its own queue, and hosts take turns: every time a page is taken,
+ * its host moves to the back of the line. A host has at most a fixed number of
+ * pages being fetched at once and waits a minimum delay between starting two
+ * of them, and all hosts together have at most a fixed number being fetched.
+ *
+ * Pages are only handed out and marked done here. Nothing is fetched by the
+ * frontier itself, and it never waits, so a host that is not ready yet reports
+ * how long until it is instead.
+ *
+ * @param <T> the type of the waiting pages
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see AsyncHtmlFetcher
+ */
+public class CrawlFrontier<T> {
+
+	/** The most pages fetched at once from all hosts. */
+	private final int total;
+
+	/** The most pages fetched at once from one host. */
+	private final int perHost;
+
+	/** Nanoseconds between starting two pages of the same host. */
+	private final long delay;
+
+	/** Every host seen, by name. */
+	private final HashMap<String, Host> hosts;
+
+	/** Hosts with waiting pages and room for another, in turn order. */
+	private final ArrayDeque<Host> turns;
+
+	/** Number of pages being fetched from all hosts. */
+	private int active;
+
+	/** Number of pages waiting for all hosts. */
+	private int waiting;
+
+	/**
+	 * Creates an empty frontier.
+	 *
+	 * @param total   the most pages fetched at once from all hosts
+	 * @param perHost the most pages fetched at once from one host
+	 * @param delay   milliseconds between starting two pages of the same host
+	 */
+	public CrawlFrontier(int total, int perHost, long delay) {
+
+		this.total = total;
+		this.perHost = perHost;
+		this.delay = delay * 1_000_000;
+		this.hosts = new HashMap<>();
+		this.turns = new ArrayDeque<>();
+		this.active = 0;
+		this.waiting = 0;
+	}
+
+	/**
+	 * Returns the host of a url that the limits apply to, which is its host name
+	 * and port, so servers on different ports of one machine are separate hosts.
+	 *
+	 * @param url the url
+	 * @return the host
+	 */
+	public static String host(URL url) {
+		return url.getHost().toLowerCase() + ":" + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+	}
+
+	/**
+	 * Adds a page to the back of the queue of its host.
+	 *
+	 * @param host the host of the page
+	 * @param page the page
+	 */
+	public synchronized void add(String host, T page) {
+
+		Host current = hosts.computeIfAbsent(host, name -> new Host());
+
+		current.queue.add(page);
+		waiting++;
+		takeTurn(current);
+	}
+
+	/**
+	 * Takes the next page that may be fetched now, and counts it as being
+	 * fetched until {@link #done(String)} is called for its host.
+	 *
+	 * @return the page, or {@code null} if none may be fetched now
+	 */
+	public synchronized T poll() {
+
+		if (active >= total) {
+
+			return null;
+		}
+
+		long now = System.nanoTime();
+
+		for (int i = turns.size(); i > 0; i--) {
+
+			Host current = turns.poll();
+
+			if (now - current.next < 0) {
+				// Still too soon, so it keeps its turn for later
+				turns.add(current);
+				continue;
+			}
+
+			T page = current.queue.poll();
+
+			waiting--;
+			active++;
+			current.active++;
+			current.next = now + delay;
+			current.queued = false;
+			takeTurn(current);
+			return page;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Marks a page of a host as done, making room for another.
+	 *
+	 * @param host the host of the page
+	 */
+	public synchronized void done(String host) {
+
+		Host current = hosts.get(host);
+
+		active--;
+		current.active--;
+		takeTurn(current);
+	}
+
+	/**
+	 * Returns how long until a host that only waits for its delay is ready.
+	 *
+	 * @return the milliseconds to wait, rounded up, or -1 if no host is waiting
+	 *         for its delay
+	 */
+	public synchronized long getWait() {
+
+		long now = System.nanoTime();
+		long wait = -1;
+
+		for (Host current : turns) {
+
+			long left = current.next - now;
+
+			if (left > 0 && (wait == -1 || left < wait)) {
+				wait = left;
+			}
+		}
+
+		return wait == -1 ? -1 : (wait + 999_999) / 1_000_000;
+	}
+
+	/**
+	 * Returns the number of pages being fetched.
+	 *
+	 * @return number of pages being fetched
+	 */
+	public synchronized int getActive() {
+		return active;
+	}
+
+	/**
+	 * Returns the number of pages waiting to be fetched.
+	 *
+	 * @return number of waiting pages
+	 */
+	public synchronized int getWaiting() {
+		return waiting;
+	}
+
+	/**
+	 * Returns the number of hosts seen.
+	 *
+	 * @return number of hosts
+	 */
+	public synchronized int getHosts() {
+		return hosts.size();
+	}
+
+	/**
+	 * Puts a host at the back of the line if it has a waiting page and room for
+	 * another, and is not in line already.
+	 *
+	 * @param current the host
+	 */
+	private void takeTurn(Host current) {
+
+		if (!current.queued && !current.queue.isEmpty() && current.active < perHost) {
+
+			turns.add(current);
+			current.queued = true;
+		}
+	}
+
+	/** The waiting pages and limits of one host. */
+	private class Host {
+
+		/** The waiting pages, in order. */
+		private final ArrayDeque<T> queue;
+
+		/** Number of pages being fetched. */
+		private int active;
+
+		/** The earliest time another page may start, in nanoseconds. */
+		private long next;
+
+		/** Whether the host is in line for a turn. */
+		private boolean queued;
+
+		/** Creates a host without any pages. */
+		private Host() {
+
+			this.queue = new ArrayDeque<>();
+			this.active = 0;
+			this.next = System.nanoTime();
+			this.queued = false;
+		}
+	}
+}
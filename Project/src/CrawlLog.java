@@ -0,0 +1,280 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the progress of a crawl in an append-only file, so a crawl that is
+ * stopped can be resumed instead of started over. A log holds:
+ *
+ * <pre>
+ * magic, version
+ * records, each one of:
+ *     visited, url         a url was found and counts toward the limit
+ *     indexed, url, words  the page was indexed and its links were visited
+ * </pre>
+ *
+ * Records are buffered and only forced to disk at a checkpoint, which also
+ * saves a snapshot of the index if a path is given for one. Records are always
+ * written in order, so a log cut short by a crash still ends with whole pages:
+ * the links of every indexed page were visited before it. Reading stops at the
+ * first record that is cut short.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see WebCrawler#build(URL, int, CrawlLog)
+ */
+public class CrawlLog implements Closeable {
+
+	/** Marks the start of a crawl log. */
+	public static final int MAGIC = 0x5345434C;
+
+	/** The crawl log format version. */
+	public static final int VERSION = 1;
+
+	/** The default number of pages indexed between two checkpoints. */
+	public static final int DEFAULT_INTERVAL = 1000;
+
+	/** Longest url that always fits in a record, as each character takes at most three bytes. */
+	private static final int MAX_URL = 0xFFFF / 3;
+
+	/** Marks a visited record. */
+	private static final int VISITED = 1;
+
+	/** Marks an indexed record. */
+	private static final int INDEXED = 2;
+
+	/** The file the index snapshot is saved to at a checkpoint, or null. */
+	private final Path snapshot;
+
+	/** Number of pages indexed between two checkpoints. */
+	private final int interval;
+
+	/** The pages read back from the log, in the order they were visited. */
+	private final LinkedHashMap<String, Integer> pages;
+
+	/** The log file, open for appending. */
+	private final FileChannel channel;
+
+	/** The buffered records. */
+	private final DataOutputStream out;
+
+	/** Number of pages indexed since the log was opened. */
+	private int indexed;
+
+	/**
+	 * Opens a crawl log. When resuming, the pages already in the log are read
+	 * back and the log is rewritten with each page once. Otherwise the log is
+	 * started over.
+	 *
+	 * @param path     the log file
+	 * @param snapshot the file to save the index snapshot to at a checkpoint, or
+	 *                 null to only force the log to disk
+	 * @param interval number of pages indexed between two checkpoints
+	 * @param resume   whether to continue the crawl already in the log
+	 * @throws IOException if unable to read or write the log
+	 */
+	public CrawlLog(Path path, Path snapshot, int interval, boolean resume) throws IOException {
+
+		this.snapshot = snapshot;
+		this.interval = interval;
+		this.pages = resume && Files.exists(path) ? read(path) : new LinkedHashMap<>();
+		this.indexed = 0;
+
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (DataOutputStream compacted = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(temp)))) {
+
+			compacted.writeInt(MAGIC);
+			compacted.writeInt(VERSION);
+
+			for (var entry : pages.entrySet()) {
+
+				write(compacted, VISITED, entry.getKey(), -1);
+
+				if (entry.getValue() >= 0) {
+					write(compacted, INDEXED, entry.getKey(), entry.getValue());
+				}
+			}
+		}
+
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+	}
+
+	/**
+	 * Reads the pages of a crawl log, up to the first record cut short.
+	 *
+	 * @param path the log file
+	 * @return the word count of each page by url, in the order they were
+	 *         visited, or -1 for pages that were not indexed
+	 * @throws IOException if unable to read the file or it is not a crawl log
+	 */
+	public static LinkedHashMap<String, Integer> read(Path path) throws IOException {
+
+		LinkedHashMap<String, Integer> pages = new LinkedHashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+			if (in.readInt() != MAGIC) {
+
+				throw new IOException("Not a crawl log.");
+			}
+
+			int version = in.readInt();
+
+			if (version != VERSION) {
+
+				throw new IOException("Unsupported crawl log version: " + version);
+			}
+
+			int kind;
+
+			while ((kind = in.read()) != -1) {
+
+				try {
+
+					if (kind == VISITED) {
+
+						pages.putIfAbsent(in.readUTF(), -1);
+
+					} else if (kind == INDEXED) {
+
+						String url = in.readUTF();
+						pages.put(url, IndexSnapshot.readVarInt(in));
+
+					} else {
+						// Only the end of a log written during a crash can be unreadable
+						break;
+					}
+
+				} catch (EOFException e) {
+					// The last record was cut short
+					break;
+				}
+			}
+
+		} catch (EOFException e) {
+
+			throw new IOException("Truncated crawl log header.", e);
+		}
+
+		return pages;
+	}
+
+	/**
+	 * Returns the pages read back when the log was opened.
+	 *
+	 * @return unmodifiable map of the word count of each page by url, in the
+	 *         order they were visited, or -1 for pages that were not indexed
+	 */
+	public Map<String, Integer> getPages() {
+		return Collections.unmodifiableMap(pages);
+	}
+
+	/**
+	 * Records that a url was found and counts toward the limit.
+	 *
+	 * @param url the url
+	 * @throws IOException if unable to write the log
+	 */
+	public synchronized void addVisited(URL url) throws IOException {
+		write(out, VISITED, url.toString(), -1);
+	}
+
+	/**
+	 * Records that a page was indexed, after all of its links were visited.
+	 *
+	 * @param url   the url of the page
+	 * @param words the number of words of the page
+	 * @return True if a checkpoint is due
+	 * @throws IOException if unable to write the log
+	 */
+	public synchronized boolean addIndexed(URL url, int words) throws IOException {
+
+		write(out, INDEXED, url.toString(), words);
+		indexed++;
+		return interval > 0 && indexed % interval == 0;
+	}
+
+	/**
+	 * Forces the records to disk and saves a snapshot of the index, replacing
+	 * the previous snapshot only once the new one is complete.
+	 *
+	 * @param index the index being built
+	 * @throws IOException if unable to write the log or the snapshot
+	 */
+	public synchronized void checkpoint(InvertedIndexInterface index) throws IOException {
+
+		out.flush();
+		channel.force(false);
+
+		if (snapshot != null) {
+
+			Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+
+			index.save(temp);
+			Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Forces the records to disk and closes the log.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+
+		try {
+
+			out.flush();
+			channel.force(false);
+
+		} finally {
+
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes one record.
+	 *
+	 * @param out   the output to write to
+	 * @param kind  the kind of record
+	 * @param url   the url
+	 * @param words the number of words, only written for indexed records
+	 * @throws IOException if unable to write
+	 */
+	private static void write(DataOutputStream out, int kind, String url, int words) throws IOException {
+
+		if (url.length() > MAX_URL) {
+			// Checked before writing anything, so no record is left half written
+			throw new IOException("Url too long for the crawl log.");
+		}
+
+		out.writeByte(kind);
+		out.writeUTF(url);
+
+		if (kind == INDEXED) {
+			IndexSnapshot.writeVarInt(out, words);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Assigns dense integer IDs to strings in the order they are first added, so
+ * that data keyed by the string can be stored in plain arrays indexed by ID.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ */
+public class Dictionary {
+
+	/** Value returned when a string has no ID. */
+	public static final int MISSING = -1;
+
+	/** Maps each string to its ID. */
+	private final HashMap<String, Integer> ids;
+
+	/** Strings indexed by their ID. */
+	private final ArrayList<String> names;
+
+	/** Creates an empty dictionary. */
+	public Dictionary() {
+
+		this.ids = new HashMap<>();
+		this.names = new ArrayList<>();
+	}
+
+	/**
+	 * Returns the ID of the string, assigning the next free ID if the string has
+	 * not been seen before.
+	 *
+	 * @param name the string to look up
+	 * @return the ID of the string
+	 */
+	public int add(String name) {
+
+		Integer id = ids.get(name);
+
+		if (id == null) {
+
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Removes the string. The string with the last ID takes over the ID of the
+	 * removed string, so the IDs stay dense.
+	 *
+	 * @param name the string to remove
+	 * @return the ID the string had, or {@link #MISSING} if it had none
+	 */
+	public int remove(String name) {
+
+		Integer id = ids.remove(name);
+
+		if (id == null) {
+
+			return MISSING;
+		}
+
+		String last = names.remove(names.size() - 1);
+
+		if (id < names.size()) {
+
+			names.set(id, last);
+			ids.put(last, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Returns the ID of the string without assigning one.
+	 *
+	 * @param name the string to look up
+	 * @return the ID of the string or {@link #MISSING} if it has no ID
+	 */
+	public int find(String name) {
+
+		Integer id = ids.get(name);
+		return id == null ? MISSING : id;
+	}
+
+	/**
+	 * Checks whether the string has an ID.
+	 *
+	 * @param name the string to check
+	 * @return True if the string has an ID
+	 */
+	public boolean contains(String name) {
+		return ids.containsKey(name);
+	}
+
+	/**
+	 * Returns the string assigned to the ID.
+	 *
+	 * @param id the ID to resolve
+	 * @return the string with that ID
+	 */
+	public String get(int id) {
+		return names.get(id);
+	}
+
+	/**
+	 * Returns all strings in ID order.
+	 *
+	 * @return unmodifiable list of strings indexed by ID
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * Returns the number of IDs assigned.
+	 *
+	 * @return the number of strings in the dictionary
+	 */
+	public int size() {
+		return names.size();
+	}
+}
@@ -0,0 +1,437 @@
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps an index up to date with the text files under a directory while it is
+ * being searched. Created, modified and deleted files are picked up from a
+ * {@link WatchService} and re-indexed in the background.
+ *
+ * Changes are debounced: once a change is seen the watcher waits until no more
+ * arrive for a short while, so a burst of changes, or a file written in several
+ * steps, becomes a single update. The changed files are parsed without any lock
+ * and the whole update is then applied with one write. A line with the number
+ * of changes applied and their latency is printed after every update, and an
+ * update that fails is reported and dropped so the watcher keeps going.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see ThreadSafeIndexInterface#replaceLocations(java.util.Collection,
+ *      InvertedIndex)
+ */
+public class DirectoryWatcher implements Closeable {
+
+	/** The default milliseconds without changes before updating. */
+	public static final long DEFAULT_DELAY = 200;
+
+	/** Most times the delay before an update can be extended by new changes. */
+	private static final int MAX_WAITS = 10;
+
+	/** The watched directory. */
+	private final Path root;
+
+	/** The index to keep up to date. */
+	private final ThreadSafeIndexInterface index;
+
+	/** Milliseconds without changes before updating. */
+	private final long delay;
+
+	/** The watch service. */
+	private final WatchService service;
+
+	/** The directory of each watch key. */
+	private final HashMap<WatchKey, Path> directories;
+
+	/** Changed paths not yet updated, with the time each change was first seen. */
+	private final LinkedHashMap<Path, Long> pending;
+
+	/** The thread watching for changes. */
+	private final Thread thread;
+
+	/** Number of updates applied. */
+	private final LongAdder updates;
+
+	/** Number of changed paths applied. */
+	private final LongAdder changes;
+
+	/** Number of updates that failed and were dropped. */
+	private final LongAdder failures;
+
+	/** Total nanoseconds between seeing a change and it becoming searchable. */
+	private final LongAdder totalLatency;
+
+	/** Most nanoseconds between seeing a change and it becoming searchable. */
+	private final AtomicLong maxLatency;
+
+	/**
+	 * Creates a watcher with the default delay.
+	 *
+	 * @param root  the directory to watch
+	 * @param index the index to keep up to date
+	 * @throws IOException if unable to watch the directory
+	 */
+	public DirectoryWatcher(Path root, ThreadSafeIndexInterface index) throws IOException {
+		this(root, index, DEFAULT_DELAY);
+	}
+
+	/**
+	 * Creates a watcher. Nothing is watched until {@link #start()} is called.
+	 *
+	 * @param root  the directory to watch
+	 * @param index the index to keep up to date
+	 * @param delay milliseconds without changes before updating
+	 * @throws IOException if unable to watch the directory
+	 */
+	public DirectoryWatcher(Path root, ThreadSafeIndexInterface index, long delay) throws IOException {
+
+		this.root = root;
+		this.index = index;
+		this.delay = delay;
+		this.service = root.getFileSystem().newWatchService();
+		this.directories = new HashMap<>();
+		this.pending = new LinkedHashMap<>();
+		this.thread = new Thread(this::run, "DirectoryWatcher");
+		this.thread.setDaemon(true);
+		this.updates = new LongAdder();
+		this.changes = new LongAdder();
+		this.failures = new LongAdder();
+		this.totalLatency = new LongAdder();
+		this.maxLatency = new AtomicLong();
+	}
+
+	/**
+	 * Registers every directory under the root and starts watching them. Changes
+	 * made before this call are not picked up.
+	 *
+	 * @throws IOException if unable to watch a directory
+	 */
+	public void start() throws IOException {
+
+		register(root, null);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching. Changes not yet applied are dropped.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		service.close();
+		thread.interrupt();
+	}
+
+	/**
+	 * Watches a directory and every directory under it.
+	 *
+	 * @param directory the directory
+	 * @param found     the list to add the text files found to, or {@code null}
+	 * @throws IOException if unable to watch a directory
+	 */
+	private void register(Path directory, ArrayList<Path> found) throws IOException {
+
+		directories.put(directory.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+
+			for (Path current : stream) {
+
+				if (Files.isDirectory(current)) {
+
+					register(current, found);
+
+				} else if (found != null && IndexBuilder.isTextFile(current)) {
+
+					found.add(current);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects changes until none arrive for the delay and applies them, until
+	 * the watcher is closed.
+	 */
+	private void run() {
+
+		try {
+
+			long first = 0;
+
+			while (true) {
+
+				WatchKey key;
+
+				if (pending.isEmpty()) {
+
+					key = service.take();
+					first = System.nanoTime();
+
+				} else {
+
+					key = service.poll(delay, TimeUnit.MILLISECONDS);
+
+					// Also update if changes keep coming, so they still show up
+					if (key == null || System.nanoTime() - first > TimeUnit.MILLISECONDS.toNanos(delay * MAX_WAITS)) {
+
+						try {
+
+							update();
+							System.out.println("Updated the inverted index: " + this);
+
+						} catch (RuntimeException e) {
+							// Dropped, so the same failure does not repeat forever
+							failures.increment();
+							pending.clear();
+							System.out.println("Unable to update the inverted index: " + e);
+						}
+
+						if (key == null) {
+							continue;
+						}
+
+						first = System.nanoTime();
+					}
+				}
+
+				poll(key);
+			}
+
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Closed
+		}
+	}
+
+	/**
+	 * Adds the changes of a watch key to the pending changes.
+	 *
+	 * @param key the watch key
+	 */
+	private void poll(WatchKey key) {
+
+		Path directory = directories.get(key);
+		long now = System.nanoTime();
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+
+			if (event.kind() == OVERFLOW) {
+				// Changes were lost, so check everything
+				pending.putIfAbsent(root, now);
+				continue;
+			}
+
+			Path path = directory.resolve((Path) event.context());
+
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+				// Files may have been added before the directory is watched
+				ArrayList<Path> found = new ArrayList<>();
+
+				try {
+
+					register(path, found);
+
+				} catch (IOException e) {
+
+					System.out.println("Unable to watch directory: " + path);
+				}
+
+				for (Path file : found) {
+					pending.putIfAbsent(file, now);
+				}
+
+			} else {
+
+				pending.putIfAbsent(path, now);
+			}
+		}
+
+		if (!key.reset()) {
+			// The directory is gone
+			directories.remove(key);
+		}
+	}
+
+	/**
+	 * Re-indexes the pending changes and applies them to the index in one write.
+	 */
+	private void update() {
+
+		ArrayList<String> removed = new ArrayList<>();
+		InvertedIndex added = new InvertedIndex(index.isCompressed());
+
+		for (Path path : pending.keySet()) {
+
+			if (Files.isDirectory(path)) {
+
+				if (path.equals(root)) {
+					// After an overflow, every file might have changed
+					for (String location : index.getLocations()) {
+
+						if (Path.of(location).startsWith(root)) {
+							removed.add(location);
+						}
+					}
+
+					addFiles(path, added);
+				}
+
+			} else if (Files.exists(path)) {
+
+				if (IndexBuilder.isTextFile(path)) {
+
+					removed.add(path.toString());
+					addFile(path, added);
+				}
+
+			} else {
+				// A deleted file, or a deleted directory and everything under it
+				for (String location : index.getLocations()) {
+
+					if (Path.of(location).startsWith(path)) {
+						removed.add(location);
+					}
+				}
+			}
+		}
+
+		index.replaceLocations(removed, added);
+
+		long now = System.nanoTime();
+
+		for (long seen : pending.values()) {
+
+			long latency = now - seen;
+			totalLatency.add(latency);
+			maxLatency.accumulateAndGet(latency, Math::max);
+		}
+
+		updates.increment();
+		changes.add(pending.size());
+		pending.clear();
+	}
+
+	/**
+	 * Indexes every text file under a directory.
+	 *
+	 * @param directory the directory
+	 * @param added     the index to add to
+	 */
+	private static void addFiles(Path directory, InvertedIndex added) {
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+
+			for (Path current : stream) {
+
+				if (Files.isDirectory(current)) {
+
+					addFiles(current, added);
+
+				} else if (IndexBuilder.isTextFile(current)) {
+
+					addFile(current, added);
+				}
+			}
+
+		} catch (IOException e) {
+
+			System.out.println("Unable to read directory: " + directory);
+		}
+	}
+
+	/**
+	 * Indexes a text file. A file that can no longer be read is left out.
+	 *
+	 * @param file  the file
+	 * @param added the index to add to
+	 */
+	private static void addFile(Path file, InvertedIndex added) {
+
+		// Parsed on its own so a file that fails halfway adds nothing
+		InvertedIndex local = new InvertedIndex(added.isCompressed());
+
+		try {
+
+			IndexBuilder.addToIndex(file, local);
+			added.addAll(local);
+
+		} catch (IOException e) {
+
+			System.out.println("Unable to update the inverted index from path: " + file);
+		}
+	}
+
+	/**
+	 * Returns the number of updates applied to the index.
+	 *
+	 * @return number of updates
+	 */
+	public long getUpdates() {
+		return updates.sum();
+	}
+
+	/**
+	 * Returns the number of changed paths applied to the index.
+	 *
+	 * @return number of changes
+	 */
+	public long getChanges() {
+		return changes.sum();
+	}
+
+	/**
+	 * Returns the number of updates that failed and were dropped.
+	 *
+	 * @return number of failed updates
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * Returns the average time between the watcher seeing a change and the change
+	 * becoming searchable.
+	 *
+	 * @return the average latency in milliseconds, or 0 if nothing changed yet
+	 */
+	public double getAverageLatency() {
+
+		long count = getChanges();
+		return count == 0 ? 0 : totalLatency.sum() / 1e6 / count;
+	}
+
+	/**
+	 * Returns the longest time between the watcher seeing a change and the change
+	 * becoming searchable.
+	 *
+	 * @return the longest latency in milliseconds
+	 */
+	public double getMaxLatency() {
+		return maxLatency.get() / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d changes in %d updates (%d failed), latency %.1f ms average, %.1f ms max",
+				getChanges(), getUpdates(), getFailures(), getAverageLatency(), getMaxLatency());
+	}
+}
@@ -1,5 +1,6 @@
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
@@ -28,15 +29,36 @@ public class Driver {
 		ArgumentParser inputArgs = new ArgumentParser(args);
 
 		// Declare objects
-		InvertedIndex index;
-		ThreadSafeInvertedIndex threadSafe = null;
+		InvertedIndexInterface index;
+		ThreadSafeIndexInterface threadSafe = null;
 		IndexBuilder indexBuilder;
 		QueryParserInterface queryParser;
 		WorkQueue queue = null;
 		WebCrawler webCrawler = null;
 
+		boolean spilled = false; // Outputs already merged from runs on disk
 		int threads = 5; // Default number of threads
 		URL seed = null; // Default URL
+		boolean compressed = inputArgs.hasFlag("-compress"); // Store positions compressed
+
+		if (inputArgs.hasFlag("-stemcache")) {
+			// Remember stems of common words, only worth it for slow stemmers
+			int limit = CachingStemmer.DEFAULT_LIMIT;
+
+			try {
+
+				if (inputArgs.hasValue("-stemcache") && Integer.parseInt(inputArgs.getString("-stemcache")) > 0) {
+
+					limit = Integer.parseInt(inputArgs.getString("-stemcache"));
+				}
+
+			} catch (Exception e) {
+
+				System.out.println("Stem cache defaults to " + limit + " words, invalid number of words given.");
+			}
+
+			TextFileStemmer.STEMMER.setLimit(limit);
+		}
 
 		if (inputArgs.hasFlag("-threads") || inputArgs.hasFlag("-url") || inputArgs.hasFlag("-port")) {
 			// Multithreading
@@ -53,19 +75,121 @@ public class Driver {
 			}
 			// Initialize multithreading objects
 			queue = new WorkQueue(threads);
-			threadSafe = new ThreadSafeInvertedIndex();
+
+			if (inputArgs.hasFlag("-shards")) {
+				// Split the index into independently locked shards
+				int shards = ShardedInvertedIndex.DEFAULT_SHARDS;
+
+				try {
+
+					if (inputArgs.hasValue("-shards") && Integer.parseInt(inputArgs.getString("-shards")) > 0) {
+
+						shards = Integer.parseInt(inputArgs.getString("-shards"));
+					}
+
+				} catch (Exception e) {
+
+					System.out.println("Shards default to " + shards + ", invalid number of shards given.");
+				}
+
+				threadSafe = new ShardedInvertedIndex(shards, compressed, queue);
+
+			} else {
+
+				threadSafe = new ThreadSafeInvertedIndex(compressed);
+			}
+
+			// One thread reads files and one adds to the index, the rest parse
+			int[] stages = { 1, threads, 1 };
+
+			if (inputArgs.hasValue("-stages")) {
+				// Threads of each build stage given as readers,parsers,indexers
+				try {
+
+					String[] counts = inputArgs.getString("-stages").split(",");
+
+					for (int i = 0; i < stages.length; i++) {
+
+						stages[i] = Math.max(1, Integer.parseInt(counts[i].strip()));
+					}
+
+				} catch (Exception e) {
+
+					stages = new int[] { 1, threads, 1 };
+					System.out.println("Stages default to 1," + threads + ",1, invalid stages given.");
+				}
+			}
+
 			index = threadSafe;
-			indexBuilder = new MultithreadIndexBuilder(threadSafe, queue);
+			// Optionally index the largest files first so no large file is left for last
+			indexBuilder = new MultithreadIndexBuilder(threadSafe, queue, stages[0], stages[1], stages[2],
+					inputArgs.hasFlag("-largest"));
 			queryParser = new MultithreadQueryParser(threadSafe, queue);
-			webCrawler = new WebCrawler(threadSafe, queue);
+			int requests = AsyncHtmlFetcher.DEFAULT_REQUESTS; // Pages fetched at once
+
+			try {
+
+				if (inputArgs.hasValue("-requests") && Integer.parseInt(inputArgs.getString("-requests")) > 0) {
+
+					requests = Integer.parseInt(inputArgs.getString("-requests"));
+				}
+
+			} catch (NumberFormatException e) {
+
+				System.out.println("Requests default to " + requests + ", invalid number of requests given.");
+			}
+
+			int perHost = AsyncHtmlFetcher.DEFAULT_HOST_REQUESTS; // Pages fetched at once from one host
+
+			try {
+
+				if (inputArgs.hasValue("-perhost") && Integer.parseInt(inputArgs.getString("-perhost")) > 0) {
+
+					perHost = Integer.parseInt(inputArgs.getString("-perhost"));
+				}
+
+			} catch (NumberFormatException e) {
+
+				System.out.println("Requests per host default to " + perHost + ", invalid number given.");
+			}
+
+			long delay = 0; // Milliseconds between pages of one host
+
+			try {
+
+				if (inputArgs.hasValue("-delay") && Long.parseLong(inputArgs.getString("-delay")) > 0) {
+
+					delay = Long.parseLong(inputArgs.getString("-delay"));
+				}
+
+			} catch (NumberFormatException e) {
+
+				System.out.println("Delay defaults to 0, invalid delay given.");
+			}
+
+			webCrawler = new WebCrawler(threadSafe, queue, requests, perHost, delay);
 
 		} else {
 			// Initialize single threading objects
-			index = new InvertedIndex();
+			index = new InvertedIndex(compressed);
 			indexBuilder = new IndexBuilder(index);
 			queryParser = new QueryParser(index);
 		}
 
+		if (inputArgs.hasFlag("-load")) {
+			// Restore a saved index snapshot before building or serving
+			Path path = inputArgs.getPath("-load", Path.of("index.bin"));
+
+			try {
+
+				index.load(path);
+
+			} catch (IOException e) {
+
+				System.out.println("Unable to load the inverted index from path: " + path);
+			}
+		}
+
 		if (inputArgs.hasFlag("-url")) {
 
 			int limit = 0;
@@ -80,19 +204,49 @@ public class Driver {
 				System.out.println("Cannot web crawl.");
 			}
 
-			webCrawler.build(seed, limit);
-		}
+			if (inputArgs.hasFlag("-crawllog")) {
+				// Record the crawl so it can be resumed, checkpointing the index to the -save path
+				Path path = inputArgs.getPath("-crawllog", Path.of("crawl.log"));
+				Path snapshot = inputArgs.hasFlag("-save") ? inputArgs.getPath("-save", Path.of("index.bin")) : null;
+				boolean resume = inputArgs.hasFlag("-resume");
+				int interval = CrawlLog.DEFAULT_INTERVAL; // Pages indexed between checkpoints
 
-		if (inputArgs.hasFlag("-port")) {
+				try {
 
-			try {
+					if (inputArgs.hasValue("-checkpoint") && Integer.parseInt(inputArgs.getString("-checkpoint")) > 0) {
 
-				int PORT = Integer.parseInt(inputArgs.getString("-port", "8080"));
-				SearchServer.start(threadSafe, PORT, threads);
+						interval = Integer.parseInt(inputArgs.getString("-checkpoint"));
+					}
 
-			} catch (Exception e) {
+				} catch (NumberFormatException e) {
 
-				System.out.println("Cannot build search engine web interface");
+					System.out.println("Checkpoints default to every " + interval + " pages, invalid number given.");
+				}
+
+				try (CrawlLog log = new CrawlLog(path, snapshot, interval, resume)) {
+
+					if (resume && snapshot != null && !inputArgs.hasFlag("-load") && Files.exists(snapshot)) {
+						// Pages in the last checkpoint are not fetched again
+						try {
+
+							index.load(snapshot);
+
+						} catch (IOException e) {
+
+							System.out.println("Unable to load the inverted index from path: " + snapshot);
+						}
+					}
+
+					webCrawler.build(seed, limit, log);
+
+				} catch (IOException e) {
+
+					System.out.println("Unable to use the crawl log at path: " + path);
+				}
+
+			} else {
+
+				webCrawler.build(seed, limit);
 			}
 		}
 
@@ -101,10 +255,68 @@ public class Driver {
 			if (inputArgs.hasValue("-path")) {
 
 				Path path = inputArgs.getPath("-path");
+				boolean spill = inputArgs.hasFlag("-spill");
+
+				for (String flag : new String[] { "-load", "-url", "-save", "-port" }) {
+					// These need the whole index in memory, which a spilled build never has
+					if (spill && inputArgs.hasFlag(flag)) {
+
+						System.out.println("Cannot use -spill with " + flag + ", building the index in memory instead.");
+						spill = false;
+					}
+				}
 
 				try {
 
-					indexBuilder.create(path);
+					if (spill) {
+						// Build in bounded memory through sorted runs on disk, then merge into the outputs
+						Path directory = inputArgs.getPath("-spill", Path.of(System.getProperty("java.io.tmpdir")));
+						long budget = SpillingIndexBuilder.DEFAULT_BUDGET;
+
+						try {
+
+							if (inputArgs.hasValue("-budget") && Long.parseLong(inputArgs.getString("-budget")) > 0) {
+								// Budget given in megabytes
+								budget = Long.parseLong(inputArgs.getString("-budget")) << 20;
+							}
+
+						} catch (NumberFormatException e) {
+
+							System.out.println("Budget defaults to " + (budget >> 20) + " MB, invalid budget given.");
+						}
+
+						spilled = true;
+
+						try (SpillingIndexBuilder spilling = new SpillingIndexBuilder(directory, budget, compressed)) {
+
+							spilling.create(path);
+
+							if (inputArgs.hasFlag("-segment") || inputArgs.hasFlag("-query") && !inputArgs.hasFlag("-mmap")) {
+								// Queries search the written segment, as nothing is left in memory
+								spilling.saveSegment(inputArgs.getPath("-segment", Path.of("index.seg")));
+							}
+
+							if (inputArgs.hasFlag("-counts")) {
+								spilling.wordCountsToJson(inputArgs.getPath("-counts", Path.of("counts.json")));
+							}
+
+							if (inputArgs.hasFlag("-index")) {
+								spilling.indexToJson(inputArgs.getPath("-index", Path.of("index.json")));
+							}
+						}
+
+					} else if (inputArgs.hasFlag("-manifest")) {
+						// Only re-index the files changed since the manifest was saved
+						Path manifestPath = inputArgs.getPath("-manifest", Path.of("index.manifest"));
+						Manifest manifest = Files.exists(manifestPath) ? Manifest.load(manifestPath) : new Manifest();
+
+						indexBuilder.update(path, manifest);
+						manifest.save(manifestPath);
+
+					} else {
+
+						indexBuilder.create(path);
+					}
 
 				} catch (IOException e) {
 
@@ -117,7 +329,79 @@ public class Driver {
 			}
 		}
 
-		if (inputArgs.hasFlag("-counts")) {
+		if (inputArgs.hasFlag("-port")) {
+
+			DirectoryWatcher watcher = null;
+
+			if (inputArgs.hasFlag("-watch") && inputArgs.hasValue("-path")) {
+				// Keep the index up to date with the files under the path while serving
+				Path path = inputArgs.getPath("-path");
+
+				try {
+
+					watcher = new DirectoryWatcher(path, threadSafe);
+					watcher.start();
+
+				} catch (IOException e) {
+
+					watcher = null;
+					System.out.println("Unable to watch path: " + path);
+				}
+			}
+
+			try {
+
+				int PORT = Integer.parseInt(inputArgs.getString("-port", "8080"));
+				SearchServer.start(threadSafe, PORT, threads);
+
+			} catch (Exception e) {
+
+				System.out.println("Cannot build search engine web interface");
+			}
+
+			if (watcher != null) {
+				// Stop updating the index once the server is done
+				try {
+
+					watcher.close();
+					System.out.println("Directory watcher: " + watcher);
+
+				} catch (IOException e) {
+
+					System.out.println("Unable to stop watching path: " + inputArgs.getPath("-path"));
+				}
+			}
+		}
+
+		if (inputArgs.hasFlag("-save")) {
+			// Save an index snapshot for -load
+			Path path = inputArgs.getPath("-save", Path.of("index.bin"));
+
+			try {
+
+				index.save(path);
+
+			} catch (IOException e) {
+
+				System.out.println("Unable to save the inverted index to path: " + path);
+			}
+		}
+
+		if (inputArgs.hasFlag("-segment") && !spilled) {
+			// Save a read-only segment for -mmap
+			Path path = inputArgs.getPath("-segment", Path.of("index.seg"));
+
+			try {
+
+				index.saveSegment(path);
+
+			} catch (IOException e) {
+
+				System.out.println("Unable to save the index segment to path: " + path);
+			}
+		}
+
+		if (inputArgs.hasFlag("-counts") && !spilled) {
 
 			Path path = inputArgs.getPath("-counts", Path.of("counts.json"));
 
@@ -138,7 +422,7 @@ public class Driver {
 			}
 		}
 
-		if (inputArgs.hasFlag("-index")) {
+		if (inputArgs.hasFlag("-index") && !spilled) {
 			// Output index
 			Path path = inputArgs.getPath("-index", Path.of("index.json"));
 
@@ -152,6 +436,27 @@ public class Driver {
 			}
 		}
 
+		if (threadSafe != null && inputArgs.hasFlag("-query") && !inputArgs.hasFlag("-watch")) {
+			// The index is done being built, so no read needs to lock any more
+			threadSafe.freeze();
+		}
+
+		if (inputArgs.hasFlag("-mmap") || spilled && inputArgs.hasFlag("-query")) {
+			// Search a memory-mapped segment instead of the index in memory
+			Path path = inputArgs.hasFlag("-mmap") ? inputArgs.getPath("-mmap", Path.of("index.seg"))
+					: inputArgs.getPath("-segment", Path.of("index.seg"));
+
+			try {
+
+				IndexSegment segment = new IndexSegment(path);
+				queryParser = queue != null ? new MultithreadQueryParser(segment, queue) : new QueryParser(segment);
+
+			} catch (IOException e) {
+
+				System.out.println("Unable to open the index segment from path: " + path);
+			}
+		}
+
 		if (inputArgs.hasFlag("-query")) {
 			// Search inverted index
 			if (inputArgs.hasValue("-query")) {
@@ -189,6 +494,22 @@ public class Driver {
 			}
 		}
 
+		if (inputArgs.hasFlag("-stats")) {
+			// Report how the parts of the build performed
+			System.out.println("Stemmer cache: " + TextFileStemmer.STEMMER);
+
+			if (indexBuilder instanceof MultithreadIndexBuilder
+					&& ((MultithreadIndexBuilder) indexBuilder).getPipeline() != null) {
+
+				System.out.print("Build stages:" + System.lineSeparator()
+						+ ((MultithreadIndexBuilder) indexBuilder).getPipeline());
+			}
+
+			if (webCrawler != null && inputArgs.hasFlag("-url")) {
+				System.out.println("Crawl: " + webCrawler);
+			}
+		}
+
 		if (queue != null) {
 			// Shuts down queue if there is a queue
 			queue.shutdown();
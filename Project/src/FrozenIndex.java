@@ -0,0 +1,554 @@
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable, read-optimized copy of an inverted index for searching while or
+ * after the index is built. Terms are kept in a sorted array and the postings
+ * of each term in plain arrays of location IDs and match counts, so searching
+ * only does binary searches and array scans. Since nothing can change after
+ * construction, any number of threads can search without locking.
+ *
+ * A copy can be patched into a new one after the index changes. The postings
+ * are kept by term ID, so the new copy shares the arrays of every word that did
+ * not change, and the words and locations added or removed are merged into the
+ * sorted words and locations of the earlier copy.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see InvertedIndex#freeze()
+ * @see ThreadSafeInvertedIndex
+ */
+public class FrozenIndex implements SearchableIndex {
+
+	/** All words in sorted order. */
+	private final String[] terms;
+
+	/** Term ID of each word, indexed the same as {@link #terms}. */
+	private final int[] ids;
+
+	/** Location IDs of each word, indexed by term ID, or null for a freed ID. */
+	private final int[][] locations;
+
+	/** Number of matches in each location of each word, indexed by term ID. */
+	private final int[][] counts;
+
+	/** Locations indexed by location ID. */
+	private final String[] names;
+
+	/** All locations in sorted order. */
+	private final String[] sortedNames;
+
+	/** Location ID of each location, indexed the same as {@link #sortedNames}. */
+	private final int[] sortedIds;
+
+	/** Word count of each location, indexed by location ID. */
+	private final int[] wordCounts;
+
+	/**
+	 * Copies the contents of an inverted index.
+	 *
+	 * @param locations  the location dictionary
+	 * @param wordCounts the word counts indexed by location ID
+	 * @param terms      the term dictionary in sorted order
+	 * @param index      the postings indexed by term ID
+	 */
+	public FrozenIndex(Dictionary locations, int[] wordCounts, Map<String, Integer> terms, List<Postings> index) {
+		this(null, locations, wordCounts, terms, index, null, null, true);
+	}
+
+	/**
+	 * Copies the contents of an inverted index, sharing what did not change since
+	 * an earlier copy of the same index.
+	 *
+	 * @param previous         the earlier copy, or {@code null} to copy
+	 *                         everything
+	 * @param locations        the location dictionary
+	 * @param wordCounts       the word counts indexed by location ID
+	 * @param terms            the term dictionary in sorted order
+	 * @param index            the postings indexed by term ID
+	 * @param changedTerms     the term IDs whose postings changed since the
+	 *                         earlier copy
+	 * @param changedWords     the words added or removed since then
+	 * @param removedLocations whether locations were removed since then, which
+	 *                         renumbers them
+	 */
+	FrozenIndex(FrozenIndex previous, Dictionary locations, int[] wordCounts, Map<String, Integer> terms,
+			List<Postings> index, BitSet changedTerms, Collection<String> changedWords, boolean removedLocations) {
+
+		if (previous == null || removedLocations) {
+
+			this.names = locations.getNames().toArray(new String[0]);
+			this.sortedNames = new String[this.names.length];
+			this.sortedIds = new int[this.names.length];
+			sortLocations(null, 0);
+
+		} else if (locations.size() == previous.names.length) {
+
+			this.names = previous.names;
+			this.sortedNames = previous.sortedNames;
+			this.sortedIds = previous.sortedIds;
+
+		} else {
+			// New locations only ever take the next IDs
+			this.names = Arrays.copyOf(previous.names, locations.size());
+			this.sortedNames = new String[this.names.length];
+			this.sortedIds = new int[this.names.length];
+
+			for (int id = previous.names.length; id < this.names.length; id++) {
+				this.names[id] = locations.get(id);
+			}
+
+			sortLocations(previous, previous.names.length);
+		}
+
+		this.wordCounts = Arrays.copyOf(wordCounts, this.names.length);
+
+		if (previous == null) {
+
+			this.terms = new String[terms.size()];
+			this.ids = new int[terms.size()];
+			int next = 0;
+
+			for (var entry : terms.entrySet()) {
+
+				this.terms[next] = entry.getKey();
+				this.ids[next] = entry.getValue();
+				next++;
+			}
+
+		} else if (changedWords.isEmpty()) {
+
+			this.terms = previous.terms;
+			this.ids = previous.ids;
+
+		} else {
+
+			this.terms = new String[terms.size()];
+			this.ids = new int[terms.size()];
+			patchTerms(previous, terms, changedWords);
+		}
+
+		if (previous == null) {
+
+			this.locations = new int[index.size()][];
+			this.counts = new int[index.size()][];
+
+			for (int term = 0; term < index.size(); term++) {
+				copy(index, term);
+			}
+
+		} else {
+
+			this.locations = Arrays.copyOf(previous.locations, index.size());
+			this.counts = Arrays.copyOf(previous.counts, index.size());
+
+			for (int term = changedTerms.nextSetBit(0); term >= 0
+					&& term < index.size(); term = changedTerms.nextSetBit(term + 1)) {
+				copy(index, term);
+			}
+		}
+	}
+
+	/**
+	 * Fills in the locations in sorted order, merging the locations from the
+	 * first new ID into the sorted locations of an earlier copy.
+	 *
+	 * @param previous the earlier copy, or {@code null} to sort all locations
+	 * @param first    the first location ID not in the earlier copy
+	 */
+	private void sortLocations(FrozenIndex previous, int first) {
+
+		Integer[] added = new Integer[this.names.length - first];
+
+		for (int i = 0; i < added.length; i++) {
+			added[i] = first + i;
+		}
+
+		Arrays.sort(added, (a, b) -> this.names[a].compareTo(this.names[b]));
+
+		int from = 0; // Next location of the earlier copy
+		int next = 0;
+
+		for (int id : added) {
+
+			int end = previous == null ? 0
+					: -(Arrays.binarySearch(previous.sortedNames, from, previous.sortedNames.length, names[id]) + 1);
+
+			if (end > from) {
+
+				System.arraycopy(previous.sortedNames, from, this.sortedNames, next, end - from);
+				System.arraycopy(previous.sortedIds, from, this.sortedIds, next, end - from);
+				next += end - from;
+				from = end;
+			}
+
+			this.sortedNames[next] = names[id];
+			this.sortedIds[next] = id;
+			next++;
+		}
+
+		if (previous != null) {
+
+			System.arraycopy(previous.sortedNames, from, this.sortedNames, next, previous.sortedNames.length - from);
+			System.arraycopy(previous.sortedIds, from, this.sortedIds, next, previous.sortedIds.length - from);
+		}
+	}
+
+	/**
+	 * Fills in the sorted words by copying the words of an earlier copy in runs,
+	 * and adding or dropping each changed word depending on whether it is still
+	 * in the index. A word keeps its term ID for as long as it is in the index.
+	 *
+	 * @param previous     the earlier copy
+	 * @param terms        the term dictionary
+	 * @param changedWords the words added or removed since the earlier copy
+	 */
+	private void patchTerms(FrozenIndex previous, Map<String, Integer> terms, Collection<String> changedWords) {
+
+		String[] changed = changedWords.toArray(new String[0]);
+		Arrays.sort(changed);
+
+		int from = 0; // Next word of the earlier copy
+		int next = 0;
+
+		for (int i = 0; i < changed.length; i++) {
+
+			if (i > 0 && changed[i].equals(changed[i - 1])) {
+
+				continue;
+			}
+
+			int found = Arrays.binarySearch(previous.terms, from, previous.terms.length, changed[i]);
+			int end = found >= 0 ? found : -(found + 1);
+
+			System.arraycopy(previous.terms, from, this.terms, next, end - from);
+			System.arraycopy(previous.ids, from, this.ids, next, end - from);
+			next += end - from;
+			from = found >= 0 ? found + 1 : end;
+
+			Integer id = terms.get(changed[i]);
+
+			if (id != null) {
+
+				this.terms[next] = changed[i];
+				this.ids[next] = id;
+				next++;
+			}
+		}
+
+		System.arraycopy(previous.terms, from, this.terms, next, previous.terms.length - from);
+		System.arraycopy(previous.ids, from, this.ids, next, previous.ids.length - from);
+	}
+
+	/**
+	 * Copies the postings of one word, or clears them if its term ID is freed.
+	 *
+	 * @param index the postings indexed by term ID
+	 * @param term  the term ID of the word
+	 */
+	private void copy(List<Postings> index, int term) {
+
+		Postings postings = index.get(term);
+
+		if (postings == null) {
+
+			this.locations[term] = null;
+			this.counts[term] = null;
+			return;
+		}
+
+		this.locations[term] = new int[postings.size()];
+		this.counts[term] = new int[postings.size()];
+
+		for (int i = 0; i < postings.size(); i++) {
+
+			this.locations[term][i] = postings.location(i);
+			this.counts[term][i] = postings.positions(i).size();
+		}
+	}
+
+	@Override
+	public ArrayList<InvertedIndex.Result> search(Collection<String> queries, boolean exact, int k) {
+		return exact ? exactSearch(queries, k) : partialSearch(queries, k);
+	}
+
+	/**
+	 * Finds exact search results and returns a list of Result objects.
+	 *
+	 * @param queries the words to query
+	 * @return results the list of Result objects.
+	 */
+	public ArrayList<InvertedIndex.Result> exactSearch(Collection<String> queries) {
+		return exactSearch(queries, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Finds exact search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the list of Result objects.
+	 *
+	 * @see SearchableIndex#top(ArrayList, int)
+	 */
+	public ArrayList<InvertedIndex.Result> exactSearch(Collection<String> queries, int k) {
+
+		ArrayList<InvertedIndex.Result> results = new ArrayList<>();
+		InvertedIndex.Result[] lookup = new InvertedIndex.Result[names.length];
+
+		for (String query : queries) {
+
+			int term = Arrays.binarySearch(terms, query);
+
+			if (term >= 0) {
+
+				searchHelper(results, lookup, ids[term]);
+			}
+		}
+
+		return SearchableIndex.top(results, k);
+	}
+
+	/**
+	 * Finds partial search results and returns a list of Result objects.
+	 *
+	 * @param queries the words to query
+	 * @return results the list of Result objects.
+	 */
+	public ArrayList<InvertedIndex.Result> partialSearch(Collection<String> queries) {
+		return partialSearch(queries, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Finds partial search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the list of Result objects.
+	 *
+	 * @see SearchableIndex#top(ArrayList, int)
+	 */
+	public ArrayList<InvertedIndex.Result> partialSearch(Collection<String> queries, int k) {
+
+		ArrayList<InvertedIndex.Result> results = new ArrayList<>();
+		InvertedIndex.Result[] lookup = new InvertedIndex.Result[names.length];
+
+		for (String query : queries) {
+
+			int term = Arrays.binarySearch(terms, query);
+
+			for (term = term >= 0 ? term : -(term + 1); term < terms.length; term++) {
+
+				if (!terms[term].startsWith(query)) {
+
+					break;
+				}
+
+				searchHelper(results, lookup, ids[term]);
+			}
+		}
+
+		return SearchableIndex.top(results, k);
+	}
+
+	/**
+	 * Checks if given word exists in the index.
+	 *
+	 * @param word the word to check
+	 * @return True if word exists in the index
+	 */
+	public boolean hasWord(String word) {
+		return Arrays.binarySearch(terms, word) >= 0;
+	}
+
+	/**
+	 * Gets the total number of words in the index.
+	 *
+	 * @return total number of words in the index
+	 */
+	public int getTotalWords() {
+		return terms.length;
+	}
+
+	/**
+	 * Gets all words in the index.
+	 *
+	 * @return All words in the index, in sorted order
+	 */
+	public Set<String> getWords() {
+		return new SortedArraySet(terms);
+	}
+
+	/**
+	 * Gets all locations in the index.
+	 *
+	 * @return All locations in the index, in sorted order
+	 */
+	public Set<String> getLocations() {
+		return new SortedArraySet(sortedNames);
+	}
+
+	/**
+	 * Check if there is such location.
+	 *
+	 * @param location file path
+	 * @return True if such location exists
+	 */
+	public boolean hasLocation(String location) {
+		return Arrays.binarySearch(sortedNames, location) >= 0;
+	}
+
+	/**
+	 * Get word counts of a location.
+	 *
+	 * @param location file path
+	 * @return The number of words in that location
+	 */
+	public int getWordCount(String location) {
+
+		int found = Arrays.binarySearch(sortedNames, location);
+		return found < 0 ? 0 : wordCounts[sortedIds[found]];
+	}
+
+	/**
+	 * Gets all word counts of all locations.
+	 *
+	 * @return The number of words in all locations, sorted by location
+	 */
+	public Map<String, Integer> getAllWordCount() {
+
+		TreeMap<String, Integer> all = new TreeMap<>();
+
+		for (int id = 0; id < names.length; id++) {
+
+			all.put(names[id], wordCounts[id]);
+		}
+
+		return Collections.unmodifiableMap(all);
+	}
+
+	/**
+	 * Returns the locations of a word.
+	 *
+	 * @param word the word
+	 * @return the locations of the word in sorted order
+	 */
+	public Set<String> getLocations(String word) {
+
+		int term = Arrays.binarySearch(terms, word);
+
+		if (term < 0) {
+
+			return Collections.emptySet();
+		}
+
+		TreeSet<String> found = new TreeSet<>();
+
+		for (int location : locations[ids[term]]) {
+			found.add(names[location]);
+		}
+
+		return Collections.unmodifiableSet(found);
+	}
+
+	/**
+	 * Checks if the word is in the location.
+	 *
+	 * @param word     the word to check
+	 * @param location the location to check
+	 * @return True if the word is in the location
+	 */
+	public boolean hasLocation(String word, String location) {
+
+		int term = Arrays.binarySearch(terms, word);
+		int found = Arrays.binarySearch(sortedNames, location);
+
+		if (term < 0 || found < 0) {
+
+			return false;
+		}
+
+		for (int id : locations[ids[term]]) {
+
+			if (id == sortedIds[found]) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Loops through locations of the matched word and either creates a new Result
+	 * object or update its count and finally adding to results.
+	 *
+	 * @param results the list of Result objects
+	 * @param lookup  the results indexed by location ID to avoid linear search
+	 * @param term    the term ID of the matched word
+	 */
+	private void searchHelper(ArrayList<InvertedIndex.Result> results, InvertedIndex.Result[] lookup, int term) {
+
+		int[] matched = locations[term];
+		int[] matches = counts[term];
+
+		for (int i = 0; i < matched.length; i++) {
+
+			int location = matched[i];
+
+			if (lookup[location] == null) {
+
+				InvertedIndex.Result result = new InvertedIndex.Result(names[location]);
+
+				results.add(result);
+				lookup[location] = result;
+			}
+
+			lookup[location].updateCount(matches[i], wordCounts[location]);
+		}
+	}
+
+	/** Unmodifiable set backed by a sorted array that is never changed. */
+	private static class SortedArraySet extends AbstractSet<String> {
+
+		/** The elements in sorted order. */
+		private final String[] elements;
+
+		/**
+		 * Creates a set of the elements.
+		 *
+		 * @param elements the elements in sorted order
+		 */
+		private SortedArraySet(String[] elements) {
+			this.elements = elements;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof String && Arrays.binarySearch(elements, (String) o) >= 0;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return Collections.unmodifiableList(Arrays.asList(elements)).iterator();
+		}
+
+		@Override
+		public int size() {
+			return elements.length;
+		}
+	}
+}
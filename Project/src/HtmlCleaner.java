@@ -1,8 +1,24 @@
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
 /**
  * Cleans simple, validating HTML 4/5 into plain text.
+ *
+ * Each kind of removal is a pass that reads the HTML a run of characters at a
+ * time and gives what it keeps to the next pass, so all of them run in one scan
+ * over the HTML without copying it in between. A pass only holds back the characters of a
+ * comment, element, tag or entity that is not closed yet, and lets them through
+ * unchanged if the HTML ends first. The output is the same as that of the
+ * regular expression in the documentation of each method applied in order.
  */
 public class HtmlCleaner {
 
+	/** The elements removed by {@link #stripBlockElements(String)}, in order. */
+	private static final String[] ELEMENTS = { "head", "style", "script", "noscript", "svg" };
+
+	/** Number of characters of the html read at a time. */
+	private static final int BUFFER = 1 << 13;
+
 	/**
 	 * Removes all HTML tags and certain block elements from the provided text.
 	 * The block elements removed include: head, style, script, noscript, and svg.
@@ -11,10 +27,7 @@ public class HtmlCleaner {
 	 * @return text clean of any HTML tags and certain block elements
 	 */
 	public static String stripHtml(String html) {
-		html = stripBlockElements(html);
-		html = stripTags(html);
-		html = stripEntities(html);
-		return html;
+		return strip(html, HtmlCleaner::stripper);
 	}
 
 	/**
@@ -25,50 +38,45 @@ public class HtmlCleaner {
 	 * @return text clean of any comments and certain HTML block elements
 	 */
 	public static String stripBlockElements(String html) {
-		html = stripComments(html);
-		html = stripElement(html, "head");
-		html = stripElement(html, "style");
-		html = stripElement(html, "script");
-		html = stripElement(html, "noscript");
-		html = stripElement(html, "svg");
-		return html;
+		return strip(html, HtmlCleaner::blockStripper);
 	}
 
 	// THE FOLLOWING REPLACE WITH THE EMPTY STRING
 
 	/**
 	 * Replaces all HTML entities with an empty string. For example,
-	 * "2010&ndash;2012" will become "20102012".
+	 * "2010&ndash;2012" will become "20102012". Same as replacing
+	 * {@code &[^\s]*?;}.
 	 *
 	 * @param html text including HTML entities to remove
 	 * @return text without any HTML entities
 	 */
 	public static String stripEntities(String html) {
-		return html.replaceAll("&[^\\s]*?;", "");
+		return strip(html, EntityPass::new);
 	}
 
 	/**
 	 * Replaces all HTML tags with an empty string. For example, "A<b>B</b>C" will
-	 * become "ABC".
+	 * become "ABC". Same as replacing {@code (?si)<.*?>}.
 	 *
 	 * @param html text including HTML tags to remove
 	 * @return text without any HTML tags
 	 */
 	public static String stripTags(String html) {
-		return html.replaceAll("(?si)<.*?>", "");
+		return strip(html, TagPass::new);
 	}
 
 	// THE FOLLOWING REPLACE WITH A SINGLE SPACE
 
 	/**
 	 * Replaces all HTML comments with a single space. For example, "A<!-- B -->C"
-	 * will become "A C".
+	 * will become "A C". Same as replacing {@code (?s)<!--(.*?)-->}.
 	 *
 	 * @param html text including HTML comments to remove
 	 * @return text without any HTML comments
 	 */
 	public static String stripComments(String html) {
-		return html.replaceAll("(?s)<!--(.*?)-->", " ");
+		return strip(html, CommentPass::new);
 	}
 
 	/**
@@ -80,13 +88,538 @@ public class HtmlCleaner {
 	 * </pre>
 	 *
 	 * If removing the "style" element, all of the above code will be removed, and
-	 * replaced with a single space.
+	 * replaced with a single space. Same as replacing
+	 * {@code (?si)<name\b.*?>(.*?)</name>}.
 	 *
 	 * @param html text including HTML elements to remove
 	 * @param name name of the HTML element (like "style" or "script")
 	 * @return text without that HTML element
 	 */
 	public static String stripElement(String html, String name) {
-		return html.replaceAll("(?si)<"+name+"\\b.*?>(.*?)</"+name+">", " ");
+		return strip(html, next -> new ElementPass(name, next));
+	}
+
+	/**
+	 * Creates the passes of {@link #stripHtml(String)}, which can also be given
+	 * HTML as it arrives.
+	 *
+	 * @param output the pass to give the text to
+	 * @return the first pass
+	 */
+	static Pass stripper(Pass output) {
+		return blockStripper(new TagPass(new EntityPass(output)));
+	}
+
+	/**
+	 * Creates the passes of {@link #stripBlockElements(String)}.
+	 *
+	 * @param output the pass to give the text to
+	 * @return the first pass
+	 */
+	private static Pass blockStripper(Pass output) {
+
+		Pass pass = output;
+
+		for (int i = ELEMENTS.length - 1; i >= 0; i--) {
+			pass = new ElementPass(ELEMENTS[i], pass);
+		}
+
+		return new CommentPass(pass);
+	}
+
+	/**
+	 * Runs html through passes.
+	 *
+	 * @param html   the html
+	 * @param passes creates the passes given the pass to give the text to
+	 * @return the text
+	 */
+	private static String strip(String html, UnaryOperator<Pass> passes) {
+
+		StringBuilder text = new StringBuilder(html.length());
+
+		Pass pass = passes.apply(new Pass(null) {
+
+			@Override
+			void write(char[] chars, int start, int end) {
+				text.append(chars, start, end - start);
+			}
+
+			@Override
+			void close() {
+				// Nothing left to give
+			}
+		});
+
+		char[] buffer = new char[Math.min(html.length(), BUFFER)];
+
+		for (int start = 0; start < html.length(); start += buffer.length) {
+
+			int end = Math.min(html.length(), start + buffer.length);
+
+			html.getChars(start, end, buffer, 0);
+			pass.write(buffer, 0, end - start);
+		}
+
+		pass.close();
+		return text.toString();
+	}
+
+	/**
+	 * Lowercases an ASCII letter, the only letters the regular expressions
+	 * ignore the case of.
+	 *
+	 * @param c the character
+	 * @return the lowercase character
+	 */
+	static char lower(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * Checks for a space the way "\s" does in the regular expressions.
+	 *
+	 * @param c the character
+	 * @return True if it is a space
+	 */
+	static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Checks for a word character the way "\b" does in the regular expressions.
+	 *
+	 * @param c the character
+	 * @return True if it is part of a word
+	 */
+	private static boolean isWord(char c) {
+		return c == '_' || Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK;
+	}
+
+	/**
+	 * One step of cleaning, reading characters a run at a time and giving what
+	 * it keeps to the next pass. Runs of characters that cannot start anything
+	 * are given on as they are.
+	 */
+	abstract static class Pass {
+
+		/** The pass to give the kept characters to. */
+		final Pass next;
+
+		/**
+		 * Creates a pass.
+		 *
+		 * @param next the pass to give the kept characters to
+		 */
+		Pass(Pass next) {
+			this.next = next;
+		}
+
+		/**
+		 * Reads the next characters. They are not kept after the call, so the
+		 * array can be reused.
+		 *
+		 * @param chars the array holding the characters
+		 * @param start the first character to read
+		 * @param end   the character after the last to read
+		 */
+		abstract void write(char[] chars, int start, int end);
+
+		/**
+		 * Ends the html, giving anything held back to the next pass.
+		 */
+		abstract void close();
+
+		/**
+		 * Gives characters on up to the next one that may start something.
+		 *
+		 * @param chars the array holding the characters
+		 * @param start the first character to give
+		 * @param end   the character after the last to give
+		 * @param stop  the character that may start something
+		 * @return the position of that character, or the end if there is none
+		 */
+		int skip(char[] chars, int start, int end, char stop) {
+
+			int i = start;
+
+			while (i < end && chars[i] != stop) {
+				i++;
+			}
+
+			if (i > start) {
+				next.write(chars, start, i);
+			}
+
+			return i;
+		}
+	}
+
+	/**
+	 * A pass that holds back characters while they may still be removed. Once a
+	 * match is started it is either removed, or let through as soon as it can no
+	 * longer end. For comments, elements and tags that is only once the html
+	 * ends, and then no later match of the same kind can end either, so nothing
+	 * inside it has to be read again.
+	 */
+	private abstract static class HoldingPass extends Pass {
+
+		/** The replacement of removed comments and elements. */
+		private static final char[] SPACE = { ' ' };
+
+		/** The characters held back. */
+		char[] held;
+
+		/** Number of characters held back. */
+		int size;
+
+		/**
+		 * Creates a pass.
+		 *
+		 * @param next the pass to give the kept characters to
+		 */
+		HoldingPass(Pass next) {
+
+			super(next);
+			this.held = new char[16];
+			this.size = 0;
+		}
+
+		/**
+		 * Holds back a character.
+		 *
+		 * @param c the character
+		 */
+		void hold(char c) {
+
+			if (size == held.length) {
+
+				held = Arrays.copyOf(held, size * 2);
+			}
+
+			held[size++] = c;
+		}
+
+		/**
+		 * Holds back characters.
+		 *
+		 * @param chars the array holding the characters
+		 * @param start the first character to hold
+		 * @param end   the character after the last to hold
+		 */
+		void hold(char[] chars, int start, int end) {
+
+			if (size + end - start > held.length) {
+
+				held = Arrays.copyOf(held, Math.max(size * 2, size + end - start));
+			}
+
+			System.arraycopy(chars, start, held, size, end - start);
+			size += end - start;
+		}
+
+		/**
+		 * Lets the held characters through.
+		 */
+		void release() {
+
+			if (size > 0) {
+
+				next.write(held, 0, size);
+				size = 0;
+			}
+		}
+
+		/**
+		 * Removes the held characters.
+		 *
+		 * @param space whether to give a space instead
+		 */
+		void remove(boolean space) {
+
+			size = 0;
+
+			if (space) {
+				next.write(SPACE, 0, 1);
+			}
+		}
+
+		@Override
+		void close() {
+
+			release();
+			next.close();
+		}
+	}
+
+	/** Replaces comments with a space. */
+	private static class CommentPass extends HoldingPass {
+
+		/**
+		 * Creates a pass.
+		 *
+		 * @param next the pass to give the kept characters to
+		 */
+		CommentPass(Pass next) {
+			super(next);
+		}
+
+		@Override
+		void write(char[] chars, int start, int end) {
+
+			int i = start;
+
+			while (i < end) {
+
+				if (size == 0) {
+
+					i = skip(chars, i, end, '<');
+
+					if (i < end) {
+						hold(chars[i++]);
+					}
+
+				} else if (size < 4) {
+
+					if (chars[i] == "<!--".charAt(size)) {
+
+						hold(chars[i++]);
+
+					} else {
+						// No '<' after the first, so the comment can only start again here
+						release();
+					}
+
+				} else {
+
+					char c = chars[i++];
+					hold(c);
+
+					// The "-->" has to come after the whole "<!--"
+					if (c == '>' && size >= 7 && held[size - 2] == '-' && held[size - 3] == '-') {
+						remove(true);
+					}
+				}
+			}
+		}
+	}
+
+	/** Replaces an element and everything inside it with a space. */
+	private static class ElementPass extends HoldingPass {
+
+		/** The opening of the element, like "<style", lowercase. */
+		private final String opening;
+
+		/** The closing tag of the element, like "</style>", lowercase. */
+		private final String closing;
+
+		/** Whether the name ends with a word character. */
+		private final boolean word;
+
+		/** Whether the opening tag has ended. */
+		private boolean body;
+
+		/** Number of characters of the closing tag matched so far. */
+		private int matched;
+
+		/**
+		 * Creates a pass.
+		 *
+		 * @param name the name of the element
+		 * @param next the pass to give the kept characters to
+		 */
+		ElementPass(String name, Pass next) {
+
+			super(next);
+
+			StringBuilder lowercase = new StringBuilder(name.length());
+
+			for (int i = 0; i < name.length(); i++) {
+				lowercase.append(lower(name.charAt(i)));
+			}
+
+			this.opening = "<" + lowercase;
+			this.closing = "</" + lowercase + ">";
+			this.word = isWord(name.charAt(name.length() - 1));
+		}
+
+		@Override
+		void write(char[] chars, int start, int end) {
+
+			int i = start;
+
+			while (i < end) {
+
+				if (size == 0) {
+
+					i = skip(chars, i, end, '<');
+
+					if (i < end) {
+						hold(chars[i++]);
+					}
+
+				} else if (size < opening.length()) {
+
+					if (lower(chars[i]) == opening.charAt(size)) {
+
+						hold(chars[i++]);
+
+					} else {
+						// No '<' after the first, so the element can only start again here
+						release();
+					}
+
+				} else if (size == opening.length()) {
+
+					if (isWord(chars[i]) != word) {
+						// The name ends at a word boundary
+						body = chars[i] == '>';
+						matched = 0;
+						hold(chars[i++]);
+
+					} else {
+
+						release();
+					}
+
+				} else if (!body) {
+
+					int from = i;
+
+					while (i < end && chars[i] != '>') {
+						i++;
+					}
+
+					if (i < end) {
+
+						body = true;
+						i++;
+					}
+
+					hold(chars, from, i);
+
+				} else {
+
+					char c = chars[i++];
+					hold(c);
+
+					if (lower(c) == closing.charAt(matched)) {
+
+						matched++;
+
+						if (matched == closing.length()) {
+							remove(true);
+						}
+
+					} else {
+						// Only the '<' can start the closing tag again
+						matched = c == '<' ? 1 : 0;
+					}
+				}
+			}
+		}
+	}
+
+	/** Removes tags. */
+	private static class TagPass extends HoldingPass {
+
+		/**
+		 * Creates a pass.
+		 *
+		 * @param next the pass to give the kept characters to
+		 */
+		TagPass(Pass next) {
+			super(next);
+		}
+
+		@Override
+		void write(char[] chars, int start, int end) {
+
+			int i = start;
+
+			while (i < end) {
+
+				if (size == 0) {
+
+					i = skip(chars, i, end, '<');
+
+					if (i < end) {
+						hold(chars[i++]);
+					}
+
+				} else {
+
+					int from = i;
+
+					while (i < end && chars[i] != '>') {
+						i++;
+					}
+
+					if (i < end) {
+						// Never given on, so not copied either
+						remove(false);
+						i++;
+
+					} else {
+
+						hold(chars, from, i);
+					}
+				}
+			}
+		}
+	}
+
+	/** Removes entities. */
+	private static class EntityPass extends HoldingPass {
+
+		/**
+		 * Creates a pass.
+		 *
+		 * @param next the pass to give the kept characters to
+		 */
+		EntityPass(Pass next) {
+			super(next);
+		}
+
+		@Override
+		void write(char[] chars, int start, int end) {
+
+			int i = start;
+
+			while (i < end) {
+
+				if (size == 0) {
+
+					i = skip(chars, i, end, '&');
+
+					if (i < end) {
+						hold(chars[i++]);
+					}
+
+				} else {
+
+					int from = i;
+
+					while (i < end && chars[i] != ';' && !isSpace(chars[i])) {
+						i++;
+					}
+
+					if (i == end) {
+
+						hold(chars, from, i);
+
+					} else if (chars[i] == ';') {
+
+						remove(false);
+						i++;
+
+					} else {
+						// No '&' before the space can start an entity either
+						hold(chars, from, i);
+						release();
+					}
+				}
+			}
+		}
 	}
 }
@@ -0,0 +1,425 @@
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Splits HTML into words and links while it arrives, without keeping the whole
+ * page. Characters are written in chunks and go through the passes of
+ * {@link HtmlCleaner#stripHtml(String)} in one scan, and the remaining text is
+ * given to {@link TextParser} a few thousand characters at a time. Links are
+ * found in the raw HTML at the same time, the same way as
+ * {@link LinkParser#listLinks(java.net.URL, String)}. The words are the same as
+ * those of the whole page cleaned and then parsed.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see HtmlCleaner
+ * @see LinkParser
+ */
+public class HtmlTokenizer {
+
+	/** Number of characters of text collected before they are parsed. */
+	private static final int CHUNK = 1 << 12;
+
+	/** Number of characters read at a time from a string. */
+	private static final int BUFFER = 1 << 13;
+
+	/** A carriage return, normalized. */
+	private static final char[] NEWLINE = { '\n' };
+
+	/** Receives the words, before stemming. */
+	private final Consumer<String> words;
+
+	/** Receives the links as written in the href attributes. */
+	private final Consumer<String> links;
+
+	/** Whether the last character was a carriage return. */
+	private boolean carriage;
+
+	/** The first pass cleaning the html. */
+	private final HtmlCleaner.Pass cleaner;
+
+	/** The text not yet parsed. */
+	private final StringBuilder text;
+
+	/** The words of the text being parsed, reused for every chunk. */
+	private final ArrayList<String> parsed;
+
+	/** Whether no words were found yet. */
+	private boolean first;
+
+	/** Whether space that is not trimmed was seen before the first word. */
+	private boolean spaced;
+
+	/** The anchor tag being read, from its '<'. */
+	private final StringBuilder anchor;
+
+	/** Whether the anchor tag was closed by a '>'. */
+	private boolean closed;
+
+	/** Whether the last raw character was a '<'. */
+	private boolean bracket;
+
+	/**
+	 * Creates a tokenizer for one page.
+	 *
+	 * @param words receives the words, before stemming
+	 * @param links receives the links as written in the href attributes
+	 */
+	public HtmlTokenizer(Consumer<String> words, Consumer<String> links) {
+
+		this.words = words;
+		this.links = links;
+		this.text = new StringBuilder();
+		this.parsed = new ArrayList<>();
+		this.anchor = new StringBuilder();
+		this.first = true;
+		this.cleaner = HtmlCleaner.stripper(new HtmlCleaner.Pass(null) {
+
+			@Override
+			void write(char[] chars, int start, int end) {
+				append(chars, start, end);
+			}
+
+			@Override
+			void close() {
+
+				parse(text.toString());
+				text.setLength(0);
+			}
+		});
+	}
+
+	/**
+	 * Splits HTML into words and links in one call.
+	 *
+	 * @param html  the html
+	 * @param words receives the words, before stemming
+	 * @param links receives the links as written in the href attributes
+	 */
+	public static void tokenize(String html, Consumer<String> words, Consumer<String> links) {
+
+		HtmlTokenizer tokenizer = new HtmlTokenizer(words, links);
+		tokenizer.write(html);
+		tokenizer.close();
+	}
+
+	/**
+	 * Reads the next characters of the page.
+	 *
+	 * @param chars the characters
+	 */
+	public void write(CharSequence chars) {
+
+		char[] buffer = new char[Math.min(chars.length(), BUFFER)];
+
+		for (int start = 0; start < chars.length(); start += buffer.length) {
+
+			int length = Math.min(chars.length() - start, buffer.length);
+
+			for (int i = 0; i < length; i++) {
+				buffer[i] = chars.charAt(start + i);
+			}
+
+			write(buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Reads the next characters of the page.
+	 *
+	 * @param chars  the array holding the characters
+	 * @param offset the first character to read
+	 * @param length the number of characters to read
+	 */
+	public void write(char[] chars, int offset, int length) {
+
+		int end = offset + length;
+		int i = offset;
+
+		// Line breaks are normalized the same way as HtmlFetcher
+		while (i < end) {
+
+			if (carriage) {
+
+				carriage = false;
+
+				if (chars[i] == '\n') {
+
+					i++;
+					continue;
+				}
+			}
+
+			int from = i;
+
+			while (i < end && chars[i] != '\r') {
+				i++;
+			}
+
+			read(chars, from, i);
+
+			if (i < end) {
+
+				read(NEWLINE, 0, 1);
+				carriage = true;
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Ends the page, handling anything never closed and giving the last words
+	 * and links.
+	 */
+	public void close() {
+
+		cleaner.close();
+
+		while (anchor.length() > 0) {
+			endAnchor(true);
+		}
+	}
+
+	/**
+	 * Reads raw characters, with line breaks already normalized.
+	 *
+	 * @param chars the array holding the characters
+	 * @param start the first character to read
+	 * @param end   the character after the last to read
+	 */
+	private void read(char[] chars, int start, int end) {
+
+		if (start == end) {
+			return;
+		}
+
+		cleaner.write(chars, start, end);
+
+		for (int i = start; i < end; i++) {
+			// Most characters cannot be part of an anchor tag
+			if (chars[i] == '<' || bracket || anchor.length() > 0) {
+				link(chars[i]);
+			}
+		}
+	}
+
+	/**
+	 * Adds cleaned text, and parses the text collected so far once it is long
+	 * enough, up to the last character that splits words.
+	 *
+	 * @param chars the array holding the text
+	 * @param start the first character to add
+	 * @param end   the character after the last to add
+	 */
+	private void append(char[] chars, int start, int end) {
+
+		text.append(chars, start, end - start);
+
+		if (text.length() < CHUNK) {
+			return;
+		}
+
+		for (int i = end - 1; i >= start; i--) {
+
+			if (HtmlCleaner.isSpace(chars[i])) {
+
+				int split = text.length() - (end - i);
+
+				parse(text.substring(0, split));
+				text.delete(0, split);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Parses text into words. The words of all the text parsed are the same as
+	 * those of the whole text parsed at once, as long as the text is only split
+	 * before characters that split words.
+	 *
+	 * @param chunk the text
+	 */
+	private void parse(String chunk) {
+
+		parsed.clear();
+		TextParser.parse(chunk, parsed);
+
+		if (first) {
+
+			if (parsed.isEmpty()) {
+				// Only decides whether the whole text starts with an empty word
+				spaced |= !chunk.isBlank() && !TextParser.clean(chunk).isBlank();
+				return;
+			}
+
+			first = false;
+
+			if (spaced && !parsed.get(0).isEmpty()) {
+				words.accept("");
+			}
+
+		} else if (!parsed.isEmpty() && parsed.get(0).isEmpty()) {
+
+			parsed.remove(0);
+		}
+
+		for (String word : parsed) {
+			words.accept(word);
+		}
+	}
+
+	/**
+	 * Reads a raw character for the links. An anchor tag is collected from its
+	 * "<a" until its '>' and then until the quote closing its link.
+	 *
+	 * @param c the character
+	 */
+	private void link(char c) {
+
+		if (anchor.length() == 0) {
+
+			if (bracket && (c == 'a' || c == 'A')) {
+
+				anchor.append('<').append(c);
+				closed = false;
+			}
+
+			bracket = c == '<';
+			return;
+		}
+
+		anchor.append(c);
+
+		if (!closed) {
+
+			if (c == '>') {
+
+				closed = true;
+				endAnchor(false);
+			}
+
+		} else if (c == '"') {
+
+			endAnchor(false);
+		}
+	}
+
+	/**
+	 * Looks for the link of the anchor tag collected so far, the same way the
+	 * regular expression of {@link LinkParser} backtracks. The characters after
+	 * the link are read again, since another anchor tag may start there.
+	 *
+	 * @param end whether the page has ended
+	 */
+	private void endAnchor(boolean end) {
+
+		String tag = anchor.toString();
+		int limit = closed ? tag.indexOf('>') : tag.length();
+		int last = -1; // The opening quote of the last href in the tag
+		int before = -1; // The opening quote of the href before it
+
+		for (int i = indexOfHref(tag, 2); i >= 0 && i < limit; i = indexOfHref(tag, i + 1)) {
+
+			int quote = attributeQuote(tag, i + 4, limit);
+
+			if (quote >= 0) {
+
+				before = last;
+				last = quote;
+			}
+		}
+
+		if (last >= 0 && tag.indexOf('"', last + 1) < 0 && !end) {
+			// The link may still be closed later in the page
+			return;
+		}
+
+		anchor.setLength(0);
+		bracket = false;
+
+		int quote = last >= 0 && tag.indexOf('"', last + 1) >= 0 ? last : before;
+
+		if (quote < 0) {
+			// No link, and no anchor tag starting inside this one has one either
+			if (!closed) {
+				return;
+			}
+
+			replay(tag, limit);
+			return;
+		}
+
+		int close = tag.indexOf('"', quote + 1);
+
+		links.accept(tag.substring(quote + 1, close));
+		replay(tag, close + 1);
+	}
+
+	/**
+	 * Reads the characters of an anchor tag again for the links.
+	 *
+	 * @param tag   the anchor tag
+	 * @param start the first character to read again
+	 */
+	private void replay(String tag, int start) {
+
+		for (int i = start; i < tag.length(); i++) {
+			link(tag.charAt(i));
+		}
+	}
+
+	/**
+	 * Finds the next "href", ignoring ASCII case.
+	 *
+	 * @param tag   the anchor tag
+	 * @param start where to start looking
+	 * @return the position of the "href", or -1 if there is none
+	 */
+	private static int indexOfHref(String tag, int start) {
+
+		for (int i = start; i + 4 <= tag.length(); i++) {
+
+			// No other letters have the same case as those of "href"
+			if (tag.regionMatches(true, i, "href", 0, 4)) {
+
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the quote opening the value of an href, after any spaces, an '=' and
+	 * any spaces again.
+	 *
+	 * @param tag   the anchor tag
+	 * @param start the character after the "href"
+	 * @param limit the end of the anchor tag
+	 * @return the position of the quote, or -1 if it is not an href with a quote
+	 */
+	private static int attributeQuote(String tag, int start, int limit) {
+
+		int i = start;
+
+		while (i < limit && HtmlCleaner.isSpace(tag.charAt(i))) {
+			i++;
+		}
+
+		if (i == limit || tag.charAt(i) != '=') {
+
+			return -1;
+		}
+
+		i++;
+
+		while (i < limit && HtmlCleaner.isSpace(tag.charAt(i))) {
+			i++;
+		}
+
+		return i < limit && tag.charAt(i) == '"' ? i : -1;
+	}
+}
@@ -30,7 +30,7 @@ public class IndexBrowserServlet extends HttpServlet {
 	private static final String TITLE = "Search Engine - Show Index";
 
 	/** The inverted index. */
-	private final ThreadSafeInvertedIndex index;
+	private final ThreadSafeIndexInterface index;
 
 	/** The logger. */
 	private static Logger log = Log.getRootLogger();
@@ -43,7 +43,7 @@ public class IndexBrowserServlet extends HttpServlet {
 	 *
 	 * @param index the inverted index
 	 */
-	public IndexBrowserServlet(ThreadSafeInvertedIndex index) {
+	public IndexBrowserServlet(ThreadSafeIndexInterface index) {
 
 		super();
 		this.index = index;
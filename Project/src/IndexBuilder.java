@@ -4,6 +4,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
@@ -22,14 +27,14 @@ public class IndexBuilder {
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
 
 	/** The inverted index. */
-	private final InvertedIndex index;
+	private final InvertedIndexInterface index;
 
 	/**
 	 * Constructor for the inverted index builder.
 	 *
 	 * @param index the inverted index
 	 */
-	public IndexBuilder(InvertedIndex index) {
+	public IndexBuilder(InvertedIndexInterface index) {
 		this.index = index;
 	}
 
@@ -44,6 +49,103 @@ public class IndexBuilder {
 		traverseDirectory(path);
 	}
 
+	/**
+	 * Brings the inverted index up to date with the text files under the path,
+	 * re-indexing only the files that were added or changed since the manifest
+	 * was last updated and removing the files that were deleted. A file whose
+	 * size and modification time match the manifest is not read at all, and one
+	 * whose content hash matches is not re-indexed. The manifest is updated to
+	 * match.
+	 *
+	 * @param path     the path from the flag "-path"
+	 * @param manifest the manifest of the files already in the index
+	 * @throws IOException if unable to read the path
+	 */
+	public void update(Path path, Manifest manifest) throws IOException {
+
+		ArrayList<Path> files = new ArrayList<>();
+		findTextFiles(path, files);
+
+		HashSet<String> found = new HashSet<>();
+		LinkedHashMap<Path, Manifest.Entry> changed = new LinkedHashMap<>();
+
+		for (Path file : files) {
+
+			String location = file.toString();
+			Manifest.Entry entry = manifest.get(location);
+
+			found.add(location);
+
+			if (entry != null && (entry.getWords() == 0 || index.hasLocation(location))) {
+				// Only trust the manifest for files the index actually has
+				if (entry.isUnchanged(file)) {
+
+					continue;
+				}
+
+				Manifest.Entry current = Manifest.Entry.of(file, entry.getWords());
+
+				if (current.getSize() == entry.getSize() && current.getHash().equals(entry.getHash())) {
+					// Only the modification time changed
+					manifest.put(location, current);
+					continue;
+				}
+
+				changed.put(file, current);
+
+			} else {
+
+				changed.put(file, Manifest.Entry.of(file, 0));
+			}
+		}
+
+		for (String location : new ArrayList<>(manifest.getLocations())) {
+
+			if (!found.contains(location) && Path.of(location).startsWith(path)) {
+				// Deleted since the last update
+				index.removeLocation(location);
+				manifest.remove(location);
+			}
+		}
+
+		for (Path file : changed.keySet()) {
+			index.removeLocation(file.toString());
+		}
+
+		addToIndex(changed.keySet());
+
+		for (var entry : changed.entrySet()) {
+
+			String location = entry.getKey().toString();
+			manifest.put(location, entry.getValue().withWords(index.getWordCount(location)));
+		}
+	}
+
+	/**
+	 * Finds the text files under a path, in the same order they are indexed by
+	 * {@link #create(Path)}.
+	 *
+	 * @param path  the starting path
+	 * @param files the list to add the text files to
+	 * @throws IOException if unable to read a directory
+	 */
+	static void findTextFiles(Path path, ArrayList<Path> files) throws IOException {
+
+		if (Files.isDirectory(path)) {
+
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+
+				for (Path current : stream) {
+					findTextFiles(current, files);
+				}
+			}
+
+		} else if (isTextFile(path)) {
+
+			files.add(path);
+		}
+	}
+
 	/**
 	 * Traverses through directories recursively and adds all words of to index if
 	 * the path is a text file.
@@ -81,10 +183,10 @@ public class IndexBuilder {
 	 * @param index    the inverted index
 	 * @throws IOException
 	 */
-	public static void addToIndex(Path location, InvertedIndex index) throws IOException {
+	public static void addToIndex(Path location, InvertedIndexInterface index) throws IOException {
 
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
 		int iterator = 0;
+		ArrayList<String> words = new ArrayList<>(); // Reused for every line
 
 		try (BufferedReader reader = Files.newBufferedReader(location, StandardCharsets.UTF_8)) {
 
@@ -92,14 +194,60 @@ public class IndexBuilder {
 			String fileName = location.toString();
 
 			while ((line = reader.readLine()) != null) {
+				iterator = addLine(line, fileName, iterator, index, words);
+			}
+		}
+	}
 
-				for (String string : TextParser.parse(line)) {
+	/**
+	 * Parses the lines of a piece of text and adds the words to the inverted
+	 * index, the same way as the lines of a text file.
+	 *
+	 * @param text     the text to parse
+	 * @param location the location of the text
+	 * @param position the position of the word before the text
+	 * @param index    the inverted index
+	 * @return the position of the last word of the text
+	 *
+	 * @see #addToIndex(Path, InvertedIndexInterface)
+	 */
+	public static int addLines(String text, String location, int position, InvertedIndexInterface index) {
 
-					iterator++;
-					index.add(stemmer.stem(string).toString(), fileName, iterator);
-				}
-			}
+		ArrayList<String> words = new ArrayList<>();
+		Iterator<String> lines = text.lines().iterator();
+
+		while (lines.hasNext()) {
+			position = addLine(lines.next(), location, position, index, words);
 		}
+
+		return position;
+	}
+
+	/**
+	 * Parses a line and adds the stemmed words to the inverted index.
+	 *
+	 * @param line     the line to parse
+	 * @param location the location of the line
+	 * @param position the position of the word before the line
+	 * @param index    the inverted index
+	 * @param words    the list to parse the words into
+	 * @return the position of the last word of the line
+	 */
+	static int addLine(String line, String location, int position, InvertedIndexInterface index,
+			ArrayList<String> words) {
+
+		Stemmer stemmer = TextFileStemmer.STEMMER;
+
+		words.clear();
+		TextParser.parse(line, words);
+
+		for (String string : words) {
+
+			position++;
+			index.add(stemmer.stem(string).toString(), location, position);
+		}
+
+		return position;
 	}
 
 	/**
@@ -112,6 +260,19 @@ public class IndexBuilder {
 		addToIndex(location, index);
 	}
 
+	/**
+	 * Parses words in several text files and directly adds to the inverted index.
+	 *
+	 * @param locations the text files
+	 * @throws IOException
+	 */
+	public void addToIndex(Collection<Path> locations) throws IOException {
+
+		for (Path location : locations) {
+			addToIndex(location);
+		}
+	}
+
 	/**
 	 * Checks whether the path is a text file or not.
 	 *
@@ -30,7 +30,7 @@ public class IndexLocationsServlet extends HttpServlet {
 	private static final String TITLE = "Search Engine - Show Index Locations";
 
 	/** The inverted index. */
-	private final ThreadSafeInvertedIndex index;
+	private final ThreadSafeIndexInterface index;
 
 	/** The logger. */
 	private static Logger log = Log.getRootLogger();
@@ -43,7 +43,7 @@ public class IndexLocationsServlet extends HttpServlet {
 	 *
 	 * @param index the inverted index
 	 */
-	public IndexLocationsServlet(ThreadSafeInvertedIndex index) {
+	public IndexLocationsServlet(ThreadSafeIndexInterface index) {
 
 		super();
 		this.index = index;
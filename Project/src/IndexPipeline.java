@@ -0,0 +1,817 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds inverted indexes from text files in three stages that run at the same
+ * time, each with its own threads:
+ *
+ * <ol>
+ * <li>Readers read each file in batches of about {@link #BATCH_SIZE} bytes that
+ * end at line breaks, memory mapping the batches of large files.</li>
+ * <li>Parsers decode, parse and stem each batch into a small index with
+ * positions counted from the start of the batch.</li>
+ * <li>Indexers add the batches of each file in order, shifting positions by the
+ * words in the batches before them, and add each finished file to their own
+ * index.</li>
+ * </ol>
+ *
+ * The stages are connected by bounded queues, so a stage that falls behind
+ * makes the stages before it wait instead of filling up memory. A file that
+ * cannot be read, decoded or indexed adds nothing, and the stages go on with
+ * the next batch. The last thread of a stage to stop always tells the next
+ * stage that its input has ended. Once {@link #finish()} returns, the indexes
+ * of the indexers hold every other file.
+ *
+ * The stages run on their own threads rather than on a {@link WorkQueue}, as
+ * they block on their queues until the end and the directory listing that
+ * feeds them runs on the work queue.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see MultithreadIndexBuilder
+ */
+public class IndexPipeline {
+
+	/** Files are read in batches of about this many bytes. */
+	public static final int BATCH_SIZE = 1 << 22;
+
+	/** The default number of items each queue holds. */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** Marks the end of the files. */
+	private static final Path NO_FILES = Path.of("");
+
+	/** Marks the end of the batches. */
+	private static final Batch END = new Batch(null, -1, null, true);
+
+	/** Whether the indexes store positions compressed. */
+	private final boolean compressed;
+
+	/** Files waiting to be read. */
+	private final BlockingQueue<Path> files;
+
+	/** Batches waiting to be parsed. */
+	private final BlockingQueue<Batch> unparsed;
+
+	/** Batches waiting to be indexed. */
+	private final BlockingQueue<Batch> parsed;
+
+	/** The read stage. */
+	private final Stage readers;
+
+	/** The parse stage. */
+	private final Stage parsers;
+
+	/** The index stage. */
+	private final Stage indexers;
+
+	/** The index of each indexer. */
+	private final InvertedIndex[] indexes;
+
+	/** The threads of all stages. */
+	private final ArrayList<Thread> threads;
+
+	/**
+	 * Creates a pipeline with one reader and one indexer.
+	 *
+	 * @param compressed whether to store positions compressed
+	 * @param parsers    the number of parser threads
+	 */
+	public IndexPipeline(boolean compressed, int parsers) {
+		this(compressed, 1, parsers, 1, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a pipeline.
+	 *
+	 * @param compressed whether to store positions compressed
+	 * @param readers    the number of reader threads
+	 * @param parsers    the number of parser threads
+	 * @param indexers   the number of indexer threads
+	 * @param capacity   the number of items each queue holds
+	 */
+	public IndexPipeline(boolean compressed, int readers, int parsers, int indexers, int capacity) {
+
+		this.compressed = compressed;
+		this.files = new ArrayBlockingQueue<>(capacity);
+		this.unparsed = new ArrayBlockingQueue<>(capacity);
+		this.parsed = new ArrayBlockingQueue<>(capacity);
+		this.indexers = new Stage("index", "words", indexers, parsed, null);
+		this.parsers = new Stage("parse", "words", parsers, unparsed, this.indexers);
+		this.readers = new Stage("read", "bytes", readers, files, this.parsers);
+		this.indexes = new InvertedIndex[indexers];
+		this.threads = new ArrayList<>();
+	}
+
+	/** Starts the threads of every stage. */
+	public void start() {
+
+		long started = System.nanoTime();
+
+		for (Stage stage : getStages()) {
+			stage.started = started;
+		}
+
+		for (int i = 0; i < readers.workers; i++) {
+			start(readers, new Reader(), "reader-" + i);
+		}
+
+		for (int i = 0; i < parsers.workers; i++) {
+			start(parsers, new Parser(), "parser-" + i);
+		}
+
+		for (int i = 0; i < indexers.workers; i++) {
+
+			indexes[i] = new InvertedIndex(compressed);
+			start(indexers, new Indexer(indexes[i]), "indexer-" + i);
+		}
+	}
+
+	/**
+	 * Queues a file to be read, waiting while the queue is full.
+	 *
+	 * @param file the text file
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void add(Path file) throws InterruptedException {
+		readers.put(file);
+	}
+
+	/**
+	 * Waits for every queued file to pass through all stages, and stops the
+	 * threads.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void finish() throws InterruptedException {
+
+		for (int i = 0; i < readers.workers; i++) {
+			readers.put(NO_FILES);
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Returns the index of each indexer. Only complete once {@link #finish()}
+	 * returns.
+	 *
+	 * @return the indexes
+	 */
+	public List<InvertedIndex> getIndexes() {
+		return List.of(indexes);
+	}
+
+	/**
+	 * Returns the statistics of each stage, in order.
+	 *
+	 * @return the stages
+	 */
+	public List<Stage> getStages() {
+		return List.of(readers, parsers, indexers);
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder builder = new StringBuilder();
+
+		for (Stage stage : getStages()) {
+			builder.append(stage).append(System.lineSeparator());
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Starts a thread of a stage. However the thread stops, the stage is told so
+	 * it can end the next stage once its last thread is done.
+	 *
+	 * @param stage  the stage of the thread
+	 * @param worker the work of the thread
+	 * @param name   the name of the thread
+	 */
+	private void start(Stage stage, Worker worker, String name) {
+
+		Thread thread = new Thread(() -> {
+
+			try {
+
+				worker.run();
+
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+
+			} finally {
+
+				stage.stopped();
+			}
+		}, name);
+
+		thread.start();
+		threads.add(thread);
+	}
+
+	/**
+	 * Finds the start of the first line at or after a position. A newline byte is
+	 * never part of a longer UTF-8 character, so the file can be split there.
+	 *
+	 * @param channel  the file
+	 * @param position the position to search from
+	 * @return the position after the next newline, or the file size if there is
+	 *         none
+	 * @throws IOException if unable to read the file
+	 */
+	private static long nextLine(FileChannel channel, long position) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+		while (position > 0 && position < channel.size()) {
+
+			buffer.clear();
+			int read = channel.read(buffer, position - 1);
+
+			if (read <= 0) {
+
+				break;
+			}
+
+			for (int i = 0; i < read; i++) {
+
+				if (buffer.get(i) == '\n') {
+
+					return position + i;
+				}
+			}
+
+			position += read;
+		}
+
+		return Math.min(position, channel.size());
+	}
+
+	/**
+	 * Reads part of a file, memory mapping it if it is a full batch.
+	 *
+	 * @param channel the file
+	 * @param start   the position of the first byte
+	 * @param end     the position after the last byte
+	 * @return the bytes
+	 * @throws IOException if unable to read the file
+	 */
+	private static ByteBuffer readBatch(FileChannel channel, long start, long end) throws IOException {
+
+		if (end - start >= BATCH_SIZE) {
+			// Mapped buffers stay valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+
+		while (buffer.hasRemaining()) {
+
+			if (channel.read(buffer, start + buffer.position()) < 0) {
+
+				throw new IOException("File changed while reading.");
+			}
+		}
+
+		return buffer.flip();
+	}
+
+	/**
+	 * Statistics of one stage of the pipeline and the queue it takes its work
+	 * from.
+	 */
+	public static class Stage {
+
+		/** The name of the stage. */
+		private final String name;
+
+		/** What the stage counts. */
+		private final String unit;
+
+		/** The number of threads. */
+		private final int workers;
+
+		/** The queue of work waiting for the stage. */
+		private final BlockingQueue<?> queue;
+
+		/** The stage that takes the output of this one, or {@code null}. */
+		private final Stage next;
+
+		/** The number of threads still running. */
+		private final AtomicInteger running;
+
+		/** The number of items that failed. */
+		private final LongAdder failures;
+
+		/** The number of items of work done. */
+		private final LongAdder items;
+
+		/** The amount of work done, in {@link #unit}. */
+		private final LongAdder amount;
+
+		/** The most items the queue held at once. */
+		private final AtomicInteger peak;
+
+		/** When the last thread of the stage stopped, or 0 while running. */
+		private volatile long finished;
+
+		/** When the pipeline was started. */
+		private long started;
+
+		/**
+		 * Creates the statistics of a stage.
+		 *
+		 * @param name    the name of the stage
+		 * @param unit    what the stage counts
+		 * @param workers the number of threads
+		 * @param queue   the queue of work waiting for the stage
+		 * @param next    the stage that takes the output of this one, or
+		 *                {@code null}
+		 */
+		private Stage(String name, String unit, int workers, BlockingQueue<?> queue, Stage next) {
+
+			this.name = name;
+			this.unit = unit;
+			this.workers = workers;
+			this.queue = queue;
+			this.next = next;
+			this.running = new AtomicInteger(workers);
+			this.failures = new LongAdder();
+			this.items = new LongAdder();
+			this.amount = new LongAdder();
+			this.peak = new AtomicInteger();
+			this.finished = 0;
+		}
+
+		/**
+		 * Queues an item for the stage, waiting while the queue is full.
+		 *
+		 * @param <T>  the type of item
+		 * @param item the item
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> void put(T item) throws InterruptedException {
+
+			((BlockingQueue<T>) queue).put(item);
+			peak.accumulateAndGet(queue.size(), Math::max);
+		}
+
+		/**
+		 * Counts an item of work done.
+		 *
+		 * @param done the amount of work in the item
+		 */
+		private void done(long done) {
+
+			items.increment();
+			amount.add(done);
+		}
+
+		/**
+		 * Counts an item that failed with an unexpected error.
+		 *
+		 * @param e the error
+		 */
+		private void failed(RuntimeException e) {
+
+			failures.increment();
+			System.out.println("Unable to " + name + " a batch: " + e);
+		}
+
+		/**
+		 * Counts a thread that stopped. Once the last one stops, the stage is done
+		 * and each thread of the next stage is told its input has ended. Every
+		 * thread of the next stage must be told, or {@link IndexPipeline#finish()}
+		 * waits for it forever, so an interrupt only stops the wait for room in the
+		 * queue and is restored once all are told.
+		 */
+		private void stopped() {
+
+			if (running.decrementAndGet() > 0) {
+
+				return;
+			}
+
+			finished = System.nanoTime();
+
+			if (next != null) {
+
+				boolean interrupted = false;
+				int told = 0;
+
+				while (told < next.workers) {
+
+					try {
+
+						next.put(END);
+						told++;
+
+					} catch (InterruptedException e) {
+
+						interrupted = true;
+					}
+				}
+
+				if (interrupted) {
+
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		/**
+		 * Returns the name of the stage.
+		 *
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the number of threads of the stage.
+		 *
+		 * @return the number of threads
+		 */
+		public int getWorkers() {
+			return workers;
+		}
+
+		/**
+		 * Returns the number of files or batches done.
+		 *
+		 * @return the number of items
+		 */
+		public long getItems() {
+			return items.sum();
+		}
+
+		/**
+		 * Returns the number of files or batches that failed with an unexpected
+		 * error and were left out of the index.
+		 *
+		 * @return the number of failures
+		 */
+		public long getFailures() {
+			return failures.sum();
+		}
+
+		/**
+		 * Returns the amount of work done, in bytes for the read stage and in words
+		 * for the others.
+		 *
+		 * @return the amount of work
+		 */
+		public long getAmount() {
+			return amount.sum();
+		}
+
+		/**
+		 * Returns the amount of work done per second since the pipeline started,
+		 * until the stage finished.
+		 *
+		 * @return the throughput
+		 */
+		public double getThroughput() {
+
+			long end = finished == 0 ? System.nanoTime() : finished;
+			return end > started ? getAmount() * 1e9 / (end - started) : 0;
+		}
+
+		/**
+		 * Returns the number of items waiting in the queue of the stage.
+		 *
+		 * @return the queue size
+		 */
+		public int getQueueSize() {
+			return queue.size();
+		}
+
+		/**
+		 * Returns the most items that waited in the queue of the stage at once.
+		 *
+		 * @return the peak queue size
+		 */
+		public int getPeakQueueSize() {
+			return peak.get();
+		}
+
+		/**
+		 * Returns the most items the queue of the stage can hold.
+		 *
+		 * @return the queue capacity
+		 */
+		public int getCapacity() {
+			return queue.size() + queue.remainingCapacity();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d threads, %d items, %d failed, %.0f %s/s, queue %d/%d (peak %d)", name,
+					workers, getItems(), getFailures(), getThroughput(), unit, getQueueSize(), getCapacity(),
+					getPeakQueueSize());
+		}
+	}
+
+	/**
+	 * The work of a thread of a stage, which runs until its input ends.
+	 */
+	@FunctionalInterface
+	private interface Worker {
+
+		/**
+		 * Takes and handles items until the end marker.
+		 *
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		public void run() throws InterruptedException;
+	}
+
+	/**
+	 * A file whose batches are passing through the pipeline.
+	 */
+	private static class FileState {
+
+		/** The location of the file. */
+		private final String location;
+
+		/** Batches parsed out of order, by number. */
+		private final HashMap<Integer, Batch> waiting;
+
+		/** The number of the next batch to add. */
+		private int next;
+
+		/** The number of words in the batches added so far. */
+		private int offset;
+
+		/** The words of the batches added so far. */
+		private InvertedIndex index;
+
+		/** Whether part of the file could not be read or decoded. */
+		private volatile boolean failed;
+
+		/**
+		 * Creates the state of a file.
+		 *
+		 * @param location the location of the file
+		 */
+		private FileState(String location) {
+
+			this.location = location;
+			this.waiting = new HashMap<>();
+			this.next = 0;
+			this.offset = 0;
+			this.index = null;
+			this.failed = false;
+		}
+	}
+
+	/**
+	 * A batch of lines of a file.
+	 */
+	private static class Batch {
+
+		/** The file of the batch. */
+		private final FileState file;
+
+		/** The number of the batch in the file. */
+		private final int number;
+
+		/** Whether this is the last batch of the file. */
+		private final boolean last;
+
+		/** The bytes of the batch, until it is parsed. */
+		private ByteBuffer bytes;
+
+		/** The words of the batch once parsed, or {@code null} if it failed. */
+		private InvertedIndex words;
+
+		/** The number of words in the batch. */
+		private int size;
+
+		/**
+		 * Creates a batch.
+		 *
+		 * @param file   the file of the batch
+		 * @param number the number of the batch in the file
+		 * @param bytes  the bytes of the batch
+		 * @param last   whether this is the last batch of the file
+		 */
+		private Batch(FileState file, int number, ByteBuffer bytes, boolean last) {
+
+			this.file = file;
+			this.number = number;
+			this.bytes = bytes;
+			this.last = last;
+		}
+	}
+
+	/**
+	 * Reads files into batches.
+	 */
+	private class Reader implements Worker {
+
+		@Override
+		public void run() throws InterruptedException {
+
+			Path path;
+
+			while ((path = files.take()) != NO_FILES) {
+				read(path);
+			}
+		}
+
+		/**
+		 * Reads a file and queues its batches. If the file cannot be read, a last
+		 * batch still follows the batches queued so far so the file is dropped.
+		 *
+		 * @param path the text file
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		private void read(Path path) throws InterruptedException {
+
+			FileState file = new FileState(path.toString());
+			int number = 0;
+			boolean last = false;
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+				long size = channel.size();
+				long start = 0;
+
+				do {
+
+					long end = nextLine(channel, Math.min(start + BATCH_SIZE, size));
+					ByteBuffer bytes = readBatch(channel, start, end);
+
+					last = end >= size;
+					parsers.put(new Batch(file, number++, bytes, last));
+					readers.done(end - start);
+					start = end;
+
+				} while (start < size);
+
+			} catch (IOException e) {
+
+				file.failed = true;
+
+			} catch (RuntimeException e) {
+
+				file.failed = true;
+				readers.failed(e);
+			}
+
+			if (file.failed && !last) {
+
+				parsers.put(new Batch(file, number, null, true));
+			}
+		}
+	}
+
+	/**
+	 * Parses batches.
+	 */
+	private class Parser implements Worker {
+
+		@Override
+		public void run() throws InterruptedException {
+
+			Batch batch;
+
+			while ((batch = unparsed.take()) != END) {
+
+				if (batch.bytes != null && !batch.file.failed) {
+
+					try {
+
+						String text = StandardCharsets.UTF_8.newDecoder().decode(batch.bytes).toString();
+
+						batch.words = new InvertedIndex(compressed);
+						batch.size = IndexBuilder.addLines(text, batch.file.location, 0, batch.words);
+						parsers.done(batch.size);
+
+					} catch (IOException e) {
+
+						batch.file.failed = true;
+
+					} catch (RuntimeException e) {
+
+						batch.file.failed = true;
+						parsers.failed(e);
+					}
+				}
+
+				// Failed batches are passed on too, so the file still ends
+				batch.bytes = null;
+				indexers.put(batch);
+			}
+		}
+	}
+
+	/**
+	 * Adds batches to an index in file order.
+	 */
+	private class Indexer implements Worker {
+
+		/** The index of this indexer. */
+		private final InvertedIndex index;
+
+		/**
+		 * Creates an indexer.
+		 *
+		 * @param index the index to add finished files to
+		 */
+		private Indexer(InvertedIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public void run() throws InterruptedException {
+
+			Batch batch;
+
+			while ((batch = parsed.take()) != END) {
+				add(batch);
+			}
+		}
+
+		/**
+		 * Adds a batch and any batches of the same file that were waiting for it.
+		 *
+		 * @param batch the parsed batch
+		 */
+		private void add(Batch batch) {
+
+			FileState file = batch.file;
+
+			synchronized (file) {
+
+				file.waiting.put(batch.number, batch);
+
+				while ((batch = file.waiting.remove(file.next)) != null) {
+
+					file.next++;
+
+					try {
+
+						if (!file.failed && batch.words != null) {
+
+							if (file.index == null) {
+								// The first batch needs no shifting
+								file.index = batch.words;
+
+							} else {
+
+								file.index.addAll(batch.words, file.offset);
+							}
+
+							file.offset += batch.size;
+							indexers.done(batch.size);
+						}
+
+						if (batch.last) {
+
+							if (file.failed) {
+
+								System.out.println("Unable to build index with multithreading.");
+
+							} else if (file.index != null) {
+
+								index.addAll(file.index);
+							}
+
+							file.index = null;
+						}
+
+					} catch (RuntimeException e) {
+
+						file.failed = true;
+						file.index = null;
+						indexers.failed(e);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,621 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only inverted index searched directly over a memory-mapped file, so an
+ * index larger than the heap can be opened almost instantly and paged in by the
+ * operating system as it is searched. A segment file holds:
+ *
+ * <pre>
+ * location names    length and UTF-8 bytes of each location
+ * postings          for each term: number of locations, then for each location
+ *                   its ID followed by its positions in the snapshot format
+ * term bytes        length and UTF-8 bytes of each term
+ * location table    name offset and word count of each location, by location ID
+ * term table        term offset and postings offset of each term, sorted by the
+ *                   UTF-8 bytes of the term
+ * footer            table offsets and sizes, version and magic
+ * </pre>
+ *
+ * Because terms are sorted by their UTF-8 bytes, the terms starting with a
+ * prefix are always next to each other in the term table.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see IndexSnapshot
+ */
+public class IndexSegment implements SearchableIndex {
+
+	/** Marks the end of a segment file. */
+	public static final int MAGIC = 0x53455347;
+
+	/** The segment format version. */
+	public static final int VERSION = 1;
+
+	/** Size of the footer in bytes. */
+	private static final int FOOTER = 8 + 4 + 8 + 4 + 4 + 4;
+
+	/** Size of a location table entry in bytes. */
+	private static final int LOCATION_ENTRY = 8 + 4;
+
+	/** Size of a term table entry in bytes. */
+	private static final int TERM_ENTRY = 8 + 8;
+
+	/** Bits of the file offset addressed within a single mapped chunk. */
+	private static final int CHUNK_BITS = 30;
+
+	/** Mask for the offset within a mapped chunk. */
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	/** The mapped file, in chunks since a single mapping is limited to 2 GB. */
+	private final MappedByteBuffer[] chunks;
+
+	/** Offset of the location table. */
+	private final long locationTable;
+
+	/** Number of locations. */
+	private final int locationCount;
+
+	/** Offset of the term table. */
+	private final long termTable;
+
+	/** Number of terms. */
+	private final int termCount;
+
+	/**
+	 * Opens a segment file by mapping it into memory. Only the footer is read.
+	 *
+	 * @param path the segment file
+	 * @throws IOException if unable to map the file or it is not a segment
+	 */
+	public IndexSegment(Path path) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			long size = channel.size();
+
+			if (size < FOOTER) {
+
+				throw new IOException("Not an index segment: " + path);
+			}
+
+			this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+
+			for (int i = 0; i < chunks.length; i++) {
+
+				long start = (long) i << CHUNK_BITS;
+				long length = Math.min(CHUNK_MASK + 1, size - start);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			}
+
+			long footer = size - FOOTER;
+
+			if (getInt(footer + FOOTER - 4) != MAGIC || getInt(footer + FOOTER - 8) != VERSION) {
+
+				throw new IOException("Not an index segment: " + path);
+			}
+
+			this.locationTable = getLong(footer);
+			this.locationCount = getInt(footer + 8);
+			this.termTable = getLong(footer + 12);
+			this.termCount = getInt(footer + 20);
+		}
+	}
+
+	/**
+	 * Writes the contents of an inverted index as a segment file.
+	 *
+	 * @param path       the segment file to write
+	 * @param locations  the location dictionary
+	 * @param wordCounts the word counts indexed by location ID
+	 * @param terms      the term dictionary
+	 * @param index      the postings indexed by term ID
+	 * @throws IOException if unable to write the file
+	 */
+	public static void write(Path path, Dictionary locations, int[] wordCounts, Map<String, Integer> terms,
+			List<Postings> index) throws IOException {
+
+		ArrayList<String> names = new ArrayList<>(locations.size());
+
+		for (int id = 0; id < locations.size(); id++) {
+			names.add(locations.get(id));
+		}
+
+		Iterator<Map.Entry<String, Postings>> postings = terms.entrySet().stream()
+				.map(entry -> Map.entry(entry.getKey(), index.get(entry.getValue()))).iterator();
+
+		write(path, names, wordCounts, postings);
+	}
+
+	/**
+	 * Writes a segment file from postings given one term at a time, so they do not
+	 * all have to be in memory at once. Only the terms themselves are kept until
+	 * the end to sort the term table.
+	 *
+	 * @param path       the segment file to write
+	 * @param locations  the location names indexed by location ID
+	 * @param wordCounts the word counts indexed by location ID
+	 * @param postings   every term once, in any order, with its postings
+	 * @throws IOException if unable to write the file
+	 */
+	public static void write(Path path, List<String> locations, int[] wordCounts,
+			Iterator<? extends Map.Entry<String, Postings>> postings) throws IOException {
+
+		try (CountingOutputStream counter = new CountingOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path)));
+				DataOutputStream out = new DataOutputStream(counter)) {
+
+			long[] nameOffsets = new long[locations.size()];
+
+			for (int id = 0; id < nameOffsets.length; id++) {
+
+				nameOffsets[id] = counter.count;
+				writeString(out, locations.get(id));
+			}
+
+			ArrayList<byte[]> termBytes = new ArrayList<>();
+			long[] postingsOffsets = new long[16];
+
+			while (postings.hasNext()) {
+
+				var entry = postings.next();
+				Postings current = entry.getValue();
+
+				if (termBytes.size() == postingsOffsets.length) {
+
+					postingsOffsets = Arrays.copyOf(postingsOffsets, postingsOffsets.length * 2);
+				}
+
+				postingsOffsets[termBytes.size()] = counter.count;
+				termBytes.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+				IndexSnapshot.writeVarInt(out, current.size());
+
+				for (int j = 0; j < current.size(); j++) {
+
+					IndexSnapshot.writeVarInt(out, current.location(j));
+					IndexSnapshot.writePositions(out, current.positions(j));
+				}
+			}
+
+			// Terms are stored in UTF-8 byte order so prefixes stay contiguous
+			Integer[] order = new Integer[termBytes.size()];
+
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+
+			Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(termBytes.get(a), termBytes.get(b)));
+
+			long[] termOffsets = new long[order.length];
+
+			for (int i = 0; i < order.length; i++) {
+
+				byte[] bytes = termBytes.get(order[i]);
+
+				termOffsets[i] = counter.count;
+				IndexSnapshot.writeVarInt(out, bytes.length);
+				out.write(bytes);
+			}
+
+			long locationTable = counter.count;
+
+			for (int id = 0; id < nameOffsets.length; id++) {
+
+				out.writeLong(nameOffsets[id]);
+				out.writeInt(wordCounts[id]);
+			}
+
+			long termTable = counter.count;
+
+			for (int i = 0; i < order.length; i++) {
+
+				out.writeLong(termOffsets[i]);
+				out.writeLong(postingsOffsets[order[i]]);
+			}
+
+			out.writeLong(locationTable);
+			out.writeInt(nameOffsets.length);
+			out.writeLong(termTable);
+			out.writeInt(order.length);
+			out.writeInt(VERSION);
+			out.writeInt(MAGIC);
+		}
+	}
+
+	@Override
+	public ArrayList<InvertedIndex.Result> search(Collection<String> queries, boolean exact, int k) {
+		return exact ? exactSearch(queries, k) : partialSearch(queries, k);
+	}
+
+	/**
+	 * Finds exact search results and returns a list of Result objects.
+	 *
+	 * @param queries the words to query
+	 * @return results the list of Result objects.
+	 */
+	public ArrayList<InvertedIndex.Result> exactSearch(Collection<String> queries) {
+		return exactSearch(queries, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Finds exact search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the list of Result objects.
+	 *
+	 * @see SearchableIndex#top(ArrayList, int)
+	 */
+	public ArrayList<InvertedIndex.Result> exactSearch(Collection<String> queries, int k) {
+
+		ArrayList<InvertedIndex.Result> results = new ArrayList<>();
+		InvertedIndex.Result[] lookup = new InvertedIndex.Result[locationCount];
+
+		for (String query : queries) {
+
+			byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+			int term = lowerBound(bytes);
+
+			if (term < termCount && compareTerm(term, bytes, false) == 0) {
+
+				searchHelper(results, lookup, term);
+			}
+		}
+
+		return SearchableIndex.top(results, k);
+	}
+
+	/**
+	 * Finds partial search results and returns a list of Result objects.
+	 *
+	 * @param queries the words to query
+	 * @return results the list of Result objects.
+	 */
+	public ArrayList<InvertedIndex.Result> partialSearch(Collection<String> queries) {
+		return partialSearch(queries, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Finds partial search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the list of Result objects.
+	 *
+	 * @see SearchableIndex#top(ArrayList, int)
+	 */
+	public ArrayList<InvertedIndex.Result> partialSearch(Collection<String> queries, int k) {
+
+		ArrayList<InvertedIndex.Result> results = new ArrayList<>();
+		InvertedIndex.Result[] lookup = new InvertedIndex.Result[locationCount];
+
+		for (String query : queries) {
+
+			byte[] bytes = query.getBytes(StandardCharsets.UTF_8);
+
+			for (int term = lowerBound(bytes); term < termCount; term++) {
+
+				if (compareTerm(term, bytes, true) != 0) {
+
+					break;
+				}
+
+				searchHelper(results, lookup, term);
+			}
+		}
+
+		return SearchableIndex.top(results, k);
+	}
+
+	/**
+	 * Checks if given word exists in the segment.
+	 *
+	 * @param word the word to check
+	 * @return True if word exists in the segment
+	 */
+	public boolean hasWord(String word) {
+
+		byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+		int term = lowerBound(bytes);
+
+		return term < termCount && compareTerm(term, bytes, false) == 0;
+	}
+
+	/**
+	 * Gets the total number of words in the segment.
+	 *
+	 * @return total number of words in the segment
+	 */
+	public int getTotalWords() {
+		return termCount;
+	}
+
+	/**
+	 * Gets the number of locations in the segment.
+	 *
+	 * @return number of locations
+	 */
+	public int getLocationCount() {
+		return locationCount;
+	}
+
+	/**
+	 * Returns the location with the given location ID.
+	 *
+	 * @param location the location ID
+	 * @return the location
+	 */
+	public String getLocation(int location) {
+		return readString(getLong(locationTable + (long) location * LOCATION_ENTRY));
+	}
+
+	/**
+	 * Get word counts of a location.
+	 *
+	 * @param location the location ID
+	 * @return The number of words in that location
+	 */
+	public int getWordCount(int location) {
+		return getInt(locationTable + (long) location * LOCATION_ENTRY + 8);
+	}
+
+	/**
+	 * Reads the postings of a term and adds each location to the results.
+	 *
+	 * @param results the list of Result objects
+	 * @param lookup  the results indexed by location ID to avoid linear search
+	 * @param term    index of the term in the term table
+	 */
+	private void searchHelper(ArrayList<InvertedIndex.Result> results, InvertedIndex.Result[] lookup, int term) {
+
+		Cursor cursor = new Cursor(getLong(termTable + (long) term * TERM_ENTRY + 8));
+		int size = cursor.readVarInt();
+
+		for (int i = 0; i < size; i++) {
+
+			int location = cursor.readVarInt();
+			int count = cursor.readVarInt();
+			cursor.readVarInt(); // last position
+			int length = cursor.readVarInt();
+			cursor.position += length; // skip the encoded positions
+
+			if (lookup[location] == null) {
+
+				InvertedIndex.Result result = new InvertedIndex.Result(getLocation(location));
+
+				results.add(result);
+				lookup[location] = result;
+			}
+
+			lookup[location].updateCount(count, getWordCount(location));
+		}
+	}
+
+	/**
+	 * Finds the first term in the term table that is not less than the bytes.
+	 *
+	 * @param bytes the UTF-8 bytes to search for
+	 * @return index of the first term not less than the bytes
+	 */
+	private int lowerBound(byte[] bytes) {
+
+		int low = 0;
+		int high = termCount;
+
+		while (low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if (compareTerm(middle, bytes, false) < 0) {
+
+				low = middle + 1;
+
+			} else {
+
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Compares a term in the term table with the bytes without decoding it.
+	 *
+	 * @param term   index of the term in the term table
+	 * @param bytes  the UTF-8 bytes to compare with
+	 * @param prefix whether a term starting with the bytes counts as equal
+	 * @return negative, zero, or positive as the term is less than, equal to, or
+	 *         greater than the bytes
+	 */
+	private int compareTerm(int term, byte[] bytes, boolean prefix) {
+
+		Cursor cursor = new Cursor(getLong(termTable + (long) term * TERM_ENTRY));
+		int length = cursor.readVarInt();
+
+		for (int i = 0; i < length && i < bytes.length; i++) {
+
+			int compare = Byte.compareUnsigned(get(cursor.position + i), bytes[i]);
+
+			if (compare != 0) {
+
+				return compare;
+			}
+		}
+
+		if (prefix && length >= bytes.length) {
+
+			return 0;
+		}
+
+		return Integer.compare(length, bytes.length);
+	}
+
+	/**
+	 * Reads a length and UTF-8 bytes as a string.
+	 *
+	 * @param offset the offset of the string
+	 * @return the string
+	 */
+	private String readString(long offset) {
+
+		Cursor cursor = new Cursor(offset);
+		byte[] bytes = new byte[cursor.readVarInt()];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = get(cursor.position + i);
+		}
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a string as a length and UTF-8 bytes.
+	 *
+	 * @param out    the output to write to
+	 * @param string the string to write
+	 * @throws IOException if unable to write
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+		IndexSnapshot.writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a byte of the mapped file.
+	 *
+	 * @param offset offset within the file
+	 * @return the byte
+	 */
+	private byte get(long offset) {
+		return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+	}
+
+	/**
+	 * Reads a big-endian int of the mapped file.
+	 *
+	 * @param offset offset within the file
+	 * @return the int
+	 */
+	private int getInt(long offset) {
+
+		ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+		int index = (int) (offset & CHUNK_MASK);
+
+		if (index + 4 <= chunk.limit()) {
+
+			return chunk.getInt(index);
+		}
+
+		int value = 0;
+
+		for (int i = 0; i < 4; i++) {
+			value = (value << 8) | (get(offset + i) & 0xFF);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Reads a big-endian long of the mapped file.
+	 *
+	 * @param offset offset within the file
+	 * @return the long
+	 */
+	private long getLong(long offset) {
+		return ((long) getInt(offset) << 32) | (getInt(offset + 4) & 0xFFFFFFFFL);
+	}
+
+	/** Reads variable-byte integers sequentially from the mapped file. */
+	private class Cursor {
+
+		/** Offset of the next byte to read. */
+		private long position;
+
+		/**
+		 * Creates a cursor at the offset.
+		 *
+		 * @param position offset within the file
+		 */
+		private Cursor(long position) {
+			this.position = position;
+		}
+
+		/**
+		 * Reads an integer written by
+		 * {@link IndexSnapshot#writeVarInt(java.io.DataOutput, int)}.
+		 *
+		 * @return the value read
+		 */
+		private int readVarInt() {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+
+				b = get(position++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+
+			} while (b < 0);
+
+			return value;
+		}
+	}
+
+	/** Output stream that keeps track of the number of bytes written. */
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		/** Number of bytes written so far. */
+		private long count;
+
+		/**
+		 * Wraps the output stream.
+		 *
+		 * @param out the stream to write to
+		 */
+		private CountingOutputStream(OutputStream out) {
+
+			super(out);
+			this.count = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary snapshot format for the inverted index. A snapshot holds:
+ *
+ * <pre>
+ * magic, version, compressed flag
+ * location count, then each location and its word count
+ * term count, then each term in sorted order with its postings:
+ *     number of locations, then for each location
+ *         location ID, number of positions, last position, encoded length,
+ *         encoded positions
+ * </pre>
+ *
+ * Counts and IDs are written as variable-byte integers, and positions use the
+ * same delta and variable-byte encoding as {@link CompressedPositionList} so a
+ * compressed index can be loaded by copying bytes.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see InvertedIndex#save(java.nio.file.Path)
+ * @see InvertedIndex#load(java.nio.file.Path)
+ */
+public class IndexSnapshot {
+
+	/** Marks the start of a snapshot file. */
+	public static final int MAGIC = 0x53454958;
+
+	/** The snapshot format version. */
+	public static final int VERSION = 1;
+
+	/**
+	 * Writes the snapshot header.
+	 *
+	 * @param out        the output to write to
+	 * @param compressed whether the index stores positions compressed
+	 * @throws IOException if unable to write
+	 */
+	public static void writeHeader(DataOutput out, boolean compressed) throws IOException {
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeBoolean(compressed);
+	}
+
+	/**
+	 * Reads and checks the snapshot header.
+	 *
+	 * @param in the input to read from
+	 * @return whether the snapshot was written from a compressed index
+	 * @throws IOException if unable to read or the input is not a snapshot
+	 */
+	public static boolean readHeader(DataInput in) throws IOException {
+
+		if (in.readInt() != MAGIC) {
+
+			throw new IOException("Not an index snapshot.");
+		}
+
+		int version = in.readInt();
+
+		if (version != VERSION) {
+
+			throw new IOException("Unsupported index snapshot version: " + version);
+		}
+
+		return in.readBoolean();
+	}
+
+	/**
+	 * Writes a set of positions.
+	 *
+	 * @param out       the output to write to
+	 * @param positions the positions to write
+	 * @throws IOException if unable to write
+	 */
+	public static void writePositions(DataOutput out, Positions positions) throws IOException {
+
+		CompressedPositionList encoded;
+
+		if (positions.isCompressed()) {
+
+			encoded = (CompressedPositionList) positions;
+
+		} else {
+
+			encoded = new CompressedPositionList();
+			encoded.addAll(positions);
+		}
+
+		encoded.write(out);
+	}
+
+	/**
+	 * Reads a set of positions.
+	 *
+	 * @param in         the input to read from
+	 * @param compressed whether to return the positions compressed
+	 * @return the positions read
+	 * @throws IOException if unable to read
+	 */
+	public static Positions readPositions(DataInput in, boolean compressed) throws IOException {
+
+		CompressedPositionList encoded = CompressedPositionList.read(in);
+
+		if (compressed) {
+
+			return encoded;
+		}
+
+		PositionList positions = new PositionList();
+		positions.addAll(encoded);
+		return positions;
+	}
+
+	/**
+	 * Writes a non-negative integer using seven bits per byte.
+	 *
+	 * @param out   the output to write to
+	 * @param value the value to write
+	 * @throws IOException if unable to write
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+
+		while ((value & ~0x7F) != 0) {
+
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads an integer written by {@link #writeVarInt(DataOutput, int)}.
+	 *
+	 * @param in the input to read from
+	 * @return the value read
+	 * @throws IOException if unable to read
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			if (shift > 28) {
+
+				throw new IOException("Malformed variable-byte integer.");
+			}
+
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+
+		} while (b < 0);
+
+		return value;
+	}
+}
@@ -1,10 +1,21 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -17,19 +28,68 @@ import java.util.TreeSet;
  * @author Yen Dah Hsiang
  * @version Fall 2019
  */
-public class InvertedIndex {
+public class InvertedIndex implements InvertedIndexInterface {
 
-	/** The data type for the inverted index. */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	/** Term dictionary, maps each word to its term ID in sorted word order. */
+	private final TermTrie terms;
 
-	/** Map for word count output. */
-	private final TreeMap<String, Integer> wordCounts;
+	/** Postings of each word, indexed by term ID, or null for a freed ID. */
+	private final ArrayList<Postings> index;
 
-	/** Default constructor. Creates a new TreeMap for the inverted index. */
+	/** Each word, indexed by term ID, or null for a freed ID. */
+	private final ArrayList<String> words;
+
+	/** Term IDs of removed words, reused before new IDs are assigned. */
+	private final ArrayDeque<Integer> freeTerms;
+
+	/** Location dictionary, assigns each location its location ID. */
+	private final Dictionary locations;
+
+	/** Term IDs of the words in each location, indexed by location ID. */
+	private final ArrayList<TermList> locationTerms;
+
+	/** Word count of each location, indexed by location ID. */
+	private int[] wordCounts;
+
+	/** Whether positions are stored delta and variable-byte encoded. */
+	private final boolean compressed;
+
+	/** Term IDs whose postings changed since the last snapshot. */
+	private final BitSet changedTerms;
+
+	/** Words added or removed since the last snapshot. */
+	private final ArrayList<String> changedWords;
+
+	/** Whether locations were removed since the last snapshot. */
+	private boolean removedLocations;
+
+	/** Default constructor. Creates the dictionaries for the inverted index. */
 	public InvertedIndex() {
+		this(false);
+	}
 
-		this.index = new TreeMap<>();
-		this.wordCounts = new TreeMap<>();
+	/**
+	 * Creates an inverted index, optionally storing positions compressed. The
+	 * compressed mode uses less memory per posting at the cost of decoding
+	 * positions when they are read.
+	 *
+	 * @param compressed whether to store positions compressed
+	 *
+	 * @see CompressedPositionList
+	 */
+	public InvertedIndex(boolean compressed) {
+
+		this.compressed = compressed;
+		this.terms = new TermTrie();
+		this.index = new ArrayList<>();
+		this.words = new ArrayList<>();
+		this.freeTerms = new ArrayDeque<>();
+		this.locations = new Dictionary();
+		this.locationTerms = new ArrayList<>();
+		this.wordCounts = new int[16];
+		this.changedTerms = new BitSet();
+		this.changedWords = new ArrayList<>();
+		this.removedLocations = false;
 	}
 
 	/**
@@ -40,18 +100,7 @@ public class InvertedIndex {
 	 * @param position position of the word to be added
 	 */
 	public void add(String string, String location, int position) {
-
-		this.index.putIfAbsent(string, new TreeMap<>());
-		this.index.get(string).putIfAbsent(location, new TreeSet<>()); // Add inner Map's path and TreeSet
-		this.index.get(string).get(location).add(position); // Add the position of word
-
-		this.wordCounts.putIfAbsent(location, position);
-
-		if (wordCounts.get(location) < position) {
-
-			wordCounts.put(location, position);
-
-		}
+		add(string, addLocation(location), position);
 	}
 
 	/**
@@ -63,9 +112,11 @@ public class InvertedIndex {
 	 */
 	public void add(Collection<String> words, String location, int start) {
 
+		int id = addLocation(location);
+
 		for (String string : words) {
 
-			add(string, location, start);
+			add(string, id, start);
 			start++;
 		}
 	}
@@ -77,7 +128,7 @@ public class InvertedIndex {
 	 * @throws IOException
 	 */
 	public void indexToJson(Path path) throws IOException {
-		SimpleJsonWriter.invertedIndexJSON(this.index, path);
+		SimpleJsonWriter.invertedIndexJSON(new PostingsView(), path);
 	}
 
 	/**
@@ -87,18 +138,161 @@ public class InvertedIndex {
 	 * @throws IOException
 	 */
 	public void wordCountsToJson(Path path) throws IOException {
-		SimpleJsonWriter.asObject(this.wordCounts, path);
+		SimpleJsonWriter.asObject(getAllWordCount(), path);
+	}
+
+	/**
+	 * Writes a binary snapshot of the index that can be restored with
+	 * {@link #load(Path)} much faster than rebuilding the index.
+	 *
+	 * @param path path of file
+	 * @throws IOException
+	 *
+	 * @see IndexSnapshot
+	 */
+	public void save(Path path) throws IOException {
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+
+			IndexSnapshot.writeHeader(out, this.compressed);
+			IndexSnapshot.writeVarInt(out, this.locations.size());
+
+			for (int id = 0; id < this.locations.size(); id++) {
+
+				out.writeUTF(this.locations.get(id));
+				IndexSnapshot.writeVarInt(out, this.wordCounts[id]);
+			}
+
+			IndexSnapshot.writeVarInt(out, this.terms.size());
+
+			for (var entry : this.terms.entrySet()) {
+
+				Postings postings = this.index.get(entry.getValue());
+
+				out.writeUTF(entry.getKey());
+				IndexSnapshot.writeVarInt(out, postings.size());
+
+				for (int i = 0; i < postings.size(); i++) {
+
+					IndexSnapshot.writeVarInt(out, postings.location(i));
+					IndexSnapshot.writePositions(out, postings.positions(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the index as a read-only segment file that can be searched in place
+	 * through memory mapping.
+	 *
+	 * @param path path of file
+	 * @throws IOException
+	 *
+	 * @see IndexSegment
+	 */
+	public void saveSegment(Path path) throws IOException {
+		IndexSegment.write(path, this.locations, this.wordCounts, this.terms, this.index);
+	}
+
+	/**
+	 * Creates an immutable, read-optimized copy of the index for searching once
+	 * the index is done being built.
+	 *
+	 * @return the frozen copy of the index
+	 */
+	public FrozenIndex freeze() {
+		return new FrozenIndex(this.locations, this.wordCounts, this.terms, this.index);
+	}
+
+	/**
+	 * Creates a frozen copy of the index by patching an earlier copy, so only the
+	 * postings of words that changed since then are copied again.
+	 *
+	 * @param previous the copy made by the last call, or {@code null} to copy
+	 *                 everything
+	 * @return the frozen copy of the index
+	 */
+	FrozenIndex snapshot(FrozenIndex previous) {
+
+		FrozenIndex snapshot = new FrozenIndex(previous, this.locations, this.wordCounts, this.terms, this.index,
+				this.changedTerms, this.changedWords, this.removedLocations);
+
+		this.changedTerms.clear();
+		this.changedWords.clear();
+		this.removedLocations = false;
+		return snapshot;
+	}
+
+	/**
+	 * Restores a binary snapshot written by {@link #save(Path)}, including the
+	 * word counts. If this index is not empty, the snapshot is combined with it.
+	 *
+	 * @param path path of file
+	 * @throws IOException if unable to read the file or it is not a snapshot
+	 *
+	 * @see IndexSnapshot
+	 */
+	public void load(Path path) throws IOException {
+
+		if (!this.terms.isEmpty() || this.locations.size() > 0) {
+			// Only an empty index can be filled directly from the snapshot
+			InvertedIndex loaded = new InvertedIndex(this.compressed);
+			loaded.load(path);
+			addAll(loaded);
+			return;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+			IndexSnapshot.readHeader(in);
+			int locationCount = IndexSnapshot.readVarInt(in);
+
+			for (int i = 0; i < locationCount; i++) {
+
+				int id = addLocation(in.readUTF());
+				this.wordCounts[id] = IndexSnapshot.readVarInt(in);
+			}
+
+			int termCount = IndexSnapshot.readVarInt(in);
+
+			for (int i = 0; i < termCount; i++) {
+
+				int term = getOrCreateTerm(in.readUTF());
+				int size = IndexSnapshot.readVarInt(in);
+
+				for (int j = 0; j < size; j++) {
+
+					int location = IndexSnapshot.readVarInt(in);
+
+					if (location < 0 || location >= this.locations.size()) {
+
+						throw new IOException("Invalid location in index snapshot: " + location);
+					}
+
+					merge(term, location, IndexSnapshot.readPositions(in, this.compressed));
+				}
+			}
+		}
 	}
 
 	// Getters
 
+	/**
+	 * Returns whether positions are stored compressed.
+	 *
+	 * @return True if positions are compressed
+	 */
+	public boolean isCompressed() {
+		return this.compressed;
+	}
+
 	/**
 	 * Returns all locations.
 	 *
-	 * @return Set view of keys (locations) in wordCounts
+	 * @return Sorted set of the locations in the index
 	 */
 	public Set<String> getLocations() {
-		return Collections.unmodifiableSet(this.wordCounts.keySet());
+		return Collections.unmodifiableSet(new TreeSet<>(this.locations.getNames()));
 	}
 
 	/**
@@ -109,7 +303,7 @@ public class InvertedIndex {
 	 * @return True if such location exists
 	 */
 	public boolean hasLocation(String location) {
-		return this.wordCounts.containsKey(location);
+		return this.locations.contains(location);
 	}
 
 	/**
@@ -120,16 +314,26 @@ public class InvertedIndex {
 	 * @return The number of words in that location
 	 */
 	public int getWordCount(String location) {
-		return this.wordCounts.get(location);
+
+		int id = this.locations.find(location);
+		return id == Dictionary.MISSING ? 0 : this.wordCounts[id];
 	}
 
 	/**
 	 * Gets all word counts of all locations.
 	 *
-	 * @return The number of words in all locations
+	 * @return The number of words in all locations, sorted by location
 	 */
 	public Map<String, Integer> getAllWordCount() {
-		return Collections.unmodifiableMap(this.wordCounts);
+
+		TreeMap<String, Integer> counts = new TreeMap<>();
+
+		for (int id = 0; id < this.locations.size(); id++) {
+
+			counts.put(this.locations.get(id), this.wordCounts[id]);
+		}
+
+		return Collections.unmodifiableMap(counts);
 	}
 
 	/**
@@ -138,7 +342,7 @@ public class InvertedIndex {
 	 * @return All words in the index
 	 */
 	public Set<String> getWords() {
-		return Collections.unmodifiableSet(this.index.keySet());
+		return Collections.unmodifiableSet(this.terms.keySet());
 	}
 
 	/**
@@ -149,7 +353,7 @@ public class InvertedIndex {
 	 * @return True if word exists in the index
 	 */
 	public boolean hasWord(String word) {
-		return this.index.containsKey(word);
+		return this.terms.containsKey(word);
 	}
 
 	/**
@@ -163,7 +367,7 @@ public class InvertedIndex {
 	 *         map
 	 */
 	public boolean hasLocation(String word, String location) {
-		return this.index.containsKey(word) && this.index.get(word).containsKey(location);
+		return findPositions(word, location) != null;
 	}
 
 	/**
@@ -175,7 +379,7 @@ public class InvertedIndex {
 	 */
 
 	public Set<String> getLocations(String word) {
-		return hasWord(word) ? Collections.unmodifiableSet(this.index.get(word).keySet()) : Collections.emptySet();
+		return hasWord(word) ? Collections.unmodifiableSet(getPostings(word).keySet()) : Collections.emptySet();
 	}
 
 	/**
@@ -190,7 +394,9 @@ public class InvertedIndex {
 	 *         the index
 	 */
 	public boolean hasPosition(String word, String location, int position) {
-		return hasLocation(word, location) && this.index.get(word).get(location).contains(position);
+
+		Positions positions = findPositions(word, location);
+		return positions != null && positions.contains(position);
 	}
 
 	/**
@@ -203,8 +409,9 @@ public class InvertedIndex {
 	 * @return Set of the positions of a word's location
 	 */
 	public Set<Integer> getPositions(String word, String location) {
-		return hasLocation(word, location) ? Collections.unmodifiableSet(this.index.get(word).get(location))
-				: Collections.emptySet();
+
+		Positions positions = findPositions(word, location);
+		return positions != null ? Collections.unmodifiableSet(positions) : Collections.emptySet();
 	}
 
 	/**
@@ -213,40 +420,58 @@ public class InvertedIndex {
 	 * @return total number of words in the index
 	 */
 	public int getTotalWords() {
-		return Collections.unmodifiableSet(this.index.keySet()).size();
+		return this.terms.size();
+	}
+
+	@Override
+	public ArrayList<Result> search(Collection<String> queries, boolean exact, int k) {
+		return exact ? exactSearch(queries, k) : partialSearch(queries, k);
 	}
 
 	/**
-	 * Search matches of the queries and returns a list of search results.
+	 * Finds exact search results and returns a list of Result objects.
 	 *
-	 * @param queries the words to search
-	 * @param exact   exact or partial search
-	 * @return results a list of results
+	 * @param queries the words to query
+	 * @return results the list of Result objects.
 	 */
-	public ArrayList<Result> search(Collection<String> queries, boolean exact) {
-		return exact ? exactSearch(queries) : partialSearch(queries);
+	public ArrayList<Result> exactSearch(Collection<String> queries) {
+		return exactSearch(queries, Integer.MAX_VALUE);
 	}
 
 	/**
-	 * Finds exact search results and returns a list of Result objects.
+	 * Finds exact search results and returns the best k Result objects.
 	 *
 	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
 	 * @return results the list of Result objects.
+	 *
+	 * @see SearchableIndex#top(ArrayList, int)
 	 */
-	public ArrayList<Result> exactSearch(Collection<String> queries) {
+	public ArrayList<Result> exactSearch(Collection<String> queries, int k) {
+		return SearchableIndex.top(exactMatches(queries), k);
+	}
+
+	/**
+	 * Finds exact search results without sorting them.
+	 *
+	 * @param queries the words to query
+	 * @return results the unsorted list of Result objects.
+	 */
+	ArrayList<Result> exactMatches(Collection<String> queries) {
 
 		ArrayList<Result> results = new ArrayList<>();
-		Map<String, Result> lookup = new HashMap<>();
+		Result[] lookup = new Result[this.locations.size()];
 
 		for (String query : queries) {
 
-			if (hasWord(query)) {
+			int id = this.terms.find(query);
 
-				searchHelper(results, lookup, query);
+			if (id != TermTrie.MISSING) {
+
+				searchHelper(results, lookup, id);
 			}
 		}
 
-		Collections.sort(results);
 		return results;
 	}
 
@@ -257,25 +482,103 @@ public class InvertedIndex {
 	 * @return results the list of Result objects.
 	 */
 	public ArrayList<Result> partialSearch(Collection<String> queries) {
+		return partialSearch(queries, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Finds partial search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the list of Result objects.
+	 *
+	 * @see SearchableIndex#top(ArrayList, int)
+	 */
+	public ArrayList<Result> partialSearch(Collection<String> queries, int k) {
+		return SearchableIndex.top(partialMatches(queries), k);
+	}
+
+	/**
+	 * Finds partial search results without sorting them.
+	 *
+	 * @param queries the words to query
+	 * @return results the unsorted list of Result objects.
+	 */
+	ArrayList<Result> partialMatches(Collection<String> queries) {
 
 		ArrayList<Result> results = new ArrayList<>();
-		Map<String, Result> lookup = new HashMap<>();
+		Result[] lookup = new Result[this.locations.size()];
 
 		for (String query : queries) {
 
-			for (String word : this.index.tailMap(query).keySet()) {
+			this.terms.forEachPrefixed(query, term -> searchHelper(results, lookup, term));
+		}
 
-				if (!word.startsWith(query)) {
+		return results;
+	}
 
-					break;
-				}
+	/**
+	 * Removes a location with its word count and all of its positions. Words that
+	 * appear nowhere else are removed too, and their term IDs are reused. The
+	 * location with the last ID takes over the ID of the removed one, so the rest
+	 * of the index keeps its IDs. Only the postings of the words in those two
+	 * locations are touched.
+	 *
+	 * @param location the location to remove
+	 * @return True if the location was in the index
+	 */
+	public boolean removeLocation(String location) {
+
+		int last = this.locations.size() - 1;
+		int id = this.locations.remove(location);
+
+		if (id == Dictionary.MISSING) {
+
+			return false;
+		}
+
+		TermList removed = this.locationTerms.get(id);
+		this.removedLocations = true;
+
+		for (int i = 0; i < removed.size; i++) {
+
+			this.index.get(removed.terms[i]).remove(id);
+			this.changedTerms.set(removed.terms[i]);
+		}
+
+		if (id != last) {
+			// Renumbers the moved location
+			TermList moved = this.locationTerms.get(last);
+
+			for (int i = 0; i < moved.size; i++) {
+
+				Postings postings = this.index.get(moved.terms[i]);
+				postings.merge(id, postings.remove(last));
+				this.changedTerms.set(moved.terms[i]);
+			}
+
+			this.locationTerms.set(id, moved);
+		}
+
+		this.locationTerms.remove(last);
+
+		for (int i = 0; i < removed.size; i++) {
+
+			int term = removed.terms[i];
 
-				searchHelper(results, lookup, word);
+			if (this.index.get(term).size() == 0) {
+
+				this.terms.remove(this.words.get(term));
+				this.changedWords.add(this.words.get(term));
+				this.index.set(term, null);
+				this.words.set(term, null);
+				this.freeTerms.push(term);
 			}
 		}
 
-		Collections.sort(results);
-		return results;
+		this.wordCounts[id] = this.wordCounts[last];
+		this.wordCounts[last] = 0;
+		return true;
 	}
 
 	/**
@@ -285,71 +588,432 @@ public class InvertedIndex {
 	 */
 	public void addAll(InvertedIndex local) {
 
-		for (String word : local.index.keySet()) {
+		int[] mapped = addLocations(local);
 
-			if (this.index.containsKey(word)) {
-				// Checks if index already has the word to prevent unnecessary loops
-				for (String location : local.index.get(word).keySet()) {
+		for (var entry : local.terms.entrySet()) {
 
-					if (this.index.get(word).containsKey(location)) {
-						// Combines the new positions with the already present position set of the
-						// specific word-location combo
-						this.index.get(word).get(location).addAll(local.index.get(word).get(location));
+			addPostings(entry.getKey(), local.index.get(entry.getValue()), mapped);
+		}
+	}
 
-					} else {
-						// Adds the location with the new positions if location not present
-						this.index.get(word).put(location, local.index.get(word).get(location));
-					}
+	/**
+	 * Combines with some of the words of another built inverted index. Only the
+	 * locations of those words are added, with their word counts from the other
+	 * index.
+	 *
+	 * @param local the other inverted index
+	 * @param words the words to add
+	 */
+	void addAll(InvertedIndex local, Collection<String> words) {
+
+		// Translate the location IDs of the other index as they are needed
+		int[] mapped = new int[local.locations.size()];
+		Arrays.fill(mapped, Dictionary.MISSING);
+
+		for (String word : words) {
+
+			int id = local.terms.find(word);
+
+			if (id == TermTrie.MISSING) {
+
+				continue;
+			}
+
+			Postings other = local.index.get(id);
+
+			for (int i = 0; i < other.size(); i++) {
+
+				int location = other.location(i);
+
+				if (mapped[location] == Dictionary.MISSING) {
+
+					mapped[location] = addLocation(local.locations.get(location));
+					addWordCount(mapped[location], local.wordCounts[location]);
 				}
-			} else {
-				// Adds directly to index if word isn't present
-				this.index.put(word, local.index.get(word));
 			}
+
+			addPostings(word, other, mapped);
+		}
+	}
+
+	/**
+	 * Adds locations with their word counts, keeping the larger count of any
+	 * location already present.
+	 *
+	 * @param counts the word count of each location
+	 */
+	void addLocations(Map<String, Integer> counts) {
+
+		for (var entry : counts.entrySet()) {
+
+			addWordCount(addLocation(entry.getKey()), entry.getValue());
+		}
+	}
+
+	/**
+	 * Combines with another built inverted index whose positions are numbered
+	 * from the start of a later part of its locations, shifting every position by
+	 * the offset.
+	 *
+	 * @param local  the other inverted index
+	 * @param offset the number of words before the part the other index holds
+	 */
+	void addAll(InvertedIndex local, int offset) {
+
+		int[] mapped = new int[local.locations.size()];
+
+		for (int id = 0; id < mapped.length; id++) {
+			mapped[id] = addLocation(local.locations.get(id));
 		}
 
-		// Combining the word counts
-		for (var location : local.wordCounts.keySet()) {
+		for (var entry : local.terms.entrySet()) {
 
-			if (this.wordCounts.containsKey(location)) {
-				// Updates the total count
-				if (local.wordCounts.get(location) > this.wordCounts.get(location)) {
+			int term = getOrCreateTerm(entry.getKey());
+			Postings other = local.index.get(entry.getValue());
 
-					this.wordCounts.put(location, local.wordCounts.get(location));
+			for (int i = 0; i < other.size(); i++) {
+
+				int id = mapped[other.location(i)];
+				Positions shifted = Positions.create(this.compressed);
+				PrimitiveIterator.OfInt positions = other.positions(i).positions();
+
+				while (positions.hasNext()) {
+					shifted.add(positions.nextInt() + offset);
 				}
 
-			} else {
-				// Directly adds the new location and total count if location isn't present
-				this.wordCounts.put(location, local.wordCounts.get(location));
+				merge(term, id, shifted);
+
+				if (wordCounts[id] < shifted.last()) {
+
+					wordCounts[id] = shifted.last();
+				}
 			}
 		}
 	}
 
+	/**
+	 * Adds the locations and word counts of another index.
+	 *
+	 * @param local the other inverted index
+	 * @return the location ID in this index of each location ID in the other
+	 */
+	private int[] addLocations(InvertedIndex local) {
+
+		// Translate the location IDs of the other index into this index
+		int[] mapped = new int[local.locations.size()];
+
+		for (int id = 0; id < mapped.length; id++) {
+
+			mapped[id] = addLocation(local.locations.get(id));
+			addWordCount(mapped[id], local.wordCounts[id]);
+		}
+
+		return mapped;
+	}
+
+	/**
+	 * Raises the word count of a location if the given count is larger.
+	 *
+	 * @param id    the location ID
+	 * @param count the word count
+	 */
+	private void addWordCount(int id, int count) {
+
+		if (count > this.wordCounts[id]) {
+			// Updates the total count
+			this.wordCounts[id] = count;
+		}
+	}
+
+	/**
+	 * Adds the postings of a word from another index.
+	 *
+	 * @param word   the word
+	 * @param other  the postings of the word in the other index
+	 * @param mapped the location ID in this index of each location ID in the other
+	 */
+	private void addPostings(String word, Postings other, int[] mapped) {
+
+		int term = getOrCreateTerm(word);
+
+		for (int i = 0; i < other.size(); i++) {
+			// Combines the new positions with any positions already present for the
+			// specific word-location combo
+			Positions positions = other.positions(i);
+
+			if (positions.isCompressed() != this.compressed) {
+				// Stores the positions the same way as the rest of this index
+				Positions converted = Positions.create(this.compressed);
+				converted.addAll(positions);
+				positions = converted;
+			}
+
+			merge(term, mapped[other.location(i)], positions);
+		}
+	}
+
+	/**
+	 * Adds word into the inverted index at a location that already has an ID.
+	 *
+	 * @param string   word
+	 * @param id       the location ID of the word
+	 * @param position position of the word to be added
+	 */
+	private void add(String string, int id, int position) {
+
+		getOrCreatePositions(getOrCreateTerm(string), id).add(position); // Add the position of word
+
+		if (wordCounts[id] < position) {
+
+			wordCounts[id] = position;
+
+		}
+	}
+
+	/**
+	 * Returns the location ID for the location, assigning a new one if needed.
+	 *
+	 * @param location the location to add
+	 * @return the location ID
+	 */
+	private int addLocation(String location) {
+
+		int id = this.locations.add(location);
+
+		if (id == this.wordCounts.length) {
+
+			this.wordCounts = Arrays.copyOf(this.wordCounts, id * 2);
+		}
+
+		if (id == this.locationTerms.size()) {
+
+			this.locationTerms.add(new TermList());
+		}
+
+		return id;
+	}
+
+	/**
+	 * Returns the term ID for the word, adding the word to the term dictionary if
+	 * needed.
+	 *
+	 * @param word the word to add
+	 * @return the term ID of the word
+	 */
+	private int getOrCreateTerm(String word) {
+
+		int id = this.terms.find(word);
+
+		if (id != TermTrie.MISSING) {
+
+			return id;
+		}
+
+		if (this.freeTerms.isEmpty()) {
+
+			id = this.index.size();
+			this.index.add(new Postings());
+			this.words.add(word);
+
+		} else {
+			// Reuses the ID of a removed word
+			id = this.freeTerms.pop();
+			this.index.set(id, new Postings());
+			this.words.set(id, word);
+		}
+
+		this.terms.add(word, id);
+		this.changedWords.add(word);
+		return id;
+	}
+
+	/**
+	 * Returns the positions of a word in a location, adding an empty list if
+	 * needed.
+	 *
+	 * @param term     the term ID of the word
+	 * @param location the location ID
+	 * @return the positions of the word in the location
+	 */
+	private Positions getOrCreatePositions(int term, int location) {
+
+		Postings postings = this.index.get(term);
+		int size = postings.size();
+		Positions positions = postings.getOrCreate(location, this.compressed);
+		this.changedTerms.set(term);
+
+		if (postings.size() != size) {
+
+			this.locationTerms.get(location).add(term);
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Merges positions of a word into a location. If the word is not in the
+	 * location yet the list itself is stored, so the caller must not modify it
+	 * afterwards.
+	 *
+	 * @param term     the term ID of the word
+	 * @param location the location ID
+	 * @param list     the positions to merge
+	 */
+	private void merge(int term, int location, Positions list) {
+
+		Postings postings = this.index.get(term);
+		int size = postings.size();
+		postings.merge(location, list);
+		this.changedTerms.set(term);
+
+		if (postings.size() != size) {
+
+			this.locationTerms.get(location).add(term);
+		}
+	}
+
+	/**
+	 * Finds the positions of a word in a location.
+	 *
+	 * @param word     the word to find
+	 * @param location the location to find
+	 * @return the positions or {@code null} if the word is not in the location
+	 */
+	private Positions findPositions(String word, String location) {
+
+		int id = this.terms.find(word);
+		int locationId = this.locations.find(location);
+
+		if (id == TermTrie.MISSING || locationId == Dictionary.MISSING) {
+
+			return null;
+		}
+
+		return this.index.get(id).get(locationId);
+	}
+
+	/**
+	 * Resolves the postings of a word into a map from location to positions,
+	 * sorted by location.
+	 *
+	 * @param word the word to resolve
+	 * @return map of locations to positions
+	 */
+	private TreeMap<String, Positions> getPostings(String word) {
+
+		Postings postings = this.index.get(this.terms.get(word));
+		TreeMap<String, Positions> resolved = new TreeMap<>();
+
+		for (int i = 0; i < postings.size(); i++) {
+
+			resolved.put(this.locations.get(postings.location(i)), postings.positions(i));
+		}
+
+		return resolved;
+	}
+
 	/**
 	 * Loops through locations of the matched word and either creates a new Result
 	 * object or update its count and finally adding to results.
 	 *
 	 * @param results the list of Result objects
-	 * @param lookup  the map to store results to avoid linear search
-	 * @param word    the matched word
+	 * @param lookup  the results indexed by location ID to avoid linear search
+	 * @param term    the term ID of the matched word
 	 */
-	private void searchHelper(ArrayList<Result> results, Map<String, Result> lookup, String word) {
+	private void searchHelper(ArrayList<Result> results, Result[] lookup, int term) {
+
+		Postings postings = this.index.get(term);
+
+		for (int i = 0; i < postings.size(); i++) {
 
-		for (var location : this.index.get(word).keySet()) {
+			int location = postings.location(i);
 
-			if (!lookup.containsKey(location)) {
+			if (lookup[location] == null) {
 
-				Result result = new Result(location);
+				Result result = new Result(this.locations.get(location));
 
 				results.add(result);
-				lookup.put(location, result);
+				lookup[location] = result;
+			}
+
+			lookup[location].updateCount(postings.positions(i).size(), this.wordCounts[location]);
+		}
+	}
+
+	/**
+	 * Read-only view of the index as nested sorted maps, used for output. The
+	 * locations of each word are resolved one word at a time as it is iterated.
+	 */
+	private class PostingsView extends AbstractMap<String, Map<String, Positions>> {
+
+		@Override
+		public Set<Entry<String, Map<String, Positions>>> entrySet() {
+
+			return new AbstractSet<>() {
+
+				@Override
+				public Iterator<Entry<String, Map<String, Positions>>> iterator() {
+
+					var words = terms.keySet().iterator();
+
+					return new Iterator<>() {
+
+						@Override
+						public boolean hasNext() {
+							return words.hasNext();
+						}
+
+						@Override
+						public Entry<String, Map<String, Positions>> next() {
+
+							String word = words.next();
+							return Map.entry(word, getPostings(word));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return terms.size();
+				}
+			};
+		}
+	}
+
+	/** Growable list of the term IDs of the words in one location. */
+	private static class TermList {
+
+		/** The term IDs, only the first {@link #size} are in use. */
+		private int[] terms;
+
+		/** Number of term IDs stored. */
+		private int size;
+
+		/** Creates an empty list. */
+		private TermList() {
+
+			this.terms = new int[4];
+			this.size = 0;
+		}
+
+		/**
+		 * Adds a term ID.
+		 *
+		 * @param term the term ID
+		 */
+		private void add(int term) {
+
+			if (size == terms.length) {
+
+				terms = Arrays.copyOf(terms, size * 2);
 			}
 
-			lookup.get(location).updateCount(word);
+			terms[size++] = term;
 		}
 	}
 
 	/** Single Search Result. */
-	public class Result implements Comparable<Result> {
+	public static class Result implements Comparable<Result> {
 
 		/** Location of file. */
 		private final String where;
@@ -363,7 +1027,7 @@ public class InvertedIndex {
 		/**
 		 * Default constructor
 		 *
-		 * @param where
+		 * @param where the location
 		 */
 		public Result(String where) {
 			this.where = where;
@@ -401,12 +1065,13 @@ public class InvertedIndex {
 		/**
 		 * Update the count of the result
 		 *
-		 * @param word word to update count and score
+		 * @param matches number of matches of the word in this location
+		 * @param total   total number of words in this location
 		 */
-		private void updateCount(String word) {
+		void updateCount(int matches, int total) {
 
-			this.count += index.get(word).get(this.where).size();
-			this.score = (double) getCount() / wordCounts.get(this.where);
+			this.count += matches;
+			this.score = (double) getCount() / total;
 		}
 
 		/**
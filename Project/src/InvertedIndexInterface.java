@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interface for inverted indexes that can be built, searched and saved.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see InvertedIndex
+ * @see ShardedInvertedIndex
+ */
+public interface InvertedIndexInterface extends SearchableIndex {
+
+	/**
+	 * Adds word into the inverted index.
+	 *
+	 * @param string   word
+	 * @param location file path of the word
+	 * @param position position of the word to be added
+	 */
+	public void add(String string, String location, int position);
+
+	/**
+	 * Adds a collection of words into the inverted index.
+	 *
+	 * @param words    the collection of words to add.
+	 * @param location file path of the words
+	 * @param start    starting position
+	 */
+	public void add(Collection<String> words, String location, int start);
+
+	/**
+	 * Combines with another built inverted index.
+	 *
+	 * @param local the other inverted index
+	 */
+	public void addAll(InvertedIndex local);
+
+	/**
+	 * Removes a location with its word count and all of its positions. Words that
+	 * appear nowhere else are removed too.
+	 *
+	 * @param location the location to remove
+	 * @return True if the location was in the index
+	 */
+	public boolean removeLocation(String location);
+
+	/**
+	 * Returns whether positions are stored compressed.
+	 *
+	 * @return True if positions are compressed
+	 */
+	public boolean isCompressed();
+
+	/**
+	 * Returns all locations.
+	 *
+	 * @return Sorted set of the locations in the index
+	 */
+	public Set<String> getLocations();
+
+	/**
+	 * Check if there is such location.
+	 *
+	 * @param location file path
+	 *
+	 * @return True if such location exists
+	 */
+	public boolean hasLocation(String location);
+
+	/**
+	 * Get word counts of a location.
+	 *
+	 * @param location file path
+	 *
+	 * @return The number of words in that location
+	 */
+	public int getWordCount(String location);
+
+	/**
+	 * Gets all word counts of all locations.
+	 *
+	 * @return The number of words in all locations, sorted by location
+	 */
+	public Map<String, Integer> getAllWordCount();
+
+	/**
+	 * Gets all words in the index.
+	 *
+	 * @return All words in the index
+	 */
+	public Set<String> getWords();
+
+	/**
+	 * Checks if given word exists in the index
+	 *
+	 * @param word the word to check
+	 *
+	 * @return True if word exists in the index
+	 */
+	public boolean hasWord(String word);
+
+	/**
+	 * Checks whether the word is in the location.
+	 *
+	 * @param word     the word to check
+	 * @param location the location to check
+	 *
+	 * @return True if the word appears in the location
+	 */
+	public boolean hasLocation(String word, String location);
+
+	/**
+	 * Returns the locations of a word.
+	 *
+	 * @param word the word
+	 * @return Sorted set of the locations of the word
+	 */
+	public Set<String> getLocations(String word);
+
+	/**
+	 * Checks whether the given word, location, and position combination exists in
+	 * the index
+	 *
+	 * @param word     the word to check
+	 * @param location the location to check
+	 * @param position the position to check
+	 *
+	 * @return True if the given word, location, and position combination exists in
+	 *         the index
+	 */
+	public boolean hasPosition(String word, String location, int position);
+
+	/**
+	 * Gets position of word and location if the given word and location exists in
+	 * the index.
+	 *
+	 * @param word     the word to get
+	 * @param location the position to get
+	 *
+	 * @return Set of the positions of a word's location
+	 */
+	public Set<Integer> getPositions(String word, String location);
+
+	/**
+	 * Gets the total number of words in the index.
+	 *
+	 * @return total number of words in the index
+	 */
+	public int getTotalWords();
+
+	/**
+	 * Writes inverted index to JSON object.
+	 *
+	 * @param path path of file
+	 * @throws IOException
+	 */
+	public void indexToJson(Path path) throws IOException;
+
+	/**
+	 * Writes all files in path and its word count to JSON object.
+	 *
+	 * @param path path of file
+	 * @throws IOException
+	 */
+	public void wordCountsToJson(Path path) throws IOException;
+
+	/**
+	 * Writes a binary snapshot of the index that can be restored with
+	 * {@link #load(Path)}.
+	 *
+	 * @param path path of file
+	 * @throws IOException
+	 *
+	 * @see IndexSnapshot
+	 */
+	public void save(Path path) throws IOException;
+
+	/**
+	 * Restores a binary snapshot written by {@link #save(Path)}. If this index is
+	 * not empty, the snapshot is combined with it.
+	 *
+	 * @param path path of file
+	 * @throws IOException if unable to read the file or it is not a snapshot
+	 */
+	public void load(Path path) throws IOException;
+
+	/**
+	 * Writes the index as a read-only segment file that can be searched in place
+	 * through memory mapping.
+	 *
+	 * @param path path of file
+	 * @throws IOException
+	 *
+	 * @see IndexSegment
+	 */
+	public void saveSegment(Path path) throws IOException;
+
+	/**
+	 * Creates an immutable, read-optimized copy of the index for searching once
+	 * the index is done being built.
+	 *
+	 * @return the frozen copy of the index
+	 */
+	public FrozenIndex freeze();
+}
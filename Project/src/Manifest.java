@@ -0,0 +1,274 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records the size, modification time, word count and content hash of every
+ * file in an index, so a later build can tell which files were added, changed
+ * or deleted since and only re-index those.
+ *
+ * Saved as a text file with one line per file, the fields separated by tabs and
+ * the location last.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see IndexBuilder#update(Path, Manifest)
+ */
+public class Manifest {
+
+	/** First line of every manifest file. */
+	private static final String HEADER = "# index manifest 1";
+
+	/** What the manifest recorded about a file. */
+	public static class Entry {
+
+		/** The size in bytes. */
+		private final long size;
+
+		/** The modification time in milliseconds. */
+		private final long modified;
+
+		/** The number of words. */
+		private final int words;
+
+		/** The SHA-256 hash of the content in hexadecimal. */
+		private final String hash;
+
+		/**
+		 * Creates an entry.
+		 *
+		 * @param size     the size in bytes
+		 * @param modified the modification time in milliseconds
+		 * @param words    the number of words
+		 * @param hash     the hash of the content
+		 */
+		public Entry(long size, long modified, int words, String hash) {
+
+			this.size = size;
+			this.modified = modified;
+			this.words = words;
+			this.hash = hash;
+		}
+
+		/**
+		 * Reads the size and modification time of a file and hashes its content.
+		 *
+		 * @param file  the file
+		 * @param words the number of words in the file
+		 * @return the entry for the file
+		 * @throws IOException if unable to read the file
+		 */
+		public static Entry of(Path file, int words) throws IOException {
+			return new Entry(Files.size(file), Files.getLastModifiedTime(file).toMillis(), words, hash(file));
+		}
+
+		/**
+		 * Returns a copy of the entry with a different word count.
+		 *
+		 * @param words the number of words
+		 * @return the new entry
+		 */
+		public Entry withWords(int words) {
+			return new Entry(size, modified, words, hash);
+		}
+
+		/**
+		 * Checks whether the file still has the recorded size and modification
+		 * time, without reading it.
+		 *
+		 * @param file the file
+		 * @return True if neither the size nor the modification time changed
+		 * @throws IOException if unable to read the attributes of the file
+		 */
+		public boolean isUnchanged(Path file) throws IOException {
+			return size == Files.size(file) && modified == Files.getLastModifiedTime(file).toMillis();
+		}
+
+		/**
+		 * Returns the size in bytes.
+		 *
+		 * @return the size
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Returns the number of words.
+		 *
+		 * @return the word count
+		 */
+		public int getWords() {
+			return words;
+		}
+
+		/**
+		 * Returns the hash of the content.
+		 *
+		 * @return the hash in hexadecimal
+		 */
+		public String getHash() {
+			return hash;
+		}
+	}
+
+	/** The entry of each location. */
+	private final TreeMap<String, Entry> entries;
+
+	/** Creates an empty manifest. */
+	public Manifest() {
+		this.entries = new TreeMap<>();
+	}
+
+	/**
+	 * Returns the entry of a location.
+	 *
+	 * @param location the location
+	 * @return the entry or {@code null} if the location is not recorded
+	 */
+	public Entry get(String location) {
+		return entries.get(location);
+	}
+
+	/**
+	 * Records the entry of a location, replacing any previous entry.
+	 *
+	 * @param location the location
+	 * @param entry    the entry
+	 */
+	public void put(String location, Entry entry) {
+		entries.put(location, entry);
+	}
+
+	/**
+	 * Removes the entry of a location.
+	 *
+	 * @param location the location
+	 * @return the removed entry or {@code null} if the location was not recorded
+	 */
+	public Entry remove(String location) {
+		return entries.remove(location);
+	}
+
+	/**
+	 * Returns the recorded locations.
+	 *
+	 * @return unmodifiable sorted set of locations
+	 */
+	public Set<String> getLocations() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Writes the manifest to a file.
+	 *
+	 * @param path path of file
+	 * @throws IOException if unable to write the file
+	 */
+	public void save(Path path) throws IOException {
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+
+			writer.write(HEADER);
+			writer.newLine();
+
+			for (var entry : entries.entrySet()) {
+
+				Entry value = entry.getValue();
+				writer.write(value.size + "\t" + value.modified + "\t" + value.words + "\t" + value.hash + "\t"
+						+ entry.getKey());
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Reads a manifest written by {@link #save(Path)}.
+	 *
+	 * @param path path of file
+	 * @return the manifest
+	 * @throws IOException if unable to read the file or it is not a manifest
+	 */
+	public static Manifest load(Path path) throws IOException {
+
+		Manifest manifest = new Manifest();
+
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+
+			if (!HEADER.equals(reader.readLine())) {
+
+				throw new IOException("Not an index manifest: " + path);
+			}
+
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+
+				String[] fields = line.split("\t", 5);
+
+				try {
+
+					manifest.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+							Integer.parseInt(fields[2]), fields[3]));
+
+				} catch (RuntimeException e) {
+
+					throw new IOException("Invalid line in index manifest: " + line, e);
+				}
+			}
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * Hashes the content of a file.
+	 *
+	 * @param file the file
+	 * @return the SHA-256 hash in hexadecimal
+	 * @throws IOException if unable to read the file
+	 */
+	public static String hash(Path file) throws IOException {
+
+		MessageDigest digest;
+
+		try {
+
+			digest = MessageDigest.getInstance("SHA-256");
+
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+
+		try (InputStream in = Files.newInputStream(file)) {
+
+			byte[] buffer = new byte[1 << 16];
+			int read;
+
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+
+		return hex.toString();
+	}
+}
@@ -1,11 +1,31 @@
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Multithreading version for IndexBuilder.
  *
+ * Files are read, parsed and indexed in the stages of an {@link IndexPipeline},
+ * so reading one file overlaps with parsing others, and large files are parsed
+ * in parallel batches. Each indexer thread builds its own index that no other
+ * thread touches. Once all files are read, those indexes are merged in pairs in
+ * parallel until one is left, which is added to the shared index in a single
+ * step.
+ *
+ * Directories are listed in parallel on the work queue, each subdirectory as
+ * its own task, and files go into the pipeline as soon as they are found.
+ * Optionally all files are found first and added largest first, so the build
+ * does not end waiting on one large file started last.
+ *
  * @author CS 212 Software Development
  * @author University of San Francisco
  * @author Yen Dah Hsiang
@@ -16,68 +36,369 @@ public class MultithreadIndexBuilder extends IndexBuilder {
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
 
 	/** The inverted index. */
-	private final ThreadSafeInvertedIndex index;
+	private final ThreadSafeIndexInterface index;
 
 	/** The work queue. */
 	private final WorkQueue queue;
 
+	/** The number of reader, parser and indexer threads. */
+	private final int readers, parsers, indexers;
+
+	/** Whether to add the files largest first once all are found. */
+	private final boolean largestFirst;
+
+	/** Size of each file found so far, when adding largest first. */
+	private final ConcurrentHashMap<Path, Long> found;
+
+	/** The first error while listing directories. */
+	private IOException failure;
+
+	/** The first error while merging the indexes. */
+	private RuntimeException mergeFailure;
+
+	/** The pipeline of the last build. */
+	private IndexPipeline pipeline;
+
+	/** Whether files are being added to the pipeline. */
+	private boolean building;
+
 	/**
 	 * Constructor for the multithreading inverted index builder.
 	 *
 	 * @param index the inverted index
 	 * @param queue the work queue
 	 */
-	public MultithreadIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+	public MultithreadIndexBuilder(ThreadSafeIndexInterface index, WorkQueue queue) {
+		this(index, queue, 1, WorkQueue.DEFAULT, 1);
+	}
+
+	/**
+	 * Constructor for the multithreading inverted index builder.
+	 *
+	 * @param index    the inverted index
+	 * @param queue    the work queue, used to merge the indexes
+	 * @param readers  the number of threads reading files
+	 * @param parsers  the number of threads parsing and stemming
+	 * @param indexers the number of threads adding to indexes
+	 */
+	public MultithreadIndexBuilder(ThreadSafeIndexInterface index, WorkQueue queue, int readers, int parsers,
+			int indexers) {
+		this(index, queue, readers, parsers, indexers, false);
+	}
+
+	/**
+	 * Constructor for the multithreading inverted index builder.
+	 *
+	 * @param index        the inverted index
+	 * @param queue        the work queue, used to list directories and merge the
+	 *                     indexes
+	 * @param readers      the number of threads reading files
+	 * @param parsers      the number of threads parsing and stemming
+	 * @param indexers     the number of threads adding to indexes
+	 * @param largestFirst whether to find all files first and add them largest
+	 *                     first
+	 */
+	public MultithreadIndexBuilder(ThreadSafeIndexInterface index, WorkQueue queue, int readers, int parsers,
+			int indexers, boolean largestFirst) {
 
 		super(index);
 		this.index = index;
 		this.queue = queue;
+		this.readers = readers;
+		this.parsers = parsers;
+		this.indexers = indexers;
+		this.largestFirst = largestFirst;
+		this.found = new ConcurrentHashMap<>();
+		this.failure = null;
+		this.mergeFailure = null;
+		this.pipeline = null;
+		this.building = false;
 	}
 
 	@Override
 	public void create(Path path) throws IOException {
 
-		super.create(path);
-		queue.finish();
+		start();
+
+		try {
+
+			walk(path);
+
+		} finally {
+
+			finish();
+		}
+
+		merge();
+	}
+
+	@Override
+	public void addToIndex(Collection<Path> locations) throws IOException {
+
+		start();
+
+		try {
+
+			super.addToIndex(locations);
+
+		} finally {
+
+			finish();
+		}
+
+		merge();
 	}
 
 	@Override
 	public void addToIndex(Path location) throws IOException {
-		queue.execute(new Task(location));
+
+		if (!building) {
+			// Not building, so the file is indexed alone and added in one write
+			InvertedIndex local = new InvertedIndex(index.isCompressed());
+			addToIndex(location, local);
+			index.addAll(local);
+			return;
+		}
+
+		try {
+
+			pipeline.add(location);
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while building the index.");
+		}
+	}
+
+	/**
+	 * Returns the pipeline of the last build, with the statistics of its stages.
+	 *
+	 * @return the pipeline or {@code null} if nothing was built yet
+	 */
+	public IndexPipeline getPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Adds the text files under a path to the pipeline, listing directories in
+	 * parallel.
+	 *
+	 * @param path the starting path
+	 * @throws IOException if unable to read a directory
+	 */
+	private void walk(Path path) throws IOException {
+
+		if (!Files.isDirectory(path)) {
+
+			if (isTextFile(path)) {
+				addToIndex(path);
+			}
+
+			return;
+		}
+
+		failure = null;
+		found.clear();
+		queue.execute(new WalkTask(path));
+		queue.finish();
+
+		if (failure != null) {
+
+			throw failure;
+		}
+
+		if (largestFirst) {
+			// Ties keep a fixed order so builds are repeatable
+			ArrayList<Map.Entry<Path, Long>> files = new ArrayList<>(found.entrySet());
+			files.sort(Map.Entry.<Path, Long>comparingByValue(Comparator.reverseOrder())
+					.thenComparing(Map.Entry.comparingByKey()));
+			found.clear();
+
+			for (var file : files) {
+				addToIndex(file.getKey());
+			}
+		}
 	}
 
 	/**
-	 * Task for parsing each file.
+	 * Records the first error while listing directories.
 	 *
+	 * @param e the error
 	 */
-	private class Task implements Runnable {
+	private synchronized void fail(IOException e) {
+
+		if (failure == null) {
 
-		/** The location to */
-		private final Path location;
+			failure = e;
+		}
+	}
+
+	/** Starts a new pipeline for the files added until {@link #finish()}. */
+	private void start() {
+
+		pipeline = new IndexPipeline(index.isCompressed(), readers, parsers, indexers, IndexPipeline.DEFAULT_CAPACITY);
+		pipeline.start();
+		building = true;
+	}
+
+	/**
+	 * Waits for the files added to the pipeline to be indexed.
+	 *
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	private void finish() throws InterruptedIOException {
+
+		building = false;
+
+		try {
+
+			pipeline.finish();
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while building the index.");
+		}
+	}
+
+	/**
+	 * Merges the indexes of the indexers in pairs in parallel until one is left,
+	 * and adds it to the shared index. If a merge fails, the round is finished
+	 * and nothing is added, since the merged indexes are missing postings.
+	 *
+	 * @throws IOException if a merge failed
+	 */
+	private void merge() throws IOException {
+
+		ArrayList<InvertedIndex> pending = new ArrayList<>(pipeline.getIndexes());
+		mergeFailure = null;
+
+		while (pending.size() > 1) {
+
+			ArrayList<InvertedIndex> merged = new ArrayList<>();
+
+			for (int i = 0; i + 1 < pending.size(); i += 2) {
+
+				queue.execute(new MergeTask(pending.get(i), pending.get(i + 1)));
+				merged.add(pending.get(i));
+			}
+
+			if (pending.size() % 2 == 1) {
+				// The odd one out waits for the next round
+				merged.add(pending.get(pending.size() - 1));
+			}
+
+			queue.finish();
+
+			if (mergeFailure != null) {
+
+				throw new IOException("Unable to merge the indexes.", mergeFailure);
+			}
+
+			pending = merged;
+		}
+
+		if (!pending.isEmpty()) {
+
+			index.addAll(pending.get(0));
+		}
+	}
+
+	/**
+	 * Records the first error while merging the indexes.
+	 *
+	 * @param e the error
+	 */
+	private synchronized void mergeFailed(RuntimeException e) {
+
+		if (mergeFailure == null) {
+
+			mergeFailure = e;
+		}
+	}
+
+	/**
+	 * Task for listing one directory. Each subdirectory is listed by a new task.
+	 */
+	private class WalkTask implements Runnable {
+
+		/** The directory to list. */
+		private final Path directory;
 
 		/**
 		 * Constructor for the task.
 		 *
-		 * @param location the text file
-		 *
+		 * @param directory the directory to list
 		 */
-		private Task(Path location) {
-			this.location = location;
+		private WalkTask(Path directory) {
+			this.directory = directory;
 		}
 
 		@Override
 		public void run() {
 
-			try {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+
+				for (Path current : stream) {
+
+					if (Files.isDirectory(current)) {
 
-				ThreadSafeInvertedIndex local = new ThreadSafeInvertedIndex();
+						queue.execute(new WalkTask(current));
 
-				addToIndex(this.location, local);
-				index.addAll(local);
+					} else if (isTextFile(current)) {
+
+						if (largestFirst) {
+
+							found.put(current, Files.size(current));
+
+						} else {
+
+							addToIndex(current);
+						}
+					}
+				}
 
 			} catch (IOException e) {
 
-				System.out.println("Unable to build index with multithreading.");
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Task for merging one worker index into another.
+	 */
+	private class MergeTask implements Runnable {
+
+		/** The index to merge into. */
+		private final InvertedIndex into;
+
+		/** The index to merge, which must not be used afterwards. */
+		private final InvertedIndex from;
+
+		/**
+		 * Constructor for the task.
+		 *
+		 * @param into the index to merge into
+		 * @param from the index to merge
+		 */
+		private MergeTask(InvertedIndex into, InvertedIndex from) {
+
+			this.into = into;
+			this.from = from;
+		}
+
+		@Override
+		public void run() {
+
+			try {
+
+				into.addAll(from);
+
+			} catch (RuntimeException e) {
+
+				mergeFailed(e);
 			}
 		}
 	}
@@ -15,8 +15,8 @@ import java.util.TreeSet;
  */
 public class MultithreadQueryParser implements QueryParserInterface {
 
-	/** The inverted index. */
-	private final ThreadSafeInvertedIndex index;
+	/** The index to search, which must be safe to search from several threads. */
+	private final SearchableIndex index;
 
 	/** The work queue. */
 	private final WorkQueue queue;
@@ -27,10 +27,10 @@ public class MultithreadQueryParser implements QueryParserInterface {
 	/**
 	 * Constructor for multithreading query parser.
 	 *
-	 * @param index the inverted index
+	 * @param index the thread safe index to search
 	 * @param queue the work queue
 	 */
-	public MultithreadQueryParser(ThreadSafeInvertedIndex index, WorkQueue queue) {
+	public MultithreadQueryParser(SearchableIndex index, WorkQueue queue) {
 
 		this.index = index;
 		this.queue = queue;
@@ -110,7 +110,7 @@ public class MultithreadQueryParser implements QueryParserInterface {
 				return;
 			}
 
-			String cleanedLine = String.join(" ", TextFileStemmer.uniqueStems(line));
+			String cleanedLine = String.join(" ", queries);
 
 			synchronized (searchResults) {
 				// Synchronize adding to search results
@@ -0,0 +1,239 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Sorted set of word positions backed by a growable primitive {@code int}
+ * array. Positions are usually added in increasing order while a file is being
+ * parsed, so appending is the fast path and costs no boxing or tree entries.
+ *
+ * Exposes a {@link java.util.Set} view so it can be used wherever a set of
+ * positions was previously expected.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see CompressedPositionList
+ */
+public class PositionList extends AbstractSet<Integer> implements Positions {
+
+	/** Shared empty array for new lists. */
+	private static final int[] EMPTY = new int[0];
+
+	/** The sorted positions, only the first {@link #size} are in use. */
+	private int[] positions;
+
+	/** Number of positions stored. */
+	private int size;
+
+	/** Creates an empty position list. */
+	public PositionList() {
+
+		this.positions = EMPTY;
+		this.size = 0;
+	}
+
+	@Override
+	public boolean add(int position) {
+
+		if (size == 0 || positions[size - 1] < position) {
+			// Positions normally arrive in increasing order
+			ensureCapacity(size + 1);
+			positions[size++] = position;
+			return true;
+		}
+
+		int index = Arrays.binarySearch(positions, 0, size, position);
+
+		if (index >= 0) {
+
+			return false;
+		}
+
+		index = -(index + 1);
+		ensureCapacity(size + 1);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		positions[index] = position;
+		size++;
+
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	@Override
+	public void addAll(Positions other) {
+
+		if (other instanceof PositionList) {
+
+			PositionList list = (PositionList) other;
+			merge(list.positions, list.size);
+
+		} else {
+
+			int[] array = other.toIntArray();
+			merge(array, array.length);
+		}
+	}
+
+	@Override
+	public boolean contains(int position) {
+		return Arrays.binarySearch(positions, 0, size, position) >= 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && contains(((Integer) o).intValue());
+	}
+
+	/**
+	 * Returns the position at the given index in sorted order.
+	 *
+	 * @param index the index of the position
+	 * @return the position at the index
+	 */
+	public int get(int index) {
+
+		if (index < 0 || index >= size) {
+
+			throw new IndexOutOfBoundsException(index);
+		}
+
+		return positions[index];
+	}
+
+	@Override
+	public int last() {
+		return size == 0 ? 0 : positions[size - 1];
+	}
+
+	@Override
+	public int[] toIntArray() {
+		return Arrays.copyOf(positions, size);
+	}
+
+	/** Releases any unused capacity at the end of the backing array. */
+	public void trimToSize() {
+
+		if (positions.length > size) {
+
+			positions = size == 0 ? EMPTY : Arrays.copyOf(positions, size);
+		}
+	}
+
+	@Override
+	public boolean isCompressed() {
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return positions();
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt positions() {
+
+		return new PrimitiveIterator.OfInt() {
+
+			/** Index of the next position to return. */
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public int nextInt() {
+
+				if (!hasNext()) {
+
+					throw new NoSuchElementException();
+				}
+
+				return positions[next++];
+			}
+		};
+	}
+
+	/**
+	 * Merges sorted positions into this list.
+	 *
+	 * @param other     sorted positions to merge
+	 * @param otherSize number of positions in use in the array
+	 */
+	private void merge(int[] other, int otherSize) {
+
+		if (otherSize == 0) {
+
+			return;
+		}
+
+		if (size == 0 || positions[size - 1] < other[0]) {
+			// Other positions come entirely after this list
+			ensureCapacity(size + otherSize);
+			System.arraycopy(other, 0, positions, size, otherSize);
+			size += otherSize;
+			return;
+		}
+
+		int[] merged = new int[size + otherSize];
+		int i = 0, j = 0, k = 0;
+
+		while (i < size && j < otherSize) {
+
+			if (positions[i] < other[j]) {
+
+				merged[k++] = positions[i++];
+
+			} else if (positions[i] > other[j]) {
+
+				merged[k++] = other[j++];
+
+			} else {
+
+				merged[k++] = positions[i++];
+				j++;
+			}
+		}
+
+		while (i < size) {
+			merged[k++] = positions[i++];
+		}
+
+		while (j < otherSize) {
+			merged[k++] = other[j++];
+		}
+
+		this.positions = merged;
+		this.size = k;
+	}
+
+	/**
+	 * Grows the backing array so that it can hold at least the given number of
+	 * positions.
+	 *
+	 * @param capacity the minimum capacity needed
+	 */
+	private void ensureCapacity(int capacity) {
+
+		if (capacity > positions.length) {
+			// Grow by half again, most lists only ever hold a handful of positions
+			int grown = positions.length + (positions.length >> 1) + 1;
+			positions = Arrays.copyOf(positions, Math.max(grown, capacity));
+		}
+	}
+}
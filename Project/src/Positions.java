@@ -0,0 +1,89 @@
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * Sorted set of the positions of one word in one location. Implementations
+ * store the positions as primitives and only box them when used through the
+ * {@link Set} view.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see PositionList
+ * @see CompressedPositionList
+ */
+public interface Positions extends Set<Integer> {
+
+	/**
+	 * Creates an empty set of positions.
+	 *
+	 * @param compressed whether to store the positions compressed
+	 * @return new empty positions
+	 */
+	public static Positions create(boolean compressed) {
+		return compressed ? new CompressedPositionList() : new PositionList();
+	}
+
+	/**
+	 * Adds a position, keeping the positions sorted and free of duplicates.
+	 *
+	 * @param position the position to add
+	 * @return True if the position was not already present
+	 */
+	public boolean add(int position);
+
+	/**
+	 * Merges all positions from another set into this one.
+	 *
+	 * @param other the positions to merge
+	 */
+	public void addAll(Positions other);
+
+	/**
+	 * Checks whether the position is present.
+	 *
+	 * @param position the position to check
+	 * @return True if the position is present
+	 */
+	public boolean contains(int position);
+
+	/**
+	 * Returns the largest position.
+	 *
+	 * @return the last position, or 0 if there are no positions
+	 */
+	public int last();
+
+	/**
+	 * Returns whether the positions are stored compressed.
+	 *
+	 * @return True if the positions are compressed
+	 */
+	public boolean isCompressed();
+
+	/**
+	 * Iterates over the positions in increasing order without boxing.
+	 *
+	 * @return iterator over the positions
+	 */
+	public PrimitiveIterator.OfInt positions();
+
+	/**
+	 * Returns the positions in increasing order.
+	 *
+	 * @return array of positions
+	 */
+	public default int[] toIntArray() {
+
+		int[] array = new int[size()];
+		var iterator = positions();
+
+		for (int i = 0; i < array.length; i++) {
+			array[i] = iterator.nextInt();
+		}
+
+		return array;
+	}
+}
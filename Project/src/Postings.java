@@ -0,0 +1,190 @@
+import java.util.Arrays;
+
+/**
+ * Postings for a single term: the IDs of the locations the term appears in,
+ * kept in increasing order, each paired with the positions of the term in that
+ * location.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ */
+public class Postings {
+
+	/** Shared empty location array for new postings. */
+	private static final int[] NO_LOCATIONS = new int[0];
+
+	/** Shared empty positions array for new postings. */
+	private static final Positions[] NO_POSITIONS = new Positions[0];
+
+	/** Sorted location IDs, only the first {@link #size} are in use. */
+	private int[] locations;
+
+	/** Positions for the location at the same index. */
+	private Positions[] positions;
+
+	/** Number of locations stored. */
+	private int size;
+
+	/** Creates empty postings. */
+	public Postings() {
+
+		this.locations = NO_LOCATIONS;
+		this.positions = NO_POSITIONS;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the positions for the location, adding an empty list if the
+	 * location is not present yet.
+	 *
+	 * @param location   the location ID
+	 * @param compressed whether a new list should store its positions compressed
+	 * @return the positions for that location
+	 */
+	public Positions getOrCreate(int location, boolean compressed) {
+
+		if (size > 0 && locations[size - 1] == location) {
+			// Words from the same file arrive one after another
+			return positions[size - 1];
+		}
+
+		int index = indexOf(location);
+
+		if (index >= 0) {
+
+			return positions[index];
+		}
+
+		Positions list = Positions.create(compressed);
+		insert(-(index + 1), location, list);
+		return list;
+	}
+
+	/**
+	 * Merges positions into the given location. If the location is not present
+	 * yet the list itself is stored, so the caller must not modify it afterwards.
+	 *
+	 * @param location the location ID
+	 * @param list     the positions to merge
+	 */
+	public void merge(int location, Positions list) {
+
+		int index = indexOf(location);
+
+		if (index >= 0) {
+
+			positions[index].addAll(list);
+
+		} else {
+
+			insert(-(index + 1), location, list);
+		}
+	}
+
+	/**
+	 * Removes a location and its positions.
+	 *
+	 * @param location the location ID
+	 * @return the positions of the location or {@code null} if it was not present
+	 */
+	public Positions remove(int location) {
+
+		int index = indexOf(location);
+
+		if (index < 0) {
+
+			return null;
+		}
+
+		Positions list = positions[index];
+
+		System.arraycopy(locations, index + 1, locations, index, size - index - 1);
+		System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+		size--;
+		positions[size] = null;
+
+		return list;
+	}
+
+	/**
+	 * Returns the positions for the location.
+	 *
+	 * @param location the location ID
+	 * @return the positions or {@code null} if the location is not present
+	 */
+	public Positions get(int location) {
+
+		int index = indexOf(location);
+		return index >= 0 ? positions[index] : null;
+	}
+
+	/**
+	 * Returns the location ID stored at the given index.
+	 *
+	 * @param index index between 0 and {@link #size()}
+	 * @return the location ID
+	 */
+	public int location(int index) {
+		return locations[index];
+	}
+
+	/**
+	 * Returns the positions stored at the given index.
+	 *
+	 * @param index index between 0 and {@link #size()}
+	 * @return the positions
+	 */
+	public Positions positions(int index) {
+		return positions[index];
+	}
+
+	/**
+	 * Returns the number of locations the term appears in.
+	 *
+	 * @return number of locations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Searches for the location ID.
+	 *
+	 * @param location the location ID
+	 * @return index of the location, or {@code -(insertion point) - 1} if absent
+	 */
+	private int indexOf(int location) {
+
+		if (size > 0 && locations[size - 1] < location) {
+
+			return -(size + 1);
+		}
+
+		return Arrays.binarySearch(locations, 0, size, location);
+	}
+
+	/**
+	 * Inserts a location and its positions at the given index.
+	 *
+	 * @param index    where to insert
+	 * @param location the location ID
+	 * @param list     the positions
+	 */
+	private void insert(int index, int location, Positions list) {
+
+		if (size == locations.length) {
+
+			int grown = size + (size >> 1) + 1;
+			locations = Arrays.copyOf(locations, grown);
+			positions = Arrays.copyOf(positions, grown);
+		}
+
+		System.arraycopy(locations, index, locations, index + 1, size - index);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		locations[index] = location;
+		positions[index] = list;
+		size++;
+	}
+}
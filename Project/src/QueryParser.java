@@ -16,8 +16,8 @@ import java.util.TreeSet;
 
 public class QueryParser implements QueryParserInterface {
 
-	/** The inverted index. */
-	private final InvertedIndex index;
+	/** The index to search. */
+	private final SearchableIndex index;
 
 	/** The search results. */
 	private final TreeMap<String, ArrayList<InvertedIndex.Result>> searchResults;
@@ -25,9 +25,9 @@ public class QueryParser implements QueryParserInterface {
 	/**
 	 * Constructor for query parser.
 	 *
-	 * @param index the inverted index
+	 * @param index the index to search
 	 */
-	public QueryParser(InvertedIndex index) {
+	public QueryParser(SearchableIndex index) {
 
 		this.index = index;
 		this.searchResults = new TreeMap<>();
@@ -49,7 +49,7 @@ public class QueryParser implements QueryParserInterface {
 			return;
 		}
 
-		String cleanedLine = String.join(" ", TextFileStemmer.uniqueStems(line));
+		String cleanedLine = String.join(" ", queries);
 
 		if (searchResults.containsKey(cleanedLine)) {
 			// Stop if search results already contains the query
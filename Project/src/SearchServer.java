@@ -25,7 +25,7 @@ public class SearchServer {
 	 * @param threads the number of threads used
 	 * @throws Exception
 	 */
-	public static void start(ThreadSafeInvertedIndex index, int PORT, int threads) throws Exception {
+	public static void start(ThreadSafeIndexInterface index, int PORT, int threads) throws Exception {
 
 		Server server = new Server(PORT);
 
@@ -36,7 +36,7 @@ public class SearchServlet extends CookieBaseServlet {
 	private static final String TITLE = "Search Engine";
 
 	/** The inverted index. */
-	private final ThreadSafeInvertedIndex index;
+	private final ThreadSafeIndexInterface index;
 
 	/** The logger. */
 	private static Logger log = Log.getRootLogger();
@@ -56,13 +56,19 @@ public class SearchServlet extends CookieBaseServlet {
 	/** The default stemmer algorithm. */
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
 
+	/** Number of results shown on each page of a search. */
+	public static final int RESULTS_PER_PAGE = 10;
+
+	/** Last page of results that can be asked for, so the rank never overflows. */
+	private static final int LAST_PAGE = Integer.MAX_VALUE / RESULTS_PER_PAGE - 2;
+
 	/**
 	 * Constructor for the search servlet.
 	 *
 	 * @param index   the inverted index
 	 * @param threads the number of threads to use
 	 */
-	public SearchServlet(ThreadSafeInvertedIndex index, int threads) {
+	public SearchServlet(ThreadSafeIndexInterface index, int threads) {
 
 		super();
 		this.index = index;
@@ -240,26 +246,42 @@ public class SearchServlet extends CookieBaseServlet {
 
 			session.setAttribute("searchHistory", searchHistory);
 
+			boolean lucky = request.getParameter("lucky") != null && request.getParameter("lucky").equals("true");
+			int page = 0; // Page of results shown, counted from 0
+
+			try {
+
+				page = Math.min(Math.max(0, Integer.parseInt(request.getParameter("page"))), LAST_PAGE);
+
+			} catch (NumberFormatException e) {
+				// No page or an invalid one shows the first page
+			}
+
+			int first = page * RESULTS_PER_PAGE; // Rank of the first result shown, counted from 0
+			int end = first + RESULTS_PER_PAGE;
+
 			for (String input : inputs) {
 
 				TreeSet<String> queries = TextFileStemmer.uniqueStems(input);
 
-				// Search and search duration
+				// Search and search duration, only ranking the results up to this page and
+				// one more to know whether there is a next page
 				long startTime = System.nanoTime();
 
-				ArrayList<InvertedIndex.Result> results = index.search(queries, radio.getValue().equals("exact"));
+				ArrayList<InvertedIndex.Result> results = index.search(queries, radio.getValue().equals("exact"),
+						lucky ? 1 : end + 1);
 
 				long endTime = System.nanoTime();
 
 				long duration = (endTime - startTime);
 
-				if (results.isEmpty()) {
+				if (results.size() <= first) {
 
 					out.printf("<span> No results.</span>%n");
 
 				} else {
 
-					if (request.getParameter("lucky") != null && request.getParameter("lucky").equals("true")) {
+					if (lucky) {
 
 						response.sendRedirect(results.get(0).getWhere());
 
@@ -267,9 +289,10 @@ public class SearchServlet extends CookieBaseServlet {
 
 						out.printf("<i>Time took to search: %s (nanoseconds)</i><br><br>", duration);
 
-						out.printf("<ol style=\"text-align:left; list-style-position:outside;\">");
+						out.printf("<ol start=\"%d\" style=\"text-align:left; list-style-position:outside;\">",
+								first + 1);
 
-						for (InvertedIndex.Result result : results) {
+						for (InvertedIndex.Result result : results.subList(first, Math.min(end, results.size()))) {
 
 							out.printf("<li><a href=\"%s\" target=\"_blank\"> %s</a><br>%n", result.getWhere(),
 									result.getWhere());
@@ -281,6 +304,25 @@ public class SearchServlet extends CookieBaseServlet {
 						out.printf("</ol>");
 					}
 				}
+
+				if (!lucky && (page > 0 || results.size() > end)) {
+					// Links to the pages before and after this one
+					out.printf("<nav class=\"pagination\" style=\"margin-top: 10px;\">%n");
+
+					if (page > 0) {
+
+						out.printf("<a class=\"pagination-previous\" href=\"%s?page=%d\">Previous</a>%n",
+								request.getServletPath(), page - 1);
+					}
+
+					if (results.size() > end) {
+
+						out.printf("<a class=\"pagination-next\" href=\"%s?page=%d\">Next</a>%n",
+								request.getServletPath(), page + 1);
+					}
+
+					out.printf("</nav>%n");
+				}
 			}
 		}
 
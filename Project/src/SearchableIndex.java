@@ -0,0 +1,82 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+/**
+ * Interface for indexes that can answer search queries.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see InvertedIndex
+ * @see IndexSegment
+ */
+public interface SearchableIndex {
+
+	/**
+	 * Search matches of the queries and returns a list of search results.
+	 *
+	 * @param queries the words to search
+	 * @param exact   exact or partial search
+	 * @return results a list of results sorted by {@link InvertedIndex.Result}
+	 */
+	public default ArrayList<InvertedIndex.Result> search(Collection<String> queries, boolean exact) {
+		return search(queries, exact, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Search matches of the queries and returns only the best k search results,
+	 * such as the first page of results.
+	 *
+	 * @param queries the words to search
+	 * @param exact   exact or partial search
+	 * @param k       the maximum number of results to return
+	 * @return results the first k results sorted by {@link InvertedIndex.Result}
+	 */
+	public ArrayList<InvertedIndex.Result> search(Collection<String> queries, boolean exact, int k);
+
+	/**
+	 * Sorts the results and keeps the best k. When there are more than k results,
+	 * a heap of the best k seen so far is kept instead of sorting every result.
+	 *
+	 * @param results the unsorted results, which may be reused for the return value
+	 * @param k       the maximum number of results to keep
+	 * @return the best k results in sorted order
+	 */
+	public static ArrayList<InvertedIndex.Result> top(ArrayList<InvertedIndex.Result> results, int k) {
+
+		if (results.size() <= k) {
+
+			Collections.sort(results);
+			return results;
+		}
+
+		if (k <= 0) {
+
+			return new ArrayList<>();
+		}
+
+		// The worst of the best k results so far is on top of the heap
+		PriorityQueue<InvertedIndex.Result> heap = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+
+		for (InvertedIndex.Result result : results) {
+
+			if (heap.size() < k) {
+
+				heap.add(result);
+
+			} else if (result.compareTo(heap.peek()) < 0) {
+
+				heap.poll();
+				heap.add(result);
+			}
+		}
+
+		ArrayList<InvertedIndex.Result> best = new ArrayList<>(heap);
+		Collections.sort(best);
+		return best;
+	}
+}
@@ -0,0 +1,787 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Thread safe inverted index split into shards by word. Each word belongs to
+ * exactly one shard, chosen by the hash of the word, and every shard is its own
+ * {@link InvertedIndex} with its own lock. Threads adding to the index at the
+ * same time only wait for each other when they need the same shard. A shard
+ * only holds the locations it has postings for.
+ *
+ * {@link #addAll(InvertedIndex)} merges into the shards in parallel as tasks on
+ * the work queue, and searches look up the queries in the shards that can hold
+ * them in parallel the same way, then combine the results by location. The word
+ * count of every location is kept once for the whole index, so the scores are
+ * the same as for an index without shards.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see ThreadSafeInvertedIndex
+ */
+public class ShardedInvertedIndex implements ThreadSafeIndexInterface {
+
+	/** The default number of shards. */
+	public static final int DEFAULT_SHARDS = 16;
+
+	/** The shards, each holding the words that hash to it. */
+	private final InvertedIndex[] shards;
+
+	/** The lock of each shard. */
+	private final ReentrantReadWriteLock[] locks;
+
+	/** Word count of every location in any shard. */
+	private final ConcurrentHashMap<String, Integer> wordCounts;
+
+	/** Whether positions are stored compressed. */
+	private final boolean compressed;
+
+	/** The work queue the shards are merged and searched on. */
+	private final WorkQueue queue;
+
+	/** Read-optimized copy of the whole index, set once the index is frozen. */
+	private volatile FrozenIndex frozen;
+
+	/**
+	 * Constructor for the sharded inverted index.
+	 *
+	 * @param shards     the number of shards
+	 * @param compressed whether to store positions compressed
+	 * @param queue      the work queue to merge and search the shards on
+	 */
+	public ShardedInvertedIndex(int shards, boolean compressed, WorkQueue queue) {
+
+		if (shards < 1) {
+
+			throw new IllegalArgumentException("There must be at least one shard.");
+		}
+
+		this.shards = new InvertedIndex[shards];
+		this.locks = new ReentrantReadWriteLock[shards];
+		this.wordCounts = new ConcurrentHashMap<>();
+		this.compressed = compressed;
+		this.queue = queue;
+		this.frozen = null;
+
+		for (int i = 0; i < shards; i++) {
+
+			this.shards[i] = new InvertedIndex(compressed);
+			this.locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * Returns the number of shards.
+	 *
+	 * @return the number of shards
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	@Override
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	@Override
+	public void add(String string, String location, int position) {
+
+		int shard = shardOf(string);
+
+		checkFrozen();
+		// Counted first so a search never finds a location without its word count
+		wordCounts.merge(location, position, Math::max);
+
+		try {
+
+			locks[shard].writeLock().lock();
+			checkFrozen();
+			shards[shard].add(string, location, position);
+
+		} finally {
+
+			locks[shard].writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void add(Collection<String> words, String location, int start) {
+
+		for (String string : words) {
+
+			add(string, location, start);
+			start++;
+		}
+	}
+
+	@Override
+	public void addAll(InvertedIndex local) {
+
+		checkFrozen();
+
+		for (var entry : local.getAllWordCount().entrySet()) {
+			// Counted first so a search never finds a location without its word count
+			wordCounts.merge(entry.getKey(), entry.getValue(), Math::max);
+		}
+
+		// Sorts the words into the shards they belong to
+		HashMap<Integer, ArrayList<String>> grouped = new HashMap<>();
+
+		for (String word : local.getWords()) {
+
+			grouped.computeIfAbsent(shardOf(word), shard -> new ArrayList<>()).add(word);
+		}
+
+		ArrayList<Integer> targets = new ArrayList<>(grouped.keySet());
+
+		fanOut(targets.size(), i -> {
+
+			int shard = targets.get(i);
+
+			try {
+
+				locks[shard].writeLock().lock();
+				checkFrozen();
+				shards[shard].addAll(local, grouped.get(shard));
+
+			} finally {
+
+				locks[shard].writeLock().unlock();
+			}
+		});
+	}
+
+	@Override
+	public boolean removeLocation(String location) {
+
+		checkFrozen();
+
+		for (int i = 0; i < shards.length; i++) {
+
+			try {
+
+				locks[i].writeLock().lock();
+				checkFrozen();
+				shards[i].removeLocation(location);
+
+			} finally {
+
+				locks[i].writeLock().unlock();
+			}
+		}
+
+		// Removed last so a search never finds a location without its word count
+		return wordCounts.remove(location) != null;
+	}
+
+	/**
+	 * Each shard is still only locked while its own part changes, so searches
+	 * of other words are not held up, but may see some changes before others.
+	 */
+	@Override
+	public void replaceLocations(Collection<String> removed, InvertedIndex added) {
+
+		for (String location : removed) {
+			removeLocation(location);
+		}
+
+		addAll(added);
+	}
+
+	@Override
+	public void load(Path path) throws IOException {
+
+		InvertedIndex loaded = new InvertedIndex(compressed);
+		loaded.load(path);
+		addAll(loaded);
+	}
+
+	@Override
+	public void indexToJson(Path path) throws IOException {
+
+		try {
+
+			lockAll(false);
+			combine().indexToJson(path);
+
+		} finally {
+
+			unlockAll(false);
+		}
+	}
+
+	@Override
+	public void wordCountsToJson(Path path) throws IOException {
+		SimpleJsonWriter.asObject(getAllWordCount(), path);
+	}
+
+	@Override
+	public void save(Path path) throws IOException {
+
+		try {
+
+			lockAll(false);
+			combine().save(path);
+
+		} finally {
+
+			unlockAll(false);
+		}
+	}
+
+	@Override
+	public void saveSegment(Path path) throws IOException {
+
+		try {
+
+			lockAll(false);
+			combine().saveSegment(path);
+
+		} finally {
+
+			unlockAll(false);
+		}
+	}
+
+	/**
+	 * Freezes the index. Any later attempt to modify the index throws an
+	 * {@link IllegalStateException}, and searches no longer visit the shards.
+	 */
+	@Override
+	public FrozenIndex freeze() {
+
+		try {
+
+			lockAll(true);
+
+			if (frozen == null) {
+
+				frozen = combine().freeze();
+			}
+
+			return frozen;
+
+		} finally {
+
+			unlockAll(true);
+		}
+	}
+
+	@Override
+	public boolean isFrozen() {
+		return frozen != null;
+	}
+
+	@Override
+	public Map<String, Integer> getAllWordCount() {
+		return Collections.unmodifiableMap(new TreeMap<>(wordCounts));
+	}
+
+	@Override
+	public Set<String> getLocations() {
+		return Collections.unmodifiableSet(new TreeSet<>(wordCounts.keySet()));
+	}
+
+	@Override
+	public boolean hasLocation(String location) {
+		return wordCounts.containsKey(location);
+	}
+
+	@Override
+	public int getWordCount(String location) {
+		return wordCounts.getOrDefault(location, 0);
+	}
+
+	@Override
+	public Set<String> getWords() {
+
+		TreeSet<String> words = new TreeSet<>();
+
+		for (int i = 0; i < shards.length; i++) {
+
+			try {
+
+				locks[i].readLock().lock();
+				words.addAll(shards[i].getWords());
+
+			} finally {
+
+				locks[i].readLock().unlock();
+			}
+		}
+
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public int getTotalWords() {
+
+		int total = 0;
+
+		for (int i = 0; i < shards.length; i++) {
+
+			try {
+
+				locks[i].readLock().lock();
+				total += shards[i].getTotalWords();
+
+			} finally {
+
+				locks[i].readLock().unlock();
+			}
+		}
+
+		return total;
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+
+		int shard = shardOf(word);
+
+		try {
+
+			locks[shard].readLock().lock();
+			return shards[shard].hasWord(word);
+
+		} finally {
+
+			locks[shard].readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean hasLocation(String word, String location) {
+
+		int shard = shardOf(word);
+
+		try {
+
+			locks[shard].readLock().lock();
+			return shards[shard].hasLocation(word, location);
+
+		} finally {
+
+			locks[shard].readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+
+		int shard = shardOf(word);
+
+		try {
+
+			locks[shard].readLock().lock();
+			return Collections.unmodifiableSet(new TreeSet<>(shards[shard].getLocations(word)));
+
+		} finally {
+
+			locks[shard].readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean hasPosition(String word, String location, int position) {
+
+		int shard = shardOf(word);
+
+		try {
+
+			locks[shard].readLock().lock();
+			return shards[shard].hasPosition(word, location, position);
+
+		} finally {
+
+			locks[shard].readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+
+		int shard = shardOf(word);
+
+		try {
+
+			locks[shard].readLock().lock();
+			return Collections.unmodifiableSet(new TreeSet<>(shards[shard].getPositions(word, location)));
+
+		} finally {
+
+			locks[shard].readLock().unlock();
+		}
+	}
+
+	@Override
+	public ArrayList<InvertedIndex.Result> search(Collection<String> queries, boolean exact, int k) {
+		return exact ? exactSearch(queries, k) : partialSearch(queries, k);
+	}
+
+	/**
+	 * Finds exact search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the best k Result objects in sorted order
+	 */
+	public ArrayList<InvertedIndex.Result> exactSearch(Collection<String> queries, int k) {
+
+		FrozenIndex snapshot = frozen;
+
+		if (snapshot != null) {
+
+			return snapshot.exactSearch(queries, k);
+		}
+
+		// Each word can only be in one shard, so only that shard is searched for it
+		HashMap<Integer, ArrayList<String>> grouped = new HashMap<>();
+
+		for (String query : queries) {
+
+			grouped.computeIfAbsent(shardOf(query), shard -> new ArrayList<>()).add(query);
+		}
+
+		ArrayList<Integer> targets = new ArrayList<>(grouped.keySet());
+
+		return searchShards(targets, shard -> shards[shard].exactMatches(grouped.get(shard)), k);
+	}
+
+	/**
+	 * Finds partial search results and returns the best k Result objects.
+	 *
+	 * @param queries the words to query
+	 * @param k       the maximum number of results to return
+	 * @return results the best k Result objects in sorted order
+	 */
+	public ArrayList<InvertedIndex.Result> partialSearch(Collection<String> queries, int k) {
+
+		FrozenIndex snapshot = frozen;
+
+		if (snapshot != null) {
+
+			return snapshot.partialSearch(queries, k);
+		}
+
+		// Words starting with the same prefix can be in any shard
+		ArrayList<Integer> targets = new ArrayList<>(shards.length);
+
+		for (int shard = 0; shard < shards.length; shard++) {
+
+			targets.add(shard);
+		}
+
+		return searchShards(targets, shard -> shards[shard].partialMatches(queries), k);
+	}
+
+	/**
+	 * Searches several shards in parallel, each under its read lock, and
+	 * combines their matches by location, scoring them by the word counts of the
+	 * whole index.
+	 *
+	 * @param targets the shards to search
+	 * @param search  the search of one shard, given the index of the shard
+	 * @param k       the maximum number of results to return
+	 * @return the best k results in sorted order
+	 */
+	private ArrayList<InvertedIndex.Result> searchShards(ArrayList<Integer> targets, ShardSearch search, int k) {
+
+		ArrayList<ArrayList<InvertedIndex.Result>> found = new ArrayList<>(Collections.nCopies(targets.size(), null));
+
+		fanOut(targets.size(), i -> {
+
+			int shard = targets.get(i);
+
+			try {
+
+				locks[shard].readLock().lock();
+				found.set(i, search.matches(shard));
+
+			} finally {
+
+				locks[shard].readLock().unlock();
+			}
+		});
+
+		HashMap<String, InvertedIndex.Result> combined = new HashMap<>();
+
+		for (ArrayList<InvertedIndex.Result> matches : found) {
+
+			for (InvertedIndex.Result match : matches) {
+
+				InvertedIndex.Result result = combined.get(match.getWhere());
+
+				if (result == null) {
+
+					result = new InvertedIndex.Result(match.getWhere());
+					combined.put(match.getWhere(), result);
+				}
+
+				result.updateCount(match.getCount(), getWordCount(match.getWhere()));
+			}
+		}
+
+		return SearchableIndex.top(new ArrayList<>(combined.values()), k);
+	}
+
+	/**
+	 * Runs a number of tasks on the work queue and waits for all of them. The
+	 * calling thread also runs any task no worker has started yet, so it only
+	 * ever waits for tasks already running, even when it is a worker of the same
+	 * queue itself.
+	 *
+	 * @param count the number of tasks
+	 * @param task  the task, given its number
+	 */
+	private void fanOut(int count, IntConsumer task) {
+
+		if (count == 1) {
+			// Nothing to run in parallel
+			task.accept(0);
+			return;
+		}
+
+		FanOut tasks = new FanOut(count, task);
+
+		for (int i = 1; i < count; i++) {
+			queue.execute(tasks);
+		}
+
+		tasks.run();
+		tasks.await();
+	}
+
+	/**
+	 * Returns the shard that holds the word.
+	 *
+	 * @param word the word
+	 * @return the index of the shard
+	 */
+	private int shardOf(String word) {
+		return Math.floorMod(word.hashCode(), shards.length);
+	}
+
+	/**
+	 * Combines all shards into a single index, which shares the positions of the
+	 * shards. Must be called while holding the locks of all shards, and the
+	 * combined index must not be used after they are released.
+	 *
+	 * @return the combined index
+	 */
+	private InvertedIndex combine() {
+
+		InvertedIndex combined = new InvertedIndex(compressed);
+
+		for (InvertedIndex shard : shards) {
+
+			combined.addAll(shard);
+		}
+
+		// Locations are only in the shards of their words, so the counts come from here
+		combined.addLocations(wordCounts);
+		return combined;
+	}
+
+	/**
+	 * Takes the lock of every shard, always in the same order.
+	 *
+	 * @param write whether to take the write locks instead of the read locks
+	 */
+	private void lockAll(boolean write) {
+
+		for (ReentrantReadWriteLock lock : locks) {
+
+			if (write) {
+
+				lock.writeLock().lock();
+
+			} else {
+
+				lock.readLock().lock();
+			}
+		}
+	}
+
+	/**
+	 * Releases the lock of every shard held by this thread.
+	 *
+	 * @param write whether to release the write locks instead of the read locks
+	 */
+	private void unlockAll(boolean write) {
+
+		for (ReentrantReadWriteLock lock : locks) {
+
+			if (write && lock.isWriteLockedByCurrentThread()) {
+
+				lock.writeLock().unlock();
+
+			} else if (!write && lock.getReadHoldCount() > 0) {
+
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Rejects modifications once the index is frozen. Only certain while holding
+	 * a write lock.
+	 *
+	 * @throws IllegalStateException if the index is frozen
+	 */
+	private void checkFrozen() {
+
+		if (frozen != null) {
+
+			throw new IllegalStateException("Cannot modify a frozen inverted index.");
+		}
+	}
+
+	/** The search of one shard. */
+	@FunctionalInterface
+	private interface ShardSearch {
+
+		/**
+		 * Finds the matches in a shard. Called while holding its read lock.
+		 *
+		 * @param shard the index of the shard
+		 * @return the unsorted matches
+		 */
+		ArrayList<InvertedIndex.Result> matches(int shard);
+	}
+
+	/**
+	 * Tasks shared by the work queue and the calling thread. Every thread that
+	 * runs it takes the next task nobody has taken yet until none are left.
+	 */
+	private static class FanOut implements Runnable {
+
+		/** The number of tasks. */
+		private final int count;
+
+		/** The task, given its number. */
+		private final IntConsumer task;
+
+		/** The number of the next task nobody has taken. */
+		private int next;
+
+		/** The number of tasks done. */
+		private int done;
+
+		/** The first failure of any task. */
+		private RuntimeException failure;
+
+		/**
+		 * Creates the tasks.
+		 *
+		 * @param count the number of tasks
+		 * @param task  the task, given its number
+		 */
+		private FanOut(int count, IntConsumer task) {
+
+			this.count = count;
+			this.task = task;
+			this.next = 0;
+			this.done = 0;
+			this.failure = null;
+		}
+
+		@Override
+		public void run() {
+
+			int current;
+
+			while ((current = take()) >= 0) {
+
+				try {
+
+					task.accept(current);
+
+				} catch (RuntimeException e) {
+
+					fail(e);
+
+				} finally {
+
+					finishTask();
+				}
+			}
+		}
+
+		/**
+		 * Takes the next task nobody has taken yet.
+		 *
+		 * @return the number of the task, or -1 if none are left
+		 */
+		private synchronized int take() {
+			return next < count ? next++ : -1;
+		}
+
+		/**
+		 * Keeps the first failure to throw once all tasks are done.
+		 *
+		 * @param e the failure
+		 */
+		private synchronized void fail(RuntimeException e) {
+
+			if (failure == null) {
+
+				failure = e;
+			}
+		}
+
+		/** Marks a task as done, and wakes up the waiting thread once all are. */
+		private synchronized void finishTask() {
+
+			done++;
+
+			if (done == count) {
+				this.notifyAll();
+			}
+		}
+
+		/**
+		 * Waits until all tasks are done, then throws the first failure of any.
+		 */
+		private synchronized void await() {
+
+			boolean interrupted = false;
+
+			while (done < count) {
+
+				try {
+
+					this.wait();
+
+				} catch (InterruptedException e) {
+					// The tasks still use the index, so keep waiting for them
+					interrupted = true;
+				}
+			}
+
+			if (interrupted) {
+
+				Thread.currentThread().interrupt();
+			}
+
+			if (failure != null) {
+
+				throw failure;
+			}
+		}
+	}
+}
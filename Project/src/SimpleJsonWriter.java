@@ -8,10 +8,10 @@ import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines
@@ -288,12 +288,27 @@ public class SimpleJsonWriter {
 	 * @param level    the initial indent level
 	 * @throws IOException
 	 */
-	public static void invertedIndexJSON(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
+	public static void invertedIndexJSON(Map<String, ? extends Map<String, ? extends Collection<Integer>>> elements, Writer writer,
 			int level) throws IOException {
+		invertedIndexJSON(elements.entrySet().iterator(), writer, level);
+	}
+
+	/**
+	 * Writes the entries of an inverted index as a pretty JSON object, iterating
+	 * them only once in order.
+	 *
+	 * @param entries the entries to write, in word order
+	 * @param writer  the writer to use
+	 * @param level   the initial indent level
+	 * @throws IOException
+	 */
+	public static void invertedIndexJSON(
+			Iterator<? extends Entry<String, ? extends Map<String, ? extends Collection<Integer>>>> entries,
+			Writer writer, int level) throws IOException {
 
 		writer.write("{");
 
-		var wordIterator = elements.entrySet().iterator();
+		var wordIterator = entries;
 		level++;
 
 		if (wordIterator.hasNext()) {
@@ -322,7 +337,7 @@ public class SimpleJsonWriter {
 	 * @param level    the initial indent level
 	 * @throws IOException
 	 */
-	public static void writeInvertedIndexEntry(Entry<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
+	public static void writeInvertedIndexEntry(Entry<String, ? extends Map<String, ? extends Collection<Integer>>> elements, Writer writer,
 			int level) throws IOException {
 
 		quote(elements.getKey(), writer, level);
@@ -360,7 +375,7 @@ public class SimpleJsonWriter {
 	 * @param path     the file path to use
 	 * @throws IOException
 	 */
-	public static void invertedIndexJSON(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Path path)
+	public static void invertedIndexJSON(Map<String, ? extends Map<String, ? extends Collection<Integer>>> elements, Path path)
 			throws IOException {
 		// THIS CODE IS PROVIDED FOR YOU; DO NOT MODIFY
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
@@ -368,13 +383,30 @@ public class SimpleJsonWriter {
 		}
 	}
 
+	/**
+	 * Writes the entries of an inverted index as a pretty JSON object to file,
+	 * iterating them only once in order.
+	 *
+	 * @param entries the entries to write, in word order
+	 * @param path    the file path to use
+	 * @throws IOException
+	 */
+	public static void invertedIndexJSON(
+			Iterator<? extends Entry<String, ? extends Map<String, ? extends Collection<Integer>>>> entries,
+			Path path) throws IOException {
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			invertedIndexJSON(entries, writer, 0);
+		}
+	}
+
 	/**
 	 * Returns the elements as a nested pretty JSON object.
 	 *
 	 * @param elements the elements to use
 	 * @return a {@link String} containing the elements in pretty JSON format
 	 */
-	public static String invertedIndexJSON(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements) {
+	public static String invertedIndexJSON(Map<String, ? extends Map<String, ? extends Collection<Integer>>> elements) {
 		// THIS CODE IS PROVIDED FOR YOU; DO NOT MODIFY
 		try {
 			StringWriter writer = new StringWriter();
@@ -0,0 +1,492 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Builds an index too large for the heap in bounded memory. Words are added to
+ * an in-memory block until its estimated size reaches a budget, then the block
+ * is written to a temporary directory as a sorted run in the snapshot format
+ * and a new block is started. The runs are finally merged term by term into an
+ * index segment or the JSON outputs, with only the postings of one term in
+ * memory at a time.
+ *
+ * A file may be split across runs, in which case its later positions are in the
+ * later runs, so merging the runs in order keeps its positions in order.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see IndexSnapshot
+ * @see IndexSegment
+ */
+public class SpillingIndexBuilder implements Closeable {
+
+	/** The default memory budget of a block in bytes. */
+	public static final long DEFAULT_BUDGET = 256L << 20;
+
+	/** Estimated bytes used by each position in a block, with its share of postings. */
+	private static final int POSITION_BYTES = 20;
+
+	/** Estimated bytes used by each distinct word in a block. */
+	private static final int TERM_BYTES = 128;
+
+	/** The directory the runs are written to. */
+	private final Path directory;
+
+	/** The memory budget of a block in bytes. */
+	private final long budget;
+
+	/** Whether positions are stored compressed. */
+	private final boolean compressed;
+
+	/** The runs written so far, in order. */
+	private final ArrayList<Path> runs;
+
+	/** The block being filled. */
+	private InvertedIndex block;
+
+	/** Number of positions in the block. */
+	private long positions;
+
+	/**
+	 * Creates a builder.
+	 *
+	 * @param directory  the directory to write the runs to
+	 * @param budget     the memory budget of a block in bytes
+	 * @param compressed whether to store positions compressed
+	 */
+	public SpillingIndexBuilder(Path directory, long budget, boolean compressed) {
+
+		this.directory = directory;
+		this.budget = budget;
+		this.compressed = compressed;
+		this.runs = new ArrayList<>();
+		this.block = new InvertedIndex(compressed);
+		this.positions = 0;
+	}
+
+	/**
+	 * Adds every text file under a path, in the same order as
+	 * {@link IndexBuilder#create(Path)}, and writes out the last block.
+	 *
+	 * @param path the path from the flag "-path"
+	 * @throws IOException if unable to read a file or write a run
+	 */
+	public void create(Path path) throws IOException {
+
+		ArrayList<Path> files = new ArrayList<>();
+		IndexBuilder.findTextFiles(path, files);
+
+		for (Path file : files) {
+			addToIndex(file);
+		}
+
+		spill();
+	}
+
+	/**
+	 * Parses the words of a text file into the block, writing the block out
+	 * whenever it reaches the budget, even in the middle of the file.
+	 *
+	 * @param file the text file
+	 * @throws IOException if unable to read the file or write a run
+	 */
+	public void addToIndex(Path file) throws IOException {
+
+		int position = 0;
+		ArrayList<String> words = new ArrayList<>(); // Reused for every line
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+			String line = null;
+			String location = file.toString();
+
+			while ((line = reader.readLine()) != null) {
+
+				int last = IndexBuilder.addLine(line, location, position, block, words);
+
+				positions += last - position;
+				position = last;
+
+				if (positions * POSITION_BYTES + (long) block.getTotalWords() * TERM_BYTES >= budget) {
+					spill();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the block out as a run, unless it is empty, and starts a new one.
+	 *
+	 * @throws IOException if unable to write the run
+	 */
+	private void spill() throws IOException {
+
+		if (positions == 0) {
+			return;
+		}
+
+		Path run = Files.createTempFile(directory, "run", ".bin");
+
+		runs.add(run);
+		block.save(run);
+		block = new InvertedIndex(compressed);
+		positions = 0;
+	}
+
+	/**
+	 * Returns the number of runs written.
+	 *
+	 * @return number of runs
+	 */
+	public int getRuns() {
+		return runs.size();
+	}
+
+	/**
+	 * Merges the runs into an index segment.
+	 *
+	 * @param path the segment file to write
+	 * @throws IOException if unable to read a run or write the segment
+	 */
+	public void saveSegment(Path path) throws IOException {
+
+		try (Merge merge = new Merge()) {
+
+			IndexSegment.write(path, merge.locations, merge.wordCounts, merge);
+
+		} catch (UncheckedIOException e) {
+
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Merges the runs into the inverted index JSON.
+	 *
+	 * @param path path of file
+	 * @throws IOException if unable to read a run or write the file
+	 */
+	public void indexToJson(Path path) throws IOException {
+
+		try (Merge merge = new Merge()) {
+
+			SimpleJsonWriter.invertedIndexJSON(new ResolvedMerge(merge), path);
+
+		} catch (UncheckedIOException e) {
+
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes the word count of every location as JSON. Only the location tables
+	 * of the runs are read.
+	 *
+	 * @param path path of file
+	 * @throws IOException if unable to read a run or write the file
+	 */
+	public void wordCountsToJson(Path path) throws IOException {
+
+		TreeMap<String, Integer> counts = new TreeMap<>();
+
+		try (Merge merge = new Merge()) {
+
+			for (int id = 0; id < merge.locations.size(); id++) {
+
+				counts.put(merge.locations.get(id), merge.wordCounts[id]);
+			}
+		}
+
+		SimpleJsonWriter.asObject(counts, path);
+	}
+
+	/**
+	 * Deletes the runs.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+
+		runs.clear();
+	}
+
+	/** A run being read one term at a time. */
+	private class Run {
+
+		/** Position of the run among all runs, to break ties in order. */
+		private final int order;
+
+		/** The run file. */
+		private final DataInputStream in;
+
+		/** The merged location ID of each location ID in the run. */
+		private final int[] mapped;
+
+		/** Number of terms not read yet. */
+		private int remaining;
+
+		/** The current term, whose postings are read next. */
+		private String term;
+
+		/**
+		 * Opens a run and reads its locations.
+		 *
+		 * @param order     position of the run among all runs
+		 * @param path      the run file
+		 * @param locations the merged location IDs to add the locations to
+		 * @param counts    the merged word counts to update
+		 * @throws IOException if unable to read the run
+		 */
+		private Run(int order, Path path, HashMap<String, Integer> locations, ArrayList<Integer> counts)
+				throws IOException {
+
+			this.order = order;
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+
+			try {
+
+				IndexSnapshot.readHeader(in);
+				this.mapped = new int[IndexSnapshot.readVarInt(in)];
+
+				for (int id = 0; id < mapped.length; id++) {
+
+					String location = in.readUTF();
+					int count = IndexSnapshot.readVarInt(in);
+					Integer merged = locations.putIfAbsent(location, locations.size());
+
+					if (merged == null) {
+
+						mapped[id] = counts.size();
+						counts.add(count);
+
+					} else {
+
+						mapped[id] = merged;
+						counts.set(merged, Math.max(counts.get(merged), count));
+					}
+				}
+
+				this.remaining = IndexSnapshot.readVarInt(in);
+
+			} catch (IOException | RuntimeException e) {
+
+				in.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Moves to the next term.
+		 *
+		 * @return True if there was another term
+		 * @throws IOException if unable to read the run
+		 */
+		private boolean advance() throws IOException {
+
+			if (remaining == 0) {
+
+				term = null;
+				return false;
+			}
+
+			remaining--;
+			term = in.readUTF();
+			return true;
+		}
+
+		/**
+		 * Reads the postings of the current term into merged postings.
+		 *
+		 * @param postings the merged postings
+		 * @throws IOException if unable to read the run
+		 */
+		private void readPostings(Postings postings) throws IOException {
+
+			int size = IndexSnapshot.readVarInt(in);
+
+			for (int i = 0; i < size; i++) {
+
+				int location = IndexSnapshot.readVarInt(in);
+
+				if (location < 0 || location >= mapped.length) {
+
+					throw new IOException("Invalid location in index run: " + location);
+				}
+
+				postings.merge(mapped[location], IndexSnapshot.readPositions(in, compressed));
+			}
+		}
+	}
+
+	/**
+	 * K-way merge of all runs, giving each term once in sorted order with its
+	 * postings from every run. Read errors are thrown as
+	 * {@link UncheckedIOException}.
+	 */
+	private class Merge implements Iterator<Map.Entry<String, Postings>>, Closeable {
+
+		/** The merged location names by location ID. */
+		private final ArrayList<String> locations;
+
+		/** The merged word counts by location ID. */
+		private final int[] wordCounts;
+
+		/** The open runs. */
+		private final ArrayList<Run> open;
+
+		/** Runs with terms left, by their current term and then their order. */
+		private final PriorityQueue<Run> queue;
+
+		/**
+		 * Opens every run and merges their locations.
+		 *
+		 * @throws IOException if unable to read a run
+		 */
+		private Merge() throws IOException {
+
+			HashMap<String, Integer> ids = new HashMap<>();
+			ArrayList<Integer> counts = new ArrayList<>();
+
+			this.open = new ArrayList<>(runs.size());
+			this.queue = new PriorityQueue<>(Math.max(1, runs.size()),
+					(a, b) -> a.term.equals(b.term) ? Integer.compare(a.order, b.order) : a.term.compareTo(b.term));
+
+			try {
+
+				for (Path path : runs) {
+
+					Run run = new Run(open.size(), path, ids, counts);
+					open.add(run);
+
+					if (run.advance()) {
+						queue.add(run);
+					}
+				}
+
+			} catch (IOException | RuntimeException e) {
+
+				close();
+				throw e;
+			}
+
+			String[] names = new String[ids.size()];
+
+			for (var entry : ids.entrySet()) {
+
+				names[entry.getValue()] = entry.getKey();
+			}
+
+			this.locations = new ArrayList<>(Arrays.asList(names));
+			this.wordCounts = counts.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		@Override
+		public Map.Entry<String, Postings> next() {
+
+			if (queue.isEmpty()) {
+
+				throw new NoSuchElementException();
+			}
+
+			String term = queue.peek().term;
+			Postings postings = new Postings();
+
+			try {
+
+				// Equal terms come out in run order, so positions are merged in order
+				while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+
+					Run run = queue.poll();
+					run.readPostings(postings);
+
+					if (run.advance()) {
+						queue.add(run);
+					}
+				}
+
+			} catch (EOFException e) {
+
+				throw new UncheckedIOException(new IOException("Truncated index run.", e));
+
+			} catch (IOException e) {
+
+				throw new UncheckedIOException(e);
+			}
+
+			return Map.entry(term, postings);
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			for (Run run : open) {
+				run.in.close();
+			}
+		}
+	}
+
+	/**
+	 * Iterates a merge for the JSON writer, resolving the location IDs of each
+	 * term to names as it goes.
+	 */
+	private static class ResolvedMerge implements Iterator<Map.Entry<String, TreeMap<String, Positions>>> {
+
+		/** The merge to iterate. */
+		private final Merge merge;
+
+		/**
+		 * Wraps a merge.
+		 *
+		 * @param merge the merge to iterate
+		 */
+		private ResolvedMerge(Merge merge) {
+			this.merge = merge;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return merge.hasNext();
+		}
+
+		@Override
+		public Map.Entry<String, TreeMap<String, Positions>> next() {
+
+			var entry = merge.next();
+			Postings postings = entry.getValue();
+			TreeMap<String, Positions> resolved = new TreeMap<>();
+
+			for (int i = 0; i < postings.size(); i++) {
+
+				resolved.put(merge.locations.get(postings.location(i)), postings.positions(i));
+			}
+
+			return Map.entry(entry.getKey(), resolved);
+		}
+	}
+}
@@ -0,0 +1,479 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Term dictionary stored as a compressed prefix trie, mapping each word to its
+ * term ID. Chains of nodes with a single child are merged into one edge, and
+ * the label of every edge is read straight out of a word stored below it, so
+ * the trie does not copy any characters.
+ *
+ * Every node counts the words stored beneath it. Finding all words that start
+ * with a prefix only walks down the characters of the prefix and then visits
+ * the matching subtree, so the cost depends on the number of matches rather
+ * than the size of the vocabulary. Iteration is in sorted word order, the same
+ * order as a {@link java.util.TreeMap}.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see InvertedIndex
+ */
+public class TermTrie extends AbstractMap<String, Integer> {
+
+	/** Value returned when a word has no term ID. */
+	public static final int MISSING = -1;
+
+	/** Single node of the trie. */
+	private static class Node {
+
+		/** Shared empty key array for new nodes. */
+		private static final char[] NO_KEYS = new char[0];
+
+		/** Shared empty child array for new nodes. */
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		/**
+		 * A word in this subtree, the word of this node if it has one. The first
+		 * {@link #depth} characters spell the path from the root to this node.
+		 */
+		private String word;
+
+		/** Number of characters from the root to this node. */
+		private final int depth;
+
+		/** Term ID of the word ending at this node, or {@link #MISSING}. */
+		private int term;
+
+		/** Number of words ending at or below this node. */
+		private int count;
+
+		/** First character of the edge to each child, in sorted order. */
+		private char[] keys;
+
+		/** Children, in the same order as {@link #keys}. */
+		private Node[] children;
+
+		/**
+		 * Creates a node without a word.
+		 *
+		 * @param word  a word in the subtree of the node
+		 * @param depth the number of characters from the root
+		 */
+		private Node(String word, int depth) {
+
+			this.word = word;
+			this.depth = depth;
+			this.term = MISSING;
+			this.count = 0;
+			this.keys = NO_KEYS;
+			this.children = NO_CHILDREN;
+		}
+
+		/**
+		 * Finds the child whose edge starts with the character.
+		 *
+		 * @param c the first character of the edge
+		 * @return the index of the child, or {@code -(insertion point) - 1}
+		 */
+		private int indexOf(char c) {
+			return Arrays.binarySearch(keys, c);
+		}
+
+		/**
+		 * Inserts a child at the index.
+		 *
+		 * @param index the index to insert at
+		 * @param child the child to insert
+		 */
+		private void insert(int index, Node child) {
+
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = child.word.charAt(depth);
+			newChildren[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+			this.keys = newKeys;
+			this.children = newChildren;
+		}
+
+		/**
+		 * Removes the child at the index.
+		 *
+		 * @param index the index to remove
+		 */
+		private void remove(int index) {
+
+			char[] newKeys = new char[keys.length - 1];
+			Node[] newChildren = new Node[children.length - 1];
+
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+			System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+
+			this.keys = newKeys;
+			this.children = newChildren;
+		}
+	}
+
+	/** The root, which stands for the empty prefix. */
+	private final Node root;
+
+	/** Creates an empty trie. */
+	public TermTrie() {
+		this.root = new Node("", 0);
+	}
+
+	/**
+	 * Adds the word with the term ID, replacing any ID it already had.
+	 *
+	 * @param word the word to add
+	 * @param term the term ID
+	 * @return True if the word was not in the trie before
+	 */
+	public boolean add(String word, int term) {
+		return add(root, word, term);
+	}
+
+	/**
+	 * Returns the term ID of the word.
+	 *
+	 * @param word the word to look up
+	 * @return the term ID or {@link #MISSING} if the word is not in the trie
+	 */
+	public int find(String word) {
+
+		Node node = locate(word);
+		return node != null && node.depth == word.length() ? node.term : MISSING;
+	}
+
+	/**
+	 * Returns the number of words that start with the prefix.
+	 *
+	 * @param prefix the prefix to count
+	 * @return number of words with the prefix
+	 */
+	public int count(String prefix) {
+
+		Node node = locate(prefix);
+		return node == null ? 0 : node.count;
+	}
+
+	/**
+	 * Passes the term ID of every word that starts with the prefix to the action,
+	 * in sorted word order.
+	 *
+	 * @param prefix the prefix to match
+	 * @param action the action for each term ID
+	 */
+	public void forEachPrefixed(String prefix, IntConsumer action) {
+
+		Node node = locate(prefix);
+
+		if (node != null) {
+
+			visit(node, action);
+		}
+	}
+
+	@Override
+	public Integer get(Object key) {
+
+		if (key instanceof String) {
+
+			int term = find((String) key);
+			return term == MISSING ? null : term;
+		}
+
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && find((String) key) != MISSING;
+	}
+
+	@Override
+	public Integer put(String key, Integer value) {
+
+		Integer previous = get(key);
+		add(key, value);
+		return previous;
+	}
+
+	@Override
+	public Integer remove(Object key) {
+
+		if (key instanceof String) {
+
+			int term = remove(root, (String) key);
+			return term == MISSING ? null : term;
+		}
+
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return root.count;
+	}
+
+	@Override
+	public Set<Entry<String, Integer>> entrySet() {
+
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<Entry<String, Integer>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return root.count;
+			}
+		};
+	}
+
+	/**
+	 * Adds the word below the node.
+	 *
+	 * @param node the node to add below, which the word passes through
+	 * @param word the word to add
+	 * @param term the term ID
+	 * @return True if the word was not in the trie before
+	 */
+	private static boolean add(Node node, String word, int term) {
+
+		if (node.depth == word.length()) {
+
+			boolean added = node.term == MISSING;
+
+			// The word of a node must spell out its own path once it has one
+			node.word = word;
+			node.term = term;
+
+			if (added) {
+
+				node.count++;
+			}
+
+			return added;
+		}
+
+		int index = node.indexOf(word.charAt(node.depth));
+
+		if (index < 0) {
+
+			Node leaf = new Node(word, word.length());
+
+			leaf.term = term;
+			leaf.count = 1;
+			node.insert(-(index + 1), leaf);
+			node.count++;
+			return true;
+		}
+
+		Node child = node.children[index];
+		int common = node.depth + 1;
+
+		while (common < child.depth && common < word.length() && child.word.charAt(common) == word.charAt(common)) {
+			common++;
+		}
+
+		if (common < child.depth) {
+			// The word leaves the edge part way, so the edge is split in two
+			Node middle = new Node(child.word, common);
+
+			middle.count = child.count;
+			middle.insert(0, child);
+			node.children[index] = middle;
+			child = middle;
+		}
+
+		boolean added = add(child, word, term);
+
+		if (added) {
+
+			node.count++;
+		}
+
+		return added;
+	}
+
+	/**
+	 * Removes the word below the node, along with any nodes left without words.
+	 *
+	 * @param node the node to remove below, which the word passes through
+	 * @param word the word to remove
+	 * @return the term ID the word had, or {@link #MISSING} if it was not in the
+	 *         trie
+	 */
+	private static int remove(Node node, String word) {
+
+		if (node.depth == word.length()) {
+
+			int term = node.term;
+
+			if (term != MISSING) {
+
+				node.term = MISSING;
+				node.count--;
+			}
+
+			return term;
+		}
+
+		int index = node.indexOf(word.charAt(node.depth));
+
+		if (index < 0) {
+
+			return MISSING;
+		}
+
+		Node child = node.children[index];
+
+		if (child.depth > word.length()
+				|| !child.word.regionMatches(node.depth + 1, word, node.depth + 1, child.depth - node.depth - 1)) {
+
+			return MISSING;
+		}
+
+		int term = remove(child, word);
+
+		if (term != MISSING) {
+
+			node.count--;
+
+			if (child.count == 0) {
+
+				node.remove(index);
+			}
+		}
+
+		return term;
+	}
+
+	/**
+	 * Finds the highest node whose subtree holds exactly the words starting with
+	 * the prefix.
+	 *
+	 * @param prefix the prefix to find
+	 * @return the node or {@code null} if no word starts with the prefix
+	 */
+	private Node locate(String prefix) {
+
+		Node node = root;
+
+		while (node.depth < prefix.length()) {
+
+			int index = node.indexOf(prefix.charAt(node.depth));
+
+			if (index < 0) {
+
+				return null;
+			}
+
+			Node child = node.children[index];
+			int end = Math.min(child.depth, prefix.length());
+
+			if (!child.word.regionMatches(node.depth + 1, prefix, node.depth + 1, end - node.depth - 1)) {
+
+				return null;
+			}
+
+			node = child;
+		}
+
+		return node;
+	}
+
+	/**
+	 * Passes the term IDs of the node and its subtree to the action in sorted word
+	 * order.
+	 *
+	 * @param node   the node to visit
+	 * @param action the action for each term ID
+	 */
+	private static void visit(Node node, IntConsumer action) {
+
+		if (node.term != MISSING) {
+
+			action.accept(node.term);
+		}
+
+		for (Node child : node.children) {
+			visit(child, action);
+		}
+	}
+
+	/** Iterates through the words and term IDs in sorted word order. */
+	private class EntryIterator implements Iterator<Entry<String, Integer>> {
+
+		/** Nodes left to visit, the next one on top. */
+		private final ArrayDeque<Node> pending;
+
+		/** The next node with a word, or {@code null} when done. */
+		private Node next;
+
+		/** Starts iterating from the root. */
+		private EntryIterator() {
+
+			this.pending = new ArrayDeque<>();
+			this.pending.push(root);
+			advance();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Entry<String, Integer> next() {
+
+			if (next == null) {
+
+				throw new NoSuchElementException();
+			}
+
+			Entry<String, Integer> entry = Map.entry(next.word, next.term);
+			advance();
+			return entry;
+		}
+
+		/** Moves to the next node with a word. */
+		private void advance() {
+
+			next = null;
+
+			while (next == null && !pending.isEmpty()) {
+
+				Node node = pending.pop();
+
+				for (int i = node.children.length - 1; i >= 0; i--) {
+					pending.push(node.children[i]);
+				}
+
+				if (node.term != MISSING) {
+
+					next = node;
+				}
+			}
+		}
+	}
+}
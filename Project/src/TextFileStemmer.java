@@ -3,6 +3,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.TreeSet;
 
 import opennlp.tools.stemmer.Stemmer;
@@ -24,6 +28,9 @@ public class TextFileStemmer {
 	/** The default stemmer algorithm used by this class. */
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
 
+	/** Stemmer for the default algorithm, shared by all threads. Does not cache unless a limit is set. */
+	public static final CachingStemmer STEMMER = new CachingStemmer(DEFAULT);
+
 	/**
 	 * Returns a set of unique (no duplicates) cleaned and stemmed words parsed from
 	 * the provided line.
@@ -31,13 +38,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
-	 * @see #DEFAULT
+	 * @see #STEMMER
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		// THIS IS PROVIDED FOR YOU; NO NEED TO MODIFY
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		return uniqueStems(line, STEMMER);
 	}
 
 	/**
@@ -61,23 +66,126 @@ public class TextFileStemmer {
 
 	/**
 	 * Reads a file line by line, parses each line into cleaned and stemmed words,
-	 * and then adds those words to a set.
+	 * and then adds those words to a set. Only one line is in memory at a time.
 	 *
 	 * @param inputFile the input file to parse
 	 * @return a sorted set of stems from file
 	 * @throws IOException if unable to read or parse file
 	 *
 	 * @see #uniqueStems(String)
-	 * @see TextParser#parse(String)
+	 * @see TextParser#parse(String, Collection)
 	 */
 	public static TreeSet<String> uniqueStems(Path inputFile) throws IOException {
-		String text = ""; // Create empty text to store lines of the input file.
+
+		HashSet<String> stems = new HashSet<>();
+		addStems(inputFile, stems);
+		return new TreeSet<>(stems);
+	}
+
+	/**
+	 * Finds the unique stems of several files at once, each file as its own task
+	 * on the work queue, and merges the stems of each file once it is done.
+	 *
+	 * @param inputFiles the input files to parse
+	 * @param queue      the work queue
+	 * @return a sorted set of stems from all files
+	 * @throws IOException if unable to read or parse a file
+	 * @throws RuntimeException if a file failed with an unexpected error, once
+	 *                          all files are done
+	 *
+	 * @see #uniqueStems(Path)
+	 */
+	public static TreeSet<String> uniqueStems(Collection<Path> inputFiles, WorkQueue queue) throws IOException {
+
+		HashSet<String> stems = new HashSet<>();
+		ArrayList<Exception> failures = new ArrayList<>(); // Thrown once the queue is done
+
+		for (Path inputFile : inputFiles) {
+
+			queue.execute(() -> {
+
+				HashSet<String> local = new HashSet<>();
+
+				try {
+
+					addStems(inputFile, local);
+
+					synchronized (stems) {
+						stems.addAll(local);
+					}
+
+				} catch (IOException | RuntimeException e) {
+
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+		}
+
+		queue.finish();
+
+		if (!failures.isEmpty()) {
+
+			Exception failure = failures.get(0);
+
+			if (failure instanceof IOException) {
+
+				throw (IOException) failure;
+			}
+
+			throw (RuntimeException) failure;
+		}
+
+		return new TreeSet<>(stems);
+	}
+
+	/**
+	 * Adds the stems of a file to a set, one line at a time. The stems are the
+	 * same as those of the whole file parsed as a single line.
+	 *
+	 * @param inputFile the input file to parse
+	 * @param stems     the set to add the stems to
+	 * @throws IOException if unable to read the file
+	 */
+	private static void addStems(Path inputFile, Set<String> stems) throws IOException {
+
+		ArrayList<String> words = new ArrayList<>(); // Reused for every line
+		boolean first = true; // No words found yet
+		boolean spaced = false; // Space that is not trimmed seen before the first word
+
 		try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
+
 			String line = null;
+
 			while ((line = reader.readLine()) != null) {
-				text += line + " "; // Add lines to text.
+
+				words.clear();
+				TextParser.parse(line, words);
+
+				if (first) {
+
+					if (words.isEmpty()) {
+						// Only decides whether the whole text starts with an empty word
+						spaced |= !line.isBlank() && !TextParser.clean(line).isBlank();
+						continue;
+					}
+
+					first = false;
+
+					if (spaced && !words.get(0).isEmpty()) {
+						words.add(0, "");
+					}
+
+				} else if (!words.isEmpty() && words.get(0).isEmpty()) {
+					// Only the start of the whole text can be an empty word
+					words.remove(0);
+				}
+
+				for (String word : words) {
+					stems.add(STEMMER.stem(word));
+				}
 			}
-			return uniqueStems(text);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -1,9 +1,17 @@
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.regex.Pattern;
 
 /**
  * Utility class for parsing text in a consistent manner.
  *
+ * Parsing runs in a single pass over the characters instead of the regular
+ * expressions below, and only normalizes text that is not plain ASCII. The
+ * tokens are exactly those of {@link #split(String)} applied to
+ * {@link #clean(String)}.
+ *
  * @author CS 212 Software Development
  * @author University of San Francisco
  * @version Fall 2019
@@ -47,9 +55,150 @@ public class TextParser {
 	 * @return an array of {@link String} objects
 	 *
 	 * @see #clean(String)
-	 * @see #parse(String)
+	 * @see #split(String)
+	 * @see #parse(String, Collection)
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+
+		ArrayList<String> tokens = new ArrayList<>();
+		parse(text, tokens);
+		return tokens.toArray(new String[0]);
+	}
+
+	/**
+	 * Cleans the text and then splits it by whitespace, adding the tokens to the
+	 * collection in order. Produces the same tokens as {@link #parse(String)},
+	 * without building the cleaned text first, so the collection can be reused
+	 * from line to line.
+	 *
+	 * @param text   the text to clean and split
+	 * @param tokens the collection to add the tokens to
+	 */
+	public static void parse(String text, Collection<String> tokens) {
+
+		for (int i = 0; i < text.length(); i++) {
+
+			if (text.charAt(i) >= 0x80) {
+				// Plain ASCII is already normalized
+				text = Normalizer.normalize(text, Normalizer.Form.NFD);
+				break;
+			}
+		}
+
+		if (text.indexOf('\u03A3') >= 0) {
+			// Lowercasing a capital sigma depends on the words around it
+			Collections.addAll(tokens, split(clean(text)));
+			return;
+		}
+
+		char[] buffer = null; // Only needed once a token skips characters
+		int start = 0; // Where the current token starts in the text
+		int size = 0; // Number of characters in the current token
+		boolean copied = false; // Whether the current token is in the buffer
+		boolean leading = false; // Whether the text starts with whitespace strip() keeps
+		boolean first = true;
+
+		for (int i = 0; i < text.length();) {
+
+			int c = text.codePointAt(i);
+			int width = Character.charCount(c);
+
+			if (isSpace(c)) {
+
+				if (size > 0) {
+
+					String token = copied ? new String(buffer, 0, size) : text.substring(start, start + size);
+
+					if (first && leading) {
+						// Splitting text that starts with whitespace gives an empty first token
+						tokens.add("");
+					}
+
+					tokens.add(token.toLowerCase());
+					first = false;
+					size = 0;
+
+				} else if (first && !Character.isWhitespace(c)) {
+
+					leading = true;
+				}
+
+			} else if (isAlpha(c)) {
+
+				if (size == 0) {
+
+					start = i;
+					copied = false;
+
+				} else if (!copied && start + size != i) {
+					// Characters were removed inside the token
+					if (buffer == null) {
+
+						buffer = new char[text.length()];
+					}
+
+					text.getChars(start, start + size, buffer, 0);
+					copied = true;
+				}
+
+				if (copied) {
+
+					text.getChars(i, i + width, buffer, size);
+				}
+
+				size += width;
+			}
+
+			i += width;
+		}
+
+		if (size > 0) {
+
+			String token = copied ? new String(buffer, 0, size) : text.substring(start, start + size);
+
+			if (first && leading) {
+
+				tokens.add("");
+			}
+
+			tokens.add(token.toLowerCase());
+		}
+	}
+
+	/**
+	 * Checks whether the character is matched by {@code \p{Alpha}} in
+	 * {@link #CLEAN_REGEX}.
+	 *
+	 * @param c the code point to check
+	 * @return True if the character is alphabetic
+	 */
+	private static boolean isAlpha(int c) {
+
+		if (c < 0x80) {
+
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+		}
+
+		return Character.isAlphabetic(c);
+	}
+
+	/**
+	 * Checks whether the character is matched by {@code \p{Space}} in
+	 * {@link #SPLIT_REGEX}, which is the Unicode White_Space property.
+	 *
+	 * @param c the code point to check
+	 * @return True if the character is whitespace
+	 */
+	private static boolean isSpace(int c) {
+
+		if (c < 0x80) {
+
+			return c == ' ' || (c >= '\t' && c <= '\r');
+		}
+
+		int separators = (1 << Character.SPACE_SEPARATOR) | (1 << Character.LINE_SEPARATOR)
+				| (1 << Character.PARAGRAPH_SEPARATOR);
+
+		return c == 0x85 || ((separators >> Character.getType(c)) & 1) != 0;
 	}
 }
@@ -0,0 +1,34 @@
+import java.util.Collection;
+
+/**
+ * Interface for inverted indexes that any number of threads can build and
+ * search at the same time. Once frozen, the index can no longer be modified.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see ThreadSafeInvertedIndex
+ * @see ShardedInvertedIndex
+ */
+public interface ThreadSafeIndexInterface extends InvertedIndexInterface {
+
+	/**
+	 * Removes locations and adds another index, replacing the content of any
+	 * location that is both removed and added.
+	 *
+	 * @param removed the locations to remove
+	 * @param added   the index to add once they are removed
+	 *
+	 * @see DirectoryWatcher
+	 */
+	public void replaceLocations(Collection<String> removed, InvertedIndex added);
+
+	/**
+	 * Returns whether the index has been frozen.
+	 *
+	 * @return True if the index can no longer be modified
+	 */
+	public boolean isFrozen();
+}
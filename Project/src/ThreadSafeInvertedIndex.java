@@ -4,34 +4,71 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Data structure for the Inverted Index.
  *
+ * Writes take a {@link ReentrantReadWriteLock} and, before releasing it, patch
+ * an immutable {@link FrozenIndex} of the new contents and publish it. Searches
+ * and lookups of words, locations and word counts read the latest published
+ * copy without locking, so they never wait for a write such as a crawler adding
+ * a page. Only reads of positions and writing the index out take the read lock,
+ * since the copy does not hold positions. Once the index is frozen it can no
+ * longer change, so no locking happens at all.
+ *
  * @author CS 212 Software Development
  * @author University of San Francisco
  * @author Yen Dah Hsiang
  * @version Fall 2019
  */
-public class ThreadSafeInvertedIndex extends InvertedIndex {
+public class ThreadSafeInvertedIndex extends InvertedIndex implements ThreadSafeIndexInterface {
+
+	/** The lock. */
+	private final ReentrantReadWriteLock lock;
+
+	/**
+	 * Read-optimized copy of the index, published by every write before it
+	 * releases the lock. Reads that it can answer use it without locking.
+	 */
+	private volatile FrozenIndex frozen;
 
-	/** Custom lock. */
-	private final SimpleReadWriteLock lock;
+	/** Whether the index can no longer change, so no read needs the lock. */
+	private volatile boolean readOnly;
 
 	/** Constructor for thread safe inverted index. */
 	public ThreadSafeInvertedIndex() {
+		this(false);
+	}
 
-		super();
-		lock = new SimpleReadWriteLock();
+	/**
+	 * Constructor for thread safe inverted index, optionally storing positions
+	 * compressed.
+	 *
+	 * @param compressed whether to store positions compressed
+	 */
+	public ThreadSafeInvertedIndex(boolean compressed) {
+
+		super(compressed);
+		lock = new ReentrantReadWriteLock();
+		frozen = snapshot(null);
+		readOnly = false;
 	}
 
+	/**
+	 * Freezes the index. Any later attempt to modify the index throws an
+	 * {@link IllegalStateException}, and all reads and searches run without
+	 * locking.
+	 */
 	@Override
-	public void add(Collection<String> words, String location, int start) {
+	public FrozenIndex freeze() {
 
 		try {
 
 			lock.writeLock().lock();
-			super.add(words, location, start);
+			readOnly = true;
+			return frozen;
 
 		} finally {
 
@@ -39,65 +76,80 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	/**
+	 * Returns whether the index has been frozen.
+	 *
+	 * @return True if the index can no longer be modified
+	 */
+	public boolean isFrozen() {
+		return readOnly;
+	}
+
 	@Override
-	public void add(String string, String location, int position) {
+	public void add(Collection<String> words, String location, int start) {
 
 		try {
 
-			lock.writeLock().lock();
-			super.add(string, location, position);
+			beginWrite();
+			super.add(words, location, start);
 
 		} finally {
 
-			lock.writeLock().unlock();
+			endWrite();
 		}
 	}
 
 	@Override
-	public Map<String, Integer> getAllWordCount() {
+	public void add(String string, String location, int position) {
 
 		try {
 
-			lock.readLock().lock();
-			return super.getAllWordCount();
+			beginWrite();
+			super.add(string, location, position);
 
 		} finally {
 
-			lock.readLock().unlock();
+			endWrite();
 		}
 	}
 
 	@Override
-	public Set<String> getLocations() {
+	public boolean removeLocation(String location) {
 
 		try {
 
-			lock.readLock().lock();
-			return super.getLocations();
+			beginWrite();
+			return super.removeLocation(location);
 
 		} finally {
 
-			lock.readLock().unlock();
+			endWrite();
 		}
 	}
 
 	@Override
-	public Set<String> getLocations(String word) {
-
-		try {
-
-			lock.readLock().lock();
-			return super.getLocations(word);
+	public Map<String, Integer> getAllWordCount() {
+		return frozen.getAllWordCount();
+	}
 
-		} finally {
+	@Override
+	public Set<String> getLocations() {
+		return frozen.getLocations();
+	}
 
-			lock.readLock().unlock();
-		}
+	@Override
+	public Set<String> getLocations(String word) {
+		return frozen.getLocations(word);
 	}
 
 	@Override
 	public Set<Integer> getPositions(String word, String location) {
 
+		if (readOnly) {
+
+			return super.getPositions(word, location);
+		}
+
 		try {
 
 			lock.readLock().lock();
@@ -111,67 +163,104 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public int getTotalWords() {
+		return frozen.getTotalWords();
+	}
 
-		try {
-
-			lock.writeLock().lock();
-			return super.getTotalWords();
+	@Override
+	public int getWordCount(String location) {
+		return frozen.getWordCount(location);
+	}
 
-		} finally {
+	@Override
+	public Set<String> getWords() {
+		return frozen.getWords();
+	}
 
-			lock.writeLock().unlock();
-		}
+	@Override
+	public boolean hasLocation(String location) {
+		return frozen.hasLocation(location);
 	}
 
 	@Override
-	public int getWordCount(String location) {
+	public boolean hasLocation(String word, String location) {
+		return frozen.hasLocation(word, location);
+	}
 
-		try {
+	@Override
+	public boolean hasPosition(String word, String location, int position) {
+		return read(() -> super.hasPosition(word, location, position));
+	}
 
-			lock.readLock().lock();
-			return super.getWordCount(location);
+	@Override
+	public boolean hasWord(String word) {
+		return frozen.hasWord(word);
+	}
 
-		} finally {
+	@Override
+	public ArrayList<Result> exactSearch(Collection<String> queries, int k) {
+		return frozen.exactSearch(queries, k);
+	}
 
-			lock.readLock().unlock();
-		}
+	@Override
+	public ArrayList<Result> partialSearch(Collection<String> queries, int k) {
+		return frozen.partialSearch(queries, k);
 	}
 
 	@Override
-	public Set<String> getWords() {
+	public void addAll(InvertedIndex local) {
 
 		try {
 
-			lock.readLock().lock();
-			return super.getWords();
+			beginWrite();
+			super.addAll(local);
 
 		} finally {
 
-			lock.readLock().unlock();
+			endWrite();
 		}
 	}
 
-	@Override
-	public boolean hasLocation(String location) {
+	/**
+	 * Removes locations and adds another index in a single write, so searches see
+	 * either none or all of the changes and only one copy is published. A
+	 * location can be both removed and added to replace its content.
+	 *
+	 * @param removed the locations to remove
+	 * @param added   the index to add once they are removed
+	 *
+	 * @see DirectoryWatcher
+	 */
+	public void replaceLocations(Collection<String> removed, InvertedIndex added) {
 
 		try {
 
-			lock.readLock().lock();
-			return super.hasLocation(location);
+			beginWrite();
+
+			for (String location : removed) {
+				super.removeLocation(location);
+			}
+
+			super.addAll(added);
 
 		} finally {
 
-			lock.writeLock().unlock();
+			endWrite();
 		}
 	}
 
 	@Override
-	public boolean hasLocation(String word, String location) {
+	public void save(Path path) throws IOException {
+
+		if (readOnly) {
+
+			super.save(path);
+			return;
+		}
 
 		try {
 
 			lock.readLock().lock();
-			return super.hasLocation(word, location);
+			super.save(path);
 
 		} finally {
 
@@ -180,12 +269,18 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	}
 
 	@Override
-	public boolean hasPosition(String word, String location, int position) {
+	public void saveSegment(Path path) throws IOException {
+
+		if (readOnly) {
+
+			super.saveSegment(path);
+			return;
+		}
 
 		try {
 
 			lock.readLock().lock();
-			return super.hasPosition(word, location, position);
+			super.saveSegment(path);
 
 		} finally {
 
@@ -194,26 +289,26 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	}
 
 	@Override
-	public boolean hasWord(String word) {
-
-		try {
+	public void load(Path path) throws IOException {
+		// Reads the snapshot without holding the lock, then merges it in
+		InvertedIndex loaded = new InvertedIndex(isCompressed());
+		loaded.load(path);
+		addAll(loaded);
+	}
 
-			lock.readLock().lock();
-			return super.hasWord(word);
+	@Override
+	public void indexToJson(Path path) throws IOException {
 
-		} finally {
+		if (readOnly) {
 
-			lock.readLock().unlock();
+			super.indexToJson(path);
+			return;
 		}
-	}
-
-	@Override
-	public ArrayList<Result> exactSearch(Collection<String> queries) {
 
 		try {
 
 			lock.readLock().lock();
-			return super.exactSearch(queries);
+			super.indexToJson(path);
 
 		} finally {
 
@@ -221,13 +316,24 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
-	@Override
-	public ArrayList<Result> partialSearch(Collection<String> queries) {
+	/**
+	 * Runs a short lookup under the read lock, or without it once the index is
+	 * frozen.
+	 *
+	 * @param lookup the lookup to run
+	 * @return the result of the lookup
+	 */
+	private boolean read(BooleanSupplier lookup) {
+
+		if (readOnly) {
+
+			return lookup.getAsBoolean();
+		}
 
 		try {
 
 			lock.readLock().lock();
-			return super.partialSearch(queries);
+			return lookup.getAsBoolean();
 
 		} finally {
 
@@ -235,46 +341,49 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
-	@Override
-	public void addAll(InvertedIndex local) {
-
-		try {
-
-			lock.writeLock().lock();
-			super.addAll(local);
-
-		} finally {
+	/**
+	 * Takes the write lock. Must be paired with {@link #endWrite()} in a finally
+	 * block.
+	 *
+	 * @throws IllegalStateException if the index is frozen
+	 */
+	private void beginWrite() {
 
-			lock.writeLock().unlock();
-		}
+		lock.writeLock().lock();
+		checkFrozen();
 	}
 
-	@Override
-	public void wordCountsToJson(Path path) throws IOException {
+	/**
+	 * Publishes a copy of the changed index for reads, then releases the write
+	 * lock. Nothing can have changed once the index is frozen, so the copy is
+	 * kept.
+	 */
+	private void endWrite() {
 
 		try {
 
-			lock.readLock().lock();
-			super.wordCountsToJson(path);
+			if (!readOnly) {
+
+				frozen = snapshot(frozen);
+			}
 
 		} finally {
 
-			lock.readLock().unlock();
+			lock.writeLock().unlock();
 		}
 	}
 
-	@Override
-	public void indexToJson(Path path) throws IOException {
+	/**
+	 * Rejects modifications once the index is frozen. Must be called while holding
+	 * the write lock.
+	 *
+	 * @throws IllegalStateException if the index is frozen
+	 */
+	private void checkFrozen() {
 
-		try {
-
-			lock.readLock().lock();
-			super.indexToJson(path);
+		if (readOnly) {
 
-		} finally {
-
-			lock.readLock().unlock();
+			throw new IllegalStateException("Cannot modify a frozen inverted index.");
 		}
 	}
-
 }
@@ -1,13 +1,25 @@
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 
-import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Multithreaded Web Crawler
  *
+ * Pages are fetched by an {@link AsyncHtmlFetcher}, so no thread waits on the
+ * network, and each fetched page is indexed and its links followed by a task on
+ * the work queue. Hosts take turns in the fetcher, so the links of one host do
+ * not crowd out the others. The words and links of a page are found by an
+ * {@link HtmlTokenizer} while the page arrives, so the page itself is never
+ * held as a string.
+ *
+ * A crawl can record its progress in a {@link CrawlLog} and be resumed from it
+ * later. Pages the index already holds are not fetched again, and pages only
+ * partly indexed when the crawl stopped are removed and fetched again.
+ *
  * @author CS 212 Software Development
  * @author Yen Dah Hsiang
  * @author University of San Francisco
@@ -19,7 +31,7 @@ public class WebCrawler {
 	public static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
 
 	/** The inverted index. */
-	private final ThreadSafeInvertedIndex index;
+	private final ThreadSafeIndexInterface index;
 
 	/** The work queue. */
 	private final WorkQueue queue;
@@ -27,17 +39,53 @@ public class WebCrawler {
 	/** Storing each unique parsed URL. */
 	private final HashSet<URL> uniqueUrls;
 
+	/** The fetcher. */
+	private final AsyncHtmlFetcher fetcher;
+
+	/** Number of pages being fetched or indexed. */
+	private int pending;
+
+	/** Nanoseconds spent building. */
+	private long elapsed;
+
 	/**
 	 * Default Constructor
 	 *
 	 * @param index the inverted index
 	 * @param queue the work queue
 	 */
-	public WebCrawler(ThreadSafeInvertedIndex index, WorkQueue queue) {
+	public WebCrawler(ThreadSafeIndexInterface index, WorkQueue queue) {
+		this(index, queue, AsyncHtmlFetcher.DEFAULT_REQUESTS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param index    the inverted index
+	 * @param queue    the work queue
+	 * @param requests the most pages fetched at once
+	 */
+	public WebCrawler(ThreadSafeIndexInterface index, WorkQueue queue, int requests) {
+		this(index, queue, requests, AsyncHtmlFetcher.DEFAULT_HOST_REQUESTS, 0);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param index    the inverted index
+	 * @param queue    the work queue
+	 * @param requests the most pages fetched at once
+	 * @param perHost  the most pages fetched at once from one host
+	 * @param delay    milliseconds between starting two pages of the same host
+	 */
+	public WebCrawler(ThreadSafeIndexInterface index, WorkQueue queue, int requests, int perHost, long delay) {
 
 		this.index = index;
 		this.queue = queue;
 		this.uniqueUrls = new HashSet<>();
+		this.fetcher = new AsyncHtmlFetcher(requests, perHost, delay);
+		this.pending = 0;
+		this.elapsed = 0;
 	}
 
 	/**
@@ -48,89 +96,321 @@ public class WebCrawler {
 	 */
 	public void build(URL seed, int limit) {
 
-		uniqueUrls.add(seed);
-		queue.execute(new Task(seed, limit));
-		queue.finish();
+		long started = System.nanoTime();
+
+		synchronized (uniqueUrls) {
+			uniqueUrls.add(seed);
+		}
+
+		crawl(seed, limit, null);
+		await();
+		elapsed += System.nanoTime() - started;
 	}
 
 	/**
-	 * Add all cleaned HTML text into index.
+	 * Builds the inverted index from a seed URL, recording the progress in a
+	 * crawl log. If the log already has pages, the crawl continues from them
+	 * instead of the seed.
 	 *
 	 * @param seed  the seeded URL to crawl
-	 * @param html  the fetched html resource
-	 * @param index the inverted index to add to
+	 * @param limit total number of URL to crawl
+	 * @param log   the crawl log
+	 * @throws IOException if unable to write the log
+	 */
+	public void build(URL seed, int limit, CrawlLog log) throws IOException {
+
+		long started = System.nanoTime();
+		ArrayList<URL> start = new ArrayList<>();
+
+		synchronized (uniqueUrls) {
+
+			if (log.getPages().isEmpty()) {
+
+				uniqueUrls.add(seed);
+				log.addVisited(seed);
+				start.add(seed);
+			}
+
+			for (var entry : log.getPages().entrySet()) {
+
+				String location = entry.getKey();
+				URL url = new URL(location);
+
+				uniqueUrls.add(url);
+
+				if (entry.getValue() >= 0 && index.getWordCount(location) == entry.getValue()) {
+					// Already indexed and its links visited before the crawl stopped
+					continue;
+				}
+
+				// Only part of the crawl of this page may have been kept
+				index.removeLocation(location);
+				start.add(url);
+			}
+		}
+
+		for (URL url : start) {
+			crawl(url, limit, log);
+		}
+
+		await();
+		elapsed += System.nanoTime() - started;
+	}
+
+	/**
+	 * Returns the number of pages fetched, whether they were HTML or not.
+	 *
+	 * @return number of fetched pages
+	 */
+	public long getFetched() {
+		return fetcher.getFetched();
+	}
+
+	/**
+	 * Returns the number of hosts pages were requested from.
+	 *
+	 * @return number of hosts
+	 */
+	public int getHosts() {
+		return fetcher.getHosts();
+	}
+
+	/**
+	 * Returns the number of pages fetched per second while building.
+	 *
+	 * @return the fetch rate, or 0 if nothing was built yet
+	 */
+	public double getPagesPerSecond() {
+		return elapsed == 0 ? 0 : getFetched() * 1e9 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d pages from %d hosts, %.1f pages/s", getFetched(), getHosts(), getPagesPerSecond());
+	}
+
+	/**
+	 * Waits until all pages are done.
+	 */
+	private synchronized void await() {
+
+		while (pending > 0) {
+
+			try {
+
+				this.wait();
+
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Starts fetching a page, and indexes it on the work queue once fetched.
+	 *
+	 * @param url   the url to crawl
+	 * @param limit total number of URL to crawl
+	 * @param log   the crawl log, or null
 	 */
-	public static void addToIndex(URL seed, String html, InvertedIndex index) {
+	private void crawl(URL url, int limit, CrawlLog log) {
+
+		synchronized (this) {
+			pending++;
+		}
+
+		Page page = new Page(url, index.isCompressed());
+
+		try {
+			// Fetches the resource with a redirect limit of 3 to avoid infinite loop
+			fetcher.fetch(url, 3, new HtmlTokenizer(page::addWord, page.links::add))
+					.whenComplete((tokenizer, failure) -> index(page, failure == null && tokenizer != null, limit, log));
+
+		} catch (RuntimeException e) {
+
+			System.out.println("Could not build inverted index with: " + url);
+			finishPage();
+		}
+	}
+
+	/**
+	 * Queues a fetched page to be indexed. The page is always marked done, even
+	 * if it cannot be queued.
+	 *
+	 * @param page    the fetched page
+	 * @param fetched whether the page was fetched
+	 * @param limit   total number of URL to crawl
+	 * @param log     the crawl log, or null
+	 */
+	private void index(Page page, boolean fetched, int limit, CrawlLog log) {
+
+		try {
+
+			queue.execute(new Task(page, fetched, limit, log));
+
+		} catch (RuntimeException e) {
+
+			System.out.println("Could not build inverted index with: " + page.seed);
+			finishPage();
+		}
+	}
+
+	/**
+	 * Marks a page as done, and wakes up the build once all pages are done.
+	 */
+	private synchronized void finishPage() {
+
+		pending--;
+
+		if (pending == 0) {
+			this.notifyAll();
+		}
+	}
+
+	/** The words and links of a page, collected while it is fetched. */
+	private static class Page {
+
+		/** The url of the page. */
+		private final URL seed;
+
+		/** The location of the page in the index. */
+		private final String location;
 
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
-		int iterator = 1;
+		/** The words of the page, stemmed. */
+		private final InvertedIndex local;
 
-		for (String cleanedHtml : TextParser.parse(HtmlCleaner.stripHtml(html))) {
-			// Loop through each cleaned HTML text and add to index
-			index.add(stemmer.stem(cleanedHtml).toString(), seed.toString(), iterator);
-			iterator++;
+		/** The links as written in the page. */
+		private final ArrayList<String> links;
+
+		/** The position of the last word. */
+		private int position;
+
+		/**
+		 * Creates an empty page.
+		 *
+		 * @param seed       the url of the page
+		 * @param compressed whether to store positions compressed
+		 */
+		private Page(URL seed, boolean compressed) {
+
+			this.seed = seed;
+			this.location = seed.toString();
+			this.local = new InvertedIndex(compressed);
+			this.links = new ArrayList<>();
+			this.position = 0;
+		}
+
+		/**
+		 * Stems a word and adds it at the next position.
+		 *
+		 * @param word the word
+		 */
+		private void addWord(String word) {
+
+			position++;
+			local.add(TextFileStemmer.STEMMER.stem(word).toString(), location, position);
 		}
 	}
 
 	/** Task for building index with web crawling. */
 	private class Task implements Runnable {
 
-		/** The seeded URL to crawl */
-		private final URL seed;
+		/** The fetched page */
+		private final Page page;
+
+		/** Whether the page was fetched */
+		private final boolean fetched;
 
 		/** URL crawling limit */
 		private final int limit;
 
+		/** The crawl log, or null */
+		private final CrawlLog log;
+
 		/**
 		 * Constructor for web crawling and adding to index task.
 		 *
-		 * @param seed  the seeded URL to crawl
-		 * @param limit total number of URL to crawl
+		 * @param page    the fetched page
+		 * @param fetched whether the page was fetched
+		 * @param limit   total number of URL to crawl
+		 * @param log     the crawl log, or null
 		 */
-		private Task(URL seed, int limit) {
+		private Task(Page page, boolean fetched, int limit, CrawlLog log) {
 
-			this.seed = seed;
+			this.page = page;
+			this.fetched = fetched;
 			this.limit = limit;
+			this.log = log;
 		}
 
 		@Override
 		public void run() {
 
-			try {
-				// Fetches the resource with a redirect limit of 3 to avoid infinite loop
-				String html = HtmlFetcher.fetch(seed, 3);
+			URL seed = page.seed;
 
+			try {
 				// Check if resources are fetched correctly
-				ThreadSafeInvertedIndex local = new ThreadSafeInvertedIndex();
+				if (!fetched) {
+
+					System.out.println("Could not build inverted index with: " + seed);
+					return;
+				}
 
-				addToIndex(seed, html, local);
-				index.addAll(local);
+				index.addAll(page.local);
 
 				if (uniqueUrls.size() < limit) {
-					// Parse all remaining URLs
-					ArrayList<URL> links = LinkParser.listLinks(seed, html);
+					// Resolve all remaining URLs
+					for (String link : page.links) {
 
-					for (URL url : links) {
+						URL url;
+
+						try {
+
+							url = LinkParser.clean(new URL(seed, link));
+
+						} catch (MalformedURLException e) {
+							// Not a link that can be followed
+							continue;
+						}
 
 						synchronized (uniqueUrls) {
 
 							if (uniqueUrls.size() == limit) {
 								// Stop adding when the number of unique URLS hit the limit
-								return;
+								break;
 							}
 
 							if (!uniqueUrls.contains(url)) {
 								// Add unique URL to total
 								uniqueUrls.add(url);
-								queue.execute(new Task(url, limit));
+
+								if (log != null) {
+									log.addVisited(url);
+								}
+
+								crawl(url, limit, log);
 							}
 						}
 					}
 				}
 
+				if (log != null && log.addIndexed(seed, page.position)) {
+					log.checkpoint(index);
+				}
+
+			} catch (IOException e) {
+
+				System.out.println("Unable to write the crawl log for: " + seed);
+
 			} catch (Exception e) {
 
 				System.out.println("Could not build inverted index with: " + seed);
+
+			} finally {
+
+				finishPage();
 			}
 		}
 	}
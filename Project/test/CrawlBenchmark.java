@@ -0,0 +1,64 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures how many pages per second {@link WebCrawler} fetches and indexes
+ * from a {@link StandInServer} on the local host, with different numbers of
+ * pages fetched at once, and how many connections it opens to do so.
+ *
+ * Run with an optional latency in milliseconds, number of pages crawled and
+ * numbers of pages fetched at once, separated by commas. The server runs in the
+ * same process, so on a machine with few cores it competes with the crawler.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see StandInServer
+ */
+public class CrawlBenchmark {
+
+	/** Number of work queue threads. */
+	private static final int THREADS = 5;
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the latency, number of pages and numbers of pages fetched at
+	 *             once, all optional
+	 * @throws IOException if unable to start the server
+	 */
+	public static void main(String[] args) throws IOException {
+
+		long latency = args.length > 0 ? Long.parseLong(args[0]) : 100;
+		int limit = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int[] requests = args.length > 2 ? Arrays.stream(args[2].split(",")).mapToInt(Integer::parseInt).toArray()
+				: new int[] { 1, 5, 16, 64 };
+
+		try (StandInServer server = new StandInServer(0, 2000, latency)) {
+
+			System.out.printf("%s, %d ms latency, %d pages, %d threads%n", server.getSeed(), latency, limit, THREADS);
+
+			for (int count : requests) {
+
+				server.reset();
+				WorkQueue queue = new WorkQueue(THREADS);
+				ThreadSafeInvertedIndex index = new ThreadSafeInvertedIndex();
+				WebCrawler crawler = new WebCrawler(index, queue, count, count, 0);
+
+				try {
+
+					crawler.build(server.getSeed(), limit);
+
+				} finally {
+
+					queue.shutdown();
+				}
+
+				System.out.printf("%3d at once: %s, %d locations, %d requests over %d connections%n", count, crawler,
+						index.getLocations().size(), server.getRequests(), server.getConnections());
+			}
+		}
+	}
+}
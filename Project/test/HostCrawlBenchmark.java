@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures how politely {@link WebCrawler} crawls several hosts, each a
+ * {@link StandInServer} on its own port of the local host. Most links of each
+ * host lead to the same host, so without limits the crawl keeps one host busy
+ * with most of the pages fetched at once. For each limit of pages at once per
+ * host and delay between them, it prints how long the crawl took and, for every
+ * host, how many requests it answered, the most it answered at once and the
+ * shortest time between two requests.
+ *
+ * Run with an optional number of hosts, latency in milliseconds, percent of
+ * links to the same host and number of pages crawled.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see CrawlFrontier
+ */
+public class HostCrawlBenchmark {
+
+	/** Number of work queue threads. */
+	private static final int THREADS = 3;
+
+	/** The most pages fetched at once from all hosts. */
+	private static final int REQUESTS = 16;
+
+	/** The limits tried, as pages at once per host and milliseconds between. */
+	private static final int[][] LIMITS = { { REQUESTS, 0 }, { AsyncHtmlFetcher.DEFAULT_HOST_REQUESTS, 0 },
+			{ 2, 100 } };
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the number of hosts, latency, percent of links to the same host
+	 *             and number of pages, all optional
+	 * @throws IOException if unable to start the servers
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		long latency = args.length > 1 ? Long.parseLong(args[1]) : 50;
+		int same = args.length > 2 ? Integer.parseInt(args[2]) : 90;
+		int limit = args.length > 3 ? Integer.parseInt(args[3]) : 400;
+
+		StandInServer[] hosts = StandInServer.group(0, count, 300, latency, same);
+
+		try {
+
+			System.out.printf("%d hosts, %d ms latency, %d%% links to the same host, %d pages, %d at once%n", count,
+					latency, same, limit, REQUESTS);
+
+			for (int[] host : LIMITS) {
+
+				for (StandInServer server : hosts) {
+					server.reset();
+				}
+
+				WorkQueue queue = new WorkQueue(THREADS);
+				WebCrawler crawler = new WebCrawler(new ThreadSafeInvertedIndex(), queue, REQUESTS, host[0], host[1]);
+
+				try {
+
+					crawler.build(hosts[0].getSeed(), limit);
+
+				} finally {
+
+					queue.shutdown();
+				}
+
+				System.out.printf("%2d per host, %3d ms apart: %s%n", host[0], host[1], crawler);
+
+				for (StandInServer server : hosts) {
+
+					System.out.printf("  %s: %3d requests, at most %2d at once, %6.1f ms apart at least%n",
+							server.getSeed(), server.getRequests(), server.getBusiest(), server.getClosest());
+				}
+			}
+
+		} finally {
+
+			for (StandInServer server : hosts) {
+				server.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,232 @@
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+/**
+ * Measures the throughput of {@link HtmlCleaner} against the regular
+ * expressions of {@link RegexHtmlCleaner}, on a generated page and on the
+ * unclosed scripts and comments that make the regular expressions slow. Also
+ * measures the CPU time and memory allocated to find the words and links of a
+ * page by streaming it through {@link HtmlTokenizer}, against building the page
+ * as a string and cleaning it with the regular expressions.
+ *
+ * Run with an optional page size in kilobytes. Each case is run for a few
+ * seconds after a warm up, and the best of the runs is printed.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see HtmlCleanerFuzz
+ */
+public class HtmlCleanerBenchmark {
+
+	/** Nanoseconds each case is run for. */
+	private static final long DURATION = 3_000_000_000L;
+
+	/** Number of times each case is run. */
+	private static final int ROUNDS = 2;
+
+	/** Size of the unclosed scripts and comments, which the regex is slow on. */
+	private static final int UNCLOSED = 4 << 10;
+
+	/** Bytes of the page given to the tokenizer at a time. */
+	private static final int CHUNK = 1 << 14;
+
+	/** The thread statistics, for CPU time and allocation. */
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the page size in kilobytes, optional
+	 * @throws MalformedURLException if the base url is invalid
+	 */
+	public static void main(String[] args) throws MalformedURLException {
+
+		int size = (args.length > 0 ? Integer.parseInt(args[0]) : 2048) << 10;
+		String page = generatePage(size);
+
+		StringBuilder scripts = new StringBuilder();
+		StringBuilder comments = new StringBuilder();
+		Random random = new Random(5);
+
+		while (scripts.length() < UNCLOSED) {
+			scripts.append("<script> x ").append(random.nextInt(9)).append(' ');
+		}
+
+		while (comments.length() < UNCLOSED) {
+			comments.append("<!-- a  <b");
+		}
+
+		System.out.println("Cleaning, regex vs single scan:");
+		clean("page", page);
+		clean("unclosed scripts", scripts.toString());
+		clean("unclosed comments", comments.toString());
+
+		System.out.println("Finding words and links, string and regex vs streaming:");
+		byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+		URL base = new URL("http://localhost/dir/index.html");
+		long[] regex = null;
+		long[] stream = null;
+
+		for (int round = 0; round < ROUNDS + 1; round++) {
+			// The first round warms up
+			regex = tokenize(bytes, base, true);
+			stream = tokenize(bytes, base, false);
+		}
+
+		System.out.printf("%d KB page: regex %.2f ms, %d KB allocated, %d words%n", bytes.length >> 10,
+				regex[0] / 1e6, regex[1] >> 10, regex[2]);
+		System.out.printf("%d KB page: streaming %.2f ms, %d KB allocated, %d words%n", bytes.length >> 10,
+				stream[0] / 1e6, stream[1] >> 10, stream[2]);
+	}
+
+	/**
+	 * Generates a page from the well-formed fragments of the fuzz test.
+	 *
+	 * @param size the least number of characters
+	 * @return the page
+	 */
+	private static String generatePage(int size) {
+
+		Random random = new Random(7);
+		StringBuilder page = new StringBuilder(
+				"<html><head><title>t</title><script>var x=1;</script></head><body>\r\n");
+
+		while (page.length() < size) {
+
+			page.append(String.format(HtmlCleanerFuzz.WELL_FORMED[random.nextInt(HtmlCleanerFuzz.WELL_FORMED.length)],
+					random.nextInt(50)));
+
+			if (random.nextInt(20) == 0) {
+
+				page.append("\r\n");
+			}
+		}
+
+		return page.toString();
+	}
+
+	/**
+	 * Prints the time both cleaners take to strip some HTML.
+	 *
+	 * @param name the name of the HTML
+	 * @param html the HTML
+	 */
+	private static void clean(String name, String html) {
+
+		time(html, RegexHtmlCleaner::stripHtml);
+		time(html, HtmlCleaner::stripHtml);
+
+		double regex = Double.MAX_VALUE;
+		double scan = Double.MAX_VALUE;
+
+		for (int round = 0; round < ROUNDS; round++) {
+
+			regex = Math.min(regex, time(html, RegexHtmlCleaner::stripHtml));
+			scan = Math.min(scan, time(html, HtmlCleaner::stripHtml));
+		}
+
+		System.out.printf("%s, %d KB: regex %.2f ms (%.2f MB/s), single scan %.2f ms (%.2f MB/s)%n", name,
+				html.length() >> 10, regex, html.length() / 1e3 / regex, scan, html.length() / 1e3 / scan);
+	}
+
+	/**
+	 * Strips some HTML over and over for a few seconds, at least once.
+	 *
+	 * @param html    the HTML
+	 * @param cleaner the cleaner
+	 * @return the milliseconds one strip took on average
+	 */
+	private static double time(String html, UnaryOperator<String> cleaner) {
+
+		long start = System.nanoTime();
+		int runs = 0;
+
+		do {
+
+			cleaner.apply(html);
+			runs++;
+
+		} while (System.nanoTime() - start < DURATION);
+
+		return (System.nanoTime() - start) / 1e6 / runs;
+	}
+
+	/**
+	 * Finds the words and links of a page once, and measures the CPU time and
+	 * memory allocated.
+	 *
+	 * @param bytes the page as UTF-8
+	 * @param base  the url of the page
+	 * @param regex whether to build the page as a string and use the regex,
+	 *              otherwise the page is streamed through the tokenizer
+	 * @return the CPU nanoseconds, bytes allocated and words found
+	 */
+	private static long[] tokenize(byte[] bytes, URL base, boolean regex) {
+
+		long thread = Thread.currentThread().getId();
+		long cpu = THREADS.getThreadCpuTime(thread);
+		long allocated = THREADS.getThreadAllocatedBytes(thread);
+		long words;
+
+		if (regex) {
+
+			String html = new String(bytes, StandardCharsets.UTF_8).replace("\r\n", "\n");
+			words = TextParser.parse(RegexHtmlCleaner.stripHtml(html)).length;
+			LinkParser.listLinks(base, html);
+
+		} else {
+
+			long[] count = { 0 };
+			ArrayList<URL> links = new ArrayList<>();
+			HtmlTokenizer tokenizer = new HtmlTokenizer(word -> count[0]++, link -> {
+
+				try {
+
+					links.add(LinkParser.clean(new URL(base, link)));
+
+				} catch (MalformedURLException e) {
+					// Not a link that can be followed
+				}
+			});
+
+			// Decoded a chunk at a time, the same way the fetcher does
+			CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE);
+			ByteBuffer in = ByteBuffer.allocate(CHUNK + 16);
+			CharBuffer out = CharBuffer.allocate(CHUNK / 2);
+
+			for (int offset = 0; offset < bytes.length; offset += CHUNK) {
+
+				in.put(bytes, offset, Math.min(CHUNK, bytes.length - offset)).flip();
+
+				while (decoder.decode(in, out, false).isOverflow()) {
+
+					tokenizer.write(out.array(), 0, out.position());
+					out.clear();
+				}
+
+				tokenizer.write(out.array(), 0, out.position());
+				out.clear();
+				in.compact();
+			}
+
+			tokenizer.close();
+			words = count[0];
+		}
+
+		return new long[] { THREADS.getThreadCpuTime(thread) - cpu, THREADS.getThreadAllocatedBytes(thread) - allocated,
+				words };
+	}
+}
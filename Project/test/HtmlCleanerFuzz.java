@@ -0,0 +1,211 @@
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link HtmlCleaner} and {@link HtmlTokenizer} give the same
+ * output as the regular expressions of {@link RegexHtmlCleaner} on random HTML.
+ * The HTML is made of fragments chosen to hit the edge cases of the regular
+ * expressions: unclosed comments, elements and tags, mixed case, word
+ * boundaries after element names, entities and whitespace.
+ *
+ * Run with an optional seed and number of inputs. The first few differences
+ * are printed, and the exit status is 1 if there were any.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see RegexHtmlCleaner
+ */
+public class HtmlCleanerFuzz {
+
+	/** Fragments of broken and misnested HTML. */
+	static final String[] MALFORMED = { "<", ">", "<!--", "-->", "<script", "</script>", "<SCRIPT", "</Script >",
+			"</scRipt>", "<head", "</head>", "<HEAD>", "<header>", "<head_", "<head\u00e9", "<head\u0301", "<style>",
+			"</STYLE>", "&", ";", "&amp;", "\"", "<a", "<a href=\"", "href=", "=\"", "<svg", "</svg>", "<noscript ",
+			"</noscript>", " ", "\n", "\r", "\t", "\u000B", "\f", "\u00a0", "x", "Ab", "--", "<!", "-", "!", "\u017f",
+			"<b>", "</b>", "<<", ">>", "<!---->", "<!-->", "\u00e9", "\u03a3" };
+
+	/** Fragments of well-formed HTML, where "%d" is replaced by a number. */
+	static final String[] WELL_FORMED = { "<p>", "</p>", "<div class=\"x\">", "</div>", "<a href=\"/p/%d.html\">",
+			"</a>", "<A HREF = \"q%d.html#f\">", "<!-- c %d -->", "<script type=\"t\">var a = \"<p>\" + 1;</script>",
+			"<style>p{x:1}</style>", "<head><title>T</title><script>x</script></head>", "&amp;", "&nbsp;", "&#169;",
+			" word ", "H\u00e9llo w\u00f6rld ", "\u00a0", "\u03a3\u0391\u03a3 ", "\r\n", "\n", "\t", "text%d",
+			"<br/>", "<noscript>ns</noscript>", "<svg width=\"1\"><g/></svg>", "<img src=\"x\" alt=\"a>b\">", "\u00e9",
+			"o\u0308", " & ", "a;b", "_" };
+
+	/** Element names given to {@link HtmlCleaner#stripElement(String, String)}. */
+	private static final String[] NAMES = { "head", "style", "script", "noscript", "svg", "b", "HEAD", "a" };
+
+	/** Most differences printed. */
+	private static final int SHOWN = 5;
+
+	/** The page links are resolved against. */
+	private static final String BASE = "http://localhost/dir/index.html";
+
+	/** Number of differences printed so far. */
+	private static int printed = 0;
+
+	/**
+	 * Runs the checks.
+	 *
+	 * @param args the seed and the number of inputs, both optional
+	 * @throws MalformedURLException if the base url is invalid
+	 */
+	public static void main(String[] args) throws MalformedURLException {
+
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		URL base = new URL(BASE);
+		Random random = new Random(seed);
+
+		int cleaner = 0;
+		int tokenizer = 0;
+
+		for (int i = 0; i < count; i++) {
+
+			cleaner += checkCleaner(generate(random, MALFORMED, 40), NAMES[random.nextInt(NAMES.length)]);
+			tokenizer += checkTokenizer(generate(random, MALFORMED, 40), base, random);
+			tokenizer += checkTokenizer(generate(random, WELL_FORMED, 300), base, random);
+		}
+
+		System.out.printf("HtmlCleaner: %d differences in %d inputs%n", cleaner, count);
+		System.out.printf("HtmlTokenizer: %d differences in %d inputs%n", tokenizer, count * 2);
+
+		if (cleaner + tokenizer > 0) {
+
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Joins random fragments into HTML.
+	 *
+	 * @param random    the random numbers
+	 * @param fragments the fragments to choose from
+	 * @param most      one more than the most fragments to join
+	 * @return the HTML
+	 */
+	static String generate(Random random, String[] fragments, int most) {
+
+		StringBuilder html = new StringBuilder();
+		int length = random.nextInt(most);
+
+		for (int i = 0; i < length; i++) {
+			html.append(String.format(fragments[random.nextInt(fragments.length)], random.nextInt(50)));
+		}
+
+		return html.toString();
+	}
+
+	/**
+	 * Compares each method of the cleaner with its regular expression.
+	 *
+	 * @param html the HTML
+	 * @param name the element name to strip
+	 * @return the number of methods that differ
+	 */
+	private static int checkCleaner(String html, String name) {
+
+		int differences = 0;
+
+		differences += compare("stripHtml", html, RegexHtmlCleaner.stripHtml(html), HtmlCleaner.stripHtml(html));
+		differences += compare("stripBlockElements", html, RegexHtmlCleaner.stripBlockElements(html),
+				HtmlCleaner.stripBlockElements(html));
+		differences += compare("stripComments", html, RegexHtmlCleaner.stripComments(html),
+				HtmlCleaner.stripComments(html));
+		differences += compare("stripTags", html, RegexHtmlCleaner.stripTags(html), HtmlCleaner.stripTags(html));
+		differences += compare("stripEntities", html, RegexHtmlCleaner.stripEntities(html),
+				HtmlCleaner.stripEntities(html));
+		differences += compare("stripElement " + name, html, RegexHtmlCleaner.stripElement(html, name),
+				HtmlCleaner.stripElement(html, name));
+
+		return differences;
+	}
+
+	/**
+	 * Compares the words and links of the tokenizer, given the HTML in random
+	 * chunks, with those of the cleaned text and {@link LinkParser}. Line breaks
+	 * are joined the way the crawler read pages before it streamed them.
+	 *
+	 * @param html   the HTML
+	 * @param base   the page links are resolved against
+	 * @param random the random numbers
+	 * @return 1 if the words or links differ, otherwise 0
+	 */
+	private static int checkTokenizer(String html, URL base, Random random) {
+
+		String joined = html.replace("\r\n", "\n").replace('\r', '\n');
+		List<String> expectedWords = Arrays.asList(TextParser.parse(RegexHtmlCleaner.stripHtml(joined)));
+		List<URL> expectedLinks = LinkParser.listLinks(base, joined);
+
+		ArrayList<String> words = new ArrayList<>();
+		ArrayList<URL> links = new ArrayList<>();
+		HtmlTokenizer tokenizer = new HtmlTokenizer(words::add, link -> {
+
+			try {
+
+				links.add(LinkParser.clean(new URL(base, link)));
+
+			} catch (MalformedURLException e) {
+				// Not a link that can be followed
+			}
+		});
+
+		int start = 0;
+
+		while (start < html.length()) {
+
+			int end = Math.min(html.length(), start + 1 + random.nextInt(7));
+			tokenizer.write(html.substring(start, end));
+			start = end;
+		}
+
+		tokenizer.close();
+
+		return compare("HtmlTokenizer words", html, expectedWords.toString(), words.toString())
+				+ compare("HtmlTokenizer links", html, expectedLinks.toString(), links.toString()) > 0 ? 1 : 0;
+	}
+
+	/**
+	 * Compares an output with the expected one, printing the first few
+	 * differences.
+	 *
+	 * @param what     what was checked
+	 * @param html     the HTML
+	 * @param expected the expected output
+	 * @param actual   the output
+	 * @return 1 if they differ, otherwise 0
+	 */
+	private static int compare(String what, String html, String expected, String actual) {
+
+		if (expected.equals(actual)) {
+
+			return 0;
+		}
+
+		if (printed++ < SHOWN) {
+
+			System.out.println(what + ": " + escape(html));
+			System.out.println("  expected: " + escape(expected));
+			System.out.println("  actual:   " + escape(actual));
+		}
+
+		return 1;
+	}
+
+	/**
+	 * Shows line breaks so an input fits on one line.
+	 *
+	 * @param text the text
+	 * @return the escaped text
+	 */
+	private static String escape(String text) {
+		return text.replace("\n", "\\n").replace("\r", "\\r");
+	}
+}
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Measures how long {@link MultithreadIndexBuilder} takes to build an index of
+ * a directory with 1 to 32 threads, into a {@link ThreadSafeInvertedIndex}
+ * behind one lock and into a {@link ShardedInvertedIndex} with a lock for each
+ * shard. The sharded index is built once with a single indexer thread, the way
+ * the driver builds by default, and once with as many indexers as threads, so
+ * that several threads add to it at the same time.
+ *
+ * Run with a directory of text files and optionally the numbers of threads and
+ * shards. Each build is run twice and the fastest time is printed.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see ShardedInvertedIndex
+ */
+public class IndexBuildScalingBenchmark {
+
+	/** Number of times each build is run. */
+	private static final int ROUNDS = 2;
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the directory of text files, then optionally the numbers of
+	 *             threads separated by commas and the number of shards
+	 * @throws IOException if unable to read the text files
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length == 0) {
+
+			System.out.println("Usage: IndexBuildScalingBenchmark directory [threads,...] [shards]");
+			return;
+		}
+
+		Path path = Path.of(args[0]);
+		int[] threads = args.length > 1 ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+				: new int[] { 1, 2, 4, 8, 16, 32 };
+		int shards = args.length > 2 ? Integer.parseInt(args[2]) : ShardedInvertedIndex.DEFAULT_SHARDS;
+
+		System.out.printf("%s, %d CPUs, %d shards%n", path, Runtime.getRuntime().availableProcessors(), shards);
+		System.out.printf("%-8s %12s %12s %16s%n", "threads", "one lock", "sharded", "sharded, t adds");
+
+		for (int count : threads) {
+
+			double locked = Double.MAX_VALUE;
+			double sharded = Double.MAX_VALUE;
+			double parallel = Double.MAX_VALUE;
+
+			for (int round = 0; round < ROUNDS; round++) {
+
+				locked = Math.min(locked, time(path, count, 0, 1));
+				sharded = Math.min(sharded, time(path, count, shards, 1));
+				parallel = Math.min(parallel, time(path, count, shards, count));
+			}
+
+			System.out.printf("%-8d %10.2f s %10.2f s %14.2f s%n", count, locked, sharded, parallel);
+		}
+	}
+
+	/**
+	 * Builds the index of a directory once.
+	 *
+	 * @param path     the directory
+	 * @param threads  the number of threads of the work queue and of parsers
+	 * @param shards   the number of shards, or 0 for one lock
+	 * @param indexers the number of threads adding to the index
+	 * @return the seconds the build took
+	 * @throws IOException if unable to read the text files
+	 */
+	private static double time(Path path, int threads, int shards, int indexers) throws IOException {
+
+		WorkQueue queue = new WorkQueue(threads);
+
+		try {
+
+			ThreadSafeIndexInterface index = shards > 0 ? new ShardedInvertedIndex(shards, false, queue)
+					: new ThreadSafeInvertedIndex(false);
+			long start = System.nanoTime();
+			new MultithreadIndexBuilder(index, queue, 1, threads, indexers).create(path);
+			return (System.nanoTime() - start) / 1e9;
+
+		} finally {
+
+			queue.shutdown();
+		}
+	}
+}
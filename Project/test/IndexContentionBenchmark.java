@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Measures searches of {@link ThreadSafeInvertedIndex} while other threads keep
+ * adding pages to it with {@link ThreadSafeInvertedIndex#addAll(InvertedIndex)},
+ * the way the crawler does while the server answers searches. The same load is
+ * run against an index that only takes a read and write lock, so searches wait
+ * for every write, and against both with no writers at all.
+ *
+ * Run with optional numbers of search threads, writer threads and seconds. The
+ * words are generated, with common words much more common than rare ones, so
+ * the index and the queries look like text.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see ThreadSafeInvertedIndex
+ */
+public class IndexContentionBenchmark {
+
+	/** Number of distinct words. */
+	private static final int VOCABULARY = 50000;
+
+	/** Number of pages in the index before the benchmark starts. */
+	private static final int PAGES = 2000;
+
+	/** Number of words on each page. */
+	private static final int WORDS = 500;
+
+	/** Number of results each search asks for, one page of results. */
+	private static final int RESULTS = 10;
+
+	/** The generated words. */
+	private static final String[] VOCAB = new String[VOCABULARY];
+
+	static {
+
+		for (int i = 0; i < VOCABULARY; i++) {
+			VOCAB[i] = Integer.toString(i * 7919 + 1000, 36);
+		}
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the search threads, writer threads and seconds, all optional
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		int searchers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int writers = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		Random random = new Random(11);
+
+		System.out.printf("%d search threads, %d writer threads, %d pages of %d words, %d s each%n", searchers,
+				writers, PAGES, WORDS, seconds);
+
+		for (int writing : new int[] { 0, writers }) {
+
+			InvertedIndex snapshots = new ThreadSafeInvertedIndex();
+			InvertedIndex locked = new LockedIndex();
+
+			for (int page = 0; page < PAGES; page++) {
+
+				InvertedIndex local = page("base" + page, random);
+				snapshots.addAll(local);
+				locked.addAll(local);
+			}
+
+			run("published snapshot", snapshots, searchers, writing, seconds);
+			run("read/write lock", locked, searchers, writing, seconds);
+		}
+	}
+
+	/**
+	 * Generates a page of words, with word i about i times rarer than the first.
+	 *
+	 * @param location the location of the page
+	 * @param random   the random numbers
+	 * @return the index of the page
+	 */
+	static InvertedIndex page(String location, Random random) {
+
+		InvertedIndex local = new InvertedIndex();
+
+		for (int position = 1; position <= WORDS; position++) {
+			local.add(word(random), location, position);
+		}
+
+		return local;
+	}
+
+	/**
+	 * Picks a random word, with word i about i times rarer than the first.
+	 *
+	 * @param random the random numbers
+	 * @return the word
+	 */
+	static String word(Random random) {
+		return VOCAB[(int) Math.pow(VOCABULARY, random.nextDouble()) - 1];
+	}
+
+	/**
+	 * Runs searches and writes on an index at the same time and prints the
+	 * search throughput and latency and the write throughput.
+	 *
+	 * @param name      the name of the index
+	 * @param index     the index
+	 * @param searchers the number of search threads
+	 * @param writers   the number of writer threads
+	 * @param seconds   how long to run for
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	private static void run(String name, InvertedIndex index, int searchers, int writers, int seconds)
+			throws InterruptedException {
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		long[][] latencies = new long[searchers][];
+		int[] written = new int[writers];
+		ArrayList<Thread> threads = new ArrayList<>();
+
+		for (int i = 0; i < searchers; i++) {
+
+			int searcher = i;
+
+			threads.add(new Thread(() -> {
+
+				Random random = new Random(searcher);
+				long[] times = new long[1 << 16];
+				int count = 0;
+
+				while (running.get()) {
+
+					List<String> queries = Arrays.asList(word(random), word(random));
+					long start = System.nanoTime();
+					index.search(queries, random.nextBoolean(), RESULTS);
+					long time = System.nanoTime() - start;
+
+					if (count == times.length) {
+
+						times = Arrays.copyOf(times, count * 2);
+					}
+
+					times[count++] = time;
+				}
+
+				latencies[searcher] = Arrays.copyOf(times, count);
+			}));
+		}
+
+		for (int i = 0; i < writers; i++) {
+
+			int writer = i;
+
+			threads.add(new Thread(() -> {
+
+				Random random = new Random(100 + writer);
+
+				while (running.get()) {
+
+					index.addAll(page("crawled" + writer + "-" + written[writer], random));
+					written[writer]++;
+				}
+			}));
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+		int pages = Arrays.stream(written).sum();
+
+		System.out.printf("%s, %d writers: %.0f searches/s, latency median %.3f ms, p99 %.3f ms, max %.1f ms, "
+				+ "%.0f pages added/s%n", name, writers, all.length / (double) seconds, percentile(all, 0.5),
+				percentile(all, 0.99), all.length == 0 ? 0 : all[all.length - 1] / 1e6, pages / (double) seconds);
+	}
+
+	/**
+	 * Returns a percentile of sorted latencies.
+	 *
+	 * @param sorted   the latencies in nanoseconds in sorted order
+	 * @param fraction the percentile as a fraction
+	 * @return the latency in milliseconds
+	 */
+	private static double percentile(long[] sorted, double fraction) {
+		return sorted.length == 0 ? 0 : sorted[(int) ((sorted.length - 1) * fraction)] / 1e6;
+	}
+
+	/**
+	 * Index that searches under a read lock and adds under a write lock, so every
+	 * search waits for any write in progress.
+	 */
+	private static class LockedIndex extends InvertedIndex {
+
+		/** The lock. */
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		@Override
+		public void addAll(InvertedIndex local) {
+
+			try {
+
+				lock.writeLock().lock();
+				super.addAll(local);
+
+			} finally {
+
+				lock.writeLock().unlock();
+			}
+		}
+
+		@Override
+		public ArrayList<Result> search(Collection<String> queries, boolean exact, int k) {
+
+			try {
+
+				lock.readLock().lock();
+				return super.search(queries, exact, k);
+
+			} finally {
+
+				lock.readLock().unlock();
+			}
+		}
+	}
+}
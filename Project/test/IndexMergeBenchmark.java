@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the wall-clock time of building an index with
+ * {@link MultithreadIndexBuilder}, which builds into one index per indexer
+ * thread and merges them in pairs at the end, against building every file into
+ * its own index and adding each one to the shared index as soon as it is read,
+ * the way the builder used to. For both it measures how long threads waited for
+ * the write lock of the shared index, how long they held it and how many times
+ * they took it.
+ *
+ * Run with a directory of text files and optionally the numbers of threads.
+ * Many small files show the difference best, since every file takes the lock
+ * once when each is added on its own. Each build is run twice and the fastest
+ * is printed.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see MultithreadIndexBuilder
+ */
+public class IndexMergeBenchmark {
+
+	/** Number of times each build is run. */
+	private static final int ROUNDS = 2;
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the directory of text files, then optionally the numbers of
+	 *             threads separated by commas
+	 * @throws IOException if unable to read the text files
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length == 0) {
+
+			System.out.println("Usage: IndexMergeBenchmark directory [threads,...]");
+			return;
+		}
+
+		Path path = Path.of(args[0]);
+		int[] threads = args.length > 1 ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+				: new int[] { 1, 4, 8 };
+		List<Path> files;
+
+		try (Stream<Path> walk = Files.walk(path)) {
+			files = walk.filter(IndexBuilder::isTextFile).sorted().collect(Collectors.toList());
+		}
+
+		System.out.printf("%s, %d files, %d CPUs%n", path, files.size(), Runtime.getRuntime().availableProcessors());
+
+		for (int count : threads) {
+
+			TimedIndex each = null;
+			TimedIndex merged = null;
+
+			for (int round = 0; round < ROUNDS; round++) {
+
+				TimedIndex index = eachFile(files, count);
+				each = each == null || index.wall < each.wall ? index : each;
+
+				index = merged(path, count);
+				merged = merged == null || index.wall < merged.wall ? index : merged;
+			}
+
+			System.out.printf("%2d threads, each file added: %s%n", count, each);
+			System.out.printf("%2d threads, merged in pairs: %s%n", count, merged);
+		}
+	}
+
+	/**
+	 * Builds every file into its own index on the work queue and adds it to the
+	 * shared index right away.
+	 *
+	 * @param files   the text files
+	 * @param threads the number of threads
+	 * @return the index, with its times
+	 */
+	private static TimedIndex eachFile(List<Path> files, int threads) {
+
+		TimedIndex index = new TimedIndex();
+		WorkQueue queue = new WorkQueue(threads);
+		long start = System.nanoTime();
+
+		for (Path file : files) {
+
+			queue.execute(() -> {
+
+				try {
+
+					InvertedIndex local = new InvertedIndex();
+					IndexBuilder.addToIndex(file, local);
+					index.addAll(local);
+
+				} catch (IOException e) {
+
+					System.out.println("Unable to read " + file);
+				}
+			});
+		}
+
+		queue.finish();
+		index.wall = System.nanoTime() - start;
+		queue.shutdown();
+		return index;
+	}
+
+	/**
+	 * Builds the index with {@link MultithreadIndexBuilder}, with as many parsers
+	 * and indexers as threads.
+	 *
+	 * @param path    the directory
+	 * @param threads the number of threads
+	 * @return the index, with its times
+	 * @throws IOException if unable to read the text files
+	 */
+	private static TimedIndex merged(Path path, int threads) throws IOException {
+
+		TimedIndex index = new TimedIndex();
+		WorkQueue queue = new WorkQueue(threads);
+
+		try {
+
+			long start = System.nanoTime();
+			new MultithreadIndexBuilder(index, queue, 1, threads, threads).create(path);
+			index.wall = System.nanoTime() - start;
+
+		} finally {
+
+			queue.shutdown();
+		}
+
+		return index;
+	}
+
+	/**
+	 * Index that times its writes. Every write first takes a lock of its own, so
+	 * writers wait there instead of on the write lock of the index, and the time
+	 * each waits for that lock is the time it would have waited for the write
+	 * lock. Nothing reads the index while it is built.
+	 */
+	private static class TimedIndex extends ThreadSafeInvertedIndex {
+
+		/** The lock every write takes first. */
+		private final ReentrantLock writing = new ReentrantLock();
+
+		/** Nanoseconds writers waited for the lock, summed over threads. */
+		private long waited;
+
+		/** Nanoseconds the lock was held. */
+		private long held;
+
+		/** Number of writes. */
+		private int writes;
+
+		/** Nanoseconds the whole build took. */
+		private long wall;
+
+		@Override
+		public void addAll(InvertedIndex local) {
+
+			long start = System.nanoTime();
+			writing.lock();
+
+			try {
+
+				long locked = System.nanoTime();
+				super.addAll(local);
+				waited += locked - start;
+				held += System.nanoTime() - locked;
+				writes++;
+
+			} finally {
+
+				writing.unlock();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("wall %.2f s, lock wait %.2f s, lock held %.2f s, %d writes", wall / 1e9,
+					waited / 1e9, held / 1e9, writes);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Cleans simple, validating HTML 4/5 into plain text with a regular expression
+ * for each kind of removal. This is how {@link HtmlCleaner} worked before it
+ * stripped the HTML in one scan, kept as the reference its output must match.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see HtmlCleanerFuzz
+ * @see HtmlCleanerBenchmark
+ */
+public class RegexHtmlCleaner {
+
+	/**
+	 * Removes all HTML tags and certain block elements from the provided text.
+	 * The block elements removed include: head, style, script, noscript, and svg.
+	 *
+	 * @param html the HTML to strip tags and elements from
+	 * @return text clean of any HTML tags and certain block elements
+	 */
+	public static String stripHtml(String html) {
+		html = stripBlockElements(html);
+		html = stripTags(html);
+		html = stripEntities(html);
+		return html;
+	}
+
+	/**
+	 * Removes comments and certain block elements from the provided html. The block
+	 * elements removed include: head, style, script, noscript, and svg.
+	 *
+	 * @param html the HTML to strip comments and block elements from
+	 * @return text clean of any comments and certain HTML block elements
+	 */
+	public static String stripBlockElements(String html) {
+		html = stripComments(html);
+		html = stripElement(html, "head");
+		html = stripElement(html, "style");
+		html = stripElement(html, "script");
+		html = stripElement(html, "noscript");
+		html = stripElement(html, "svg");
+		return html;
+	}
+
+	// THE FOLLOWING REPLACE WITH THE EMPTY STRING
+
+	/**
+	 * Replaces all HTML entities with an empty string. For example,
+	 * "2010&ndash;2012" will become "20102012".
+	 *
+	 * @param html text including HTML entities to remove
+	 * @return text without any HTML entities
+	 */
+	public static String stripEntities(String html) {
+		return html.replaceAll("&[^\\s]*?;", "");
+	}
+
+	/**
+	 * Replaces all HTML tags with an empty string. For example, "A<b>B</b>C" will
+	 * become "ABC".
+	 *
+	 * @param html text including HTML tags to remove
+	 * @return text without any HTML tags
+	 */
+	public static String stripTags(String html) {
+		return html.replaceAll("(?si)<.*?>", "");
+	}
+
+	// THE FOLLOWING REPLACE WITH A SINGLE SPACE
+
+	/**
+	 * Replaces all HTML comments with a single space. For example, "A<!-- B -->C"
+	 * will become "A C".
+	 *
+	 * @param html text including HTML comments to remove
+	 * @return text without any HTML comments
+	 */
+	public static String stripComments(String html) {
+		return html.replaceAll("(?s)<!--(.*?)-->", " ");
+	}
+
+	/**
+	 * Replaces everything between the element tags and the element tags
+	 * themselves with a single space. For example, consider the html code: *
+	 *
+	 * <pre>
+	 * &lt;style type="text/css"&gt;body { font-size: 10pt; }&lt;/style&gt;
+	 * </pre>
+	 *
+	 * If removing the "style" element, all of the above code will be removed, and
+	 * replaced with a single space.
+	 *
+	 * @param html text including HTML elements to remove
+	 * @param name name of the HTML element (like "style" or "script")
+	 * @return text without that HTML element
+	 */
+	public static String stripElement(String html, String name) {
+		return html.replaceAll("(?si)<"+name+"\\b.*?>(.*?)</"+name+">", " ");
+	}
+}
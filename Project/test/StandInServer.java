@@ -0,0 +1,425 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local web server that stands in for a real site when timing the crawler. It
+ * serves generated HTML pages that link to each other, with keep-alive
+ * connections, and waits a fixed time before answering each request to stand
+ * in for the latency of the network. Some links redirect to a page, and some
+ * lead to plain text that the crawler has to skip.
+ *
+ * Pages are /p[n].html for n from 0 to the number of pages, redirects are
+ * /r[n] and plain text is /x[n].txt. The same page always has the same
+ * content and links. Several servers on different ports can stand in for
+ * several hosts, with some of the links of each leading to the others, and each
+ * records the most requests it was answering at once and the shortest time
+ * between two requests, to check how politely it was crawled.
+ *
+ * Run with an optional port, number of pages, latency in milliseconds, number
+ * of hosts and percent of links to the same host to serve until stopped.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see CrawlBenchmark
+ * @see HostCrawlBenchmark
+ */
+public class StandInServer implements AutoCloseable {
+
+	/** Number of paragraphs on each page. */
+	private static final int PARAGRAPHS = 40;
+
+	/** Number of links on each page. */
+	private static final int LINKS = 6;
+
+	/** The socket accepting connections. */
+	private final ServerSocket server;
+
+	/** Number of pages. */
+	private final int pages;
+
+	/** Milliseconds to wait before answering a request. */
+	private final long latency;
+
+	/** Percent of links to a page of this server rather than another. */
+	private final int same;
+
+	/** The servers that links can lead to, including this one. */
+	private volatile StandInServer[] hosts;
+
+	/** Number of connections accepted. */
+	private final AtomicInteger connections;
+
+	/** Number of requests answered. */
+	private final AtomicInteger requests;
+
+	/** Number of requests being answered. */
+	private final AtomicInteger answering;
+
+	/** Most requests answered at once. */
+	private final AtomicInteger busiest;
+
+	/** Nanoseconds when the last request arrived. */
+	private long arrived;
+
+	/** Fewest nanoseconds between two requests arriving. */
+	private final AtomicLong closest;
+
+	/**
+	 * Starts serving on a port of the local host.
+	 *
+	 * @param port    the port, or 0 for any free port
+	 * @param pages   the number of pages
+	 * @param latency milliseconds to wait before answering a request
+	 * @throws IOException if unable to listen on the port
+	 */
+	public StandInServer(int port, int pages, long latency) throws IOException {
+		this(port, pages, latency, 100);
+	}
+
+	/**
+	 * Starts serving on a port of the local host, with links to other hosts once
+	 * they are given.
+	 *
+	 * @param port    the port, or 0 for any free port
+	 * @param pages   the number of pages
+	 * @param latency milliseconds to wait before answering a request
+	 * @param same    percent of links to a page of this server
+	 * @throws IOException if unable to listen on the port
+	 *
+	 * @see #group(int, int, int, long, int)
+	 */
+	private StandInServer(int port, int pages, long latency, int same) throws IOException {
+
+		this.server = new ServerSocket(port, 512, InetAddress.getLoopbackAddress());
+		this.pages = pages;
+		this.latency = latency;
+		this.same = same;
+		this.hosts = new StandInServer[] { this };
+		this.connections = new AtomicInteger();
+		this.requests = new AtomicInteger();
+		this.answering = new AtomicInteger();
+		this.busiest = new AtomicInteger();
+		this.closest = new AtomicLong(Long.MAX_VALUE);
+		this.arrived = 0;
+
+		Thread acceptor = new Thread(this::accept, "stand-in " + server.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Starts several servers standing in for several hosts, whose pages link to
+	 * each other.
+	 *
+	 * @param port    the port of the first server, the others on the following
+	 *                ports, or 0 for any free ports
+	 * @param count   the number of servers
+	 * @param pages   the number of pages of each server
+	 * @param latency milliseconds to wait before answering a request
+	 * @param same    percent of links to a page of the same server
+	 * @return the servers
+	 * @throws IOException if unable to listen on a port
+	 */
+	public static StandInServer[] group(int port, int count, int pages, long latency, int same) throws IOException {
+
+		StandInServer[] group = new StandInServer[count];
+
+		try {
+
+			for (int i = 0; i < count; i++) {
+				group[i] = new StandInServer(port == 0 ? 0 : port + i, pages, latency, same);
+			}
+
+		} catch (IOException e) {
+
+			for (StandInServer server : group) {
+
+				if (server != null) {
+
+					server.close();
+				}
+			}
+
+			throw e;
+		}
+
+		for (StandInServer server : group) {
+			server.hosts = group;
+		}
+
+		return group;
+	}
+
+	/**
+	 * Serves until stopped.
+	 *
+	 * @param args the port, number of pages, latency in milliseconds, number of
+	 *             hosts and percent of links to the same host, all optional
+	 * @throws IOException if unable to listen on the port
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int pages = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 20;
+		int count = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		int same = args.length > 4 ? Integer.parseInt(args[4]) : 90;
+
+		for (StandInServer server : group(port, count, pages, latency, same)) {
+			System.out.println("Serving " + server.getSeed());
+		}
+	}
+
+	/**
+	 * Returns the URL of the first page.
+	 *
+	 * @return the first page
+	 * @throws IOException if the URL is malformed
+	 */
+	public URL getSeed() throws IOException {
+		return new URL(getBase() + "/p0.html");
+	}
+
+	/**
+	 * Returns the number of connections accepted so far.
+	 *
+	 * @return the number of connections
+	 */
+	public int getConnections() {
+		return connections.get();
+	}
+
+	/**
+	 * Returns the number of requests answered so far.
+	 *
+	 * @return the number of requests
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Returns the most requests that were being answered at once.
+	 *
+	 * @return the most requests at once
+	 */
+	public int getBusiest() {
+		return busiest.get();
+	}
+
+	/**
+	 * Returns the fewest milliseconds between two requests arriving.
+	 *
+	 * @return the shortest gap, or -1 if there were fewer than two requests
+	 */
+	public double getClosest() {
+		return closest.get() == Long.MAX_VALUE ? -1 : closest.get() / 1e6;
+	}
+
+	/**
+	 * Counts the connections and requests from zero again.
+	 */
+	public synchronized void reset() {
+
+		connections.set(0);
+		requests.set(0);
+		busiest.set(0);
+		closest.set(Long.MAX_VALUE);
+		arrived = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Returns the scheme, host and port of the server.
+	 *
+	 * @return the start of every URL of the server
+	 */
+	private String getBase() {
+		return "http://127.0.0.1:" + server.getLocalPort();
+	}
+
+	/**
+	 * Accepts connections until the server is closed, each served by its own
+	 * thread.
+	 */
+	private void accept() {
+
+		try {
+
+			while (true) {
+
+				Socket socket = server.accept();
+				connections.incrementAndGet();
+
+				Thread thread = new Thread(() -> serve(socket));
+				thread.setDaemon(true);
+				thread.start();
+			}
+
+		} catch (IOException e) {
+			// Closed
+		}
+	}
+
+	/**
+	 * Answers the requests of a connection until the client closes it.
+	 *
+	 * @param socket the connection
+	 */
+	private void serve(Socket socket) {
+
+		try (socket;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+				OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+
+			String line = null;
+
+			while ((line = in.readLine()) != null && !line.isEmpty()) {
+
+				String path = line.split(" ")[1];
+				boolean close = false;
+
+				while ((line = in.readLine()) != null && !line.isEmpty()) {
+
+					if (line.toLowerCase().startsWith("connection:") && line.toLowerCase().contains("close")) {
+
+						close = true;
+					}
+				}
+
+				arrive();
+
+				try {
+
+					Thread.sleep(latency);
+					requests.incrementAndGet();
+
+				} finally {
+
+					answering.decrementAndGet();
+				}
+
+				String head;
+				byte[] body = new byte[0];
+
+				if (path.startsWith("/r")) {
+
+					head = "HTTP/1.1 302 Found\r\nLocation: " + getBase() + "/p" + path.substring(2) + ".html\r\n";
+
+				} else {
+
+					body = page(number(path), path.startsWith("/x")).getBytes(StandardCharsets.UTF_8);
+					head = "HTTP/1.1 200 OK\r\nContent-Type: "
+							+ (path.startsWith("/x") ? "text/plain" : "text/html; charset=utf-8") + "\r\n";
+				}
+
+				head += "Content-Length: " + body.length + "\r\n" + (close ? "Connection: close\r\n" : "") + "\r\n";
+				out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+				out.write(body);
+				out.flush();
+
+				if (close) {
+
+					return;
+				}
+			}
+
+		} catch (IOException | InterruptedException e) {
+			// The client went away
+		}
+	}
+
+	/**
+	 * Records a request arriving, how many are being answered and how long since
+	 * the last one arrived.
+	 */
+	private synchronized void arrive() {
+
+		long now = System.nanoTime();
+
+		if (arrived != 0) {
+
+			closest.accumulateAndGet(now - arrived, Math::min);
+		}
+
+		arrived = now;
+		busiest.accumulateAndGet(answering.incrementAndGet(), Math::max);
+	}
+
+	/**
+	 * Returns the number in a path, or 0 if there is none.
+	 *
+	 * @param path the path
+	 * @return the number of the page
+	 */
+	private static int number(String path) {
+
+		try {
+
+			return Integer.parseInt(path.replaceAll("[^0-9]", ""));
+
+		} catch (NumberFormatException e) {
+
+			return 0;
+		}
+	}
+
+	/**
+	 * Generates the content of a page.
+	 *
+	 * @param page the number of the page
+	 * @param text whether the page is plain text
+	 * @return the content
+	 */
+	private String page(int page, boolean text) {
+
+		Random random = new Random(page);
+		StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head>\r\n<body>\r\n");
+
+		for (int i = 0; i < PARAGRAPHS; i++) {
+
+			html.append("<p>word").append(random.nextInt(500)).append(" text of page number ").append(page)
+					.append(" lorem ipsum dolor</p>\r\n");
+		}
+
+		StandInServer[] hosts = this.hosts;
+
+		for (int i = 0; i < LINKS; i++) {
+
+			int target = random.nextInt(pages);
+			String link = random.nextInt(5) == 0 ? "/r" + target
+					: random.nextInt(20) == 0 ? "/x" + target + ".txt" : "/p" + target + ".html";
+
+			if (same < 100 && random.nextInt(100) >= same) {
+				// A link to any of the hosts, this one included
+				link = hosts[random.nextInt(hosts.length)].getBase() + link;
+			}
+
+			html.append("<a href=\"").append(link).append("\">link</a>\r\n");
+		}
+
+		html.append("<script>var s = \"<p>hidden").append(page).append("</p>\";</script><!-- comment word")
+				.append(page).append(" --></body></html>\r\n");
+
+		return text ? html.toString().replaceAll("<[^>]*>", " ") : html.toString();
+	}
+}
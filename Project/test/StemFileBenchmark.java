@@ -0,0 +1,181 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Measures {@link TextFileStemmer#uniqueStems(Path)} on a large generated
+ * file, with the time, throughput and the most heap used while it runs. On a
+ * few small files it also compares against the way the method used to read a
+ * file, adding every line to one string before parsing it, which takes time
+ * quadratic in the size of the file and keeps the whole file in memory.
+ *
+ * Run with an optional size of the large file in megabytes and directory of
+ * text files whose lines make up the generated files, otherwise the lines are
+ * made of the words of {@link IndexContentionBenchmark}. Run with a small heap,
+ * such as -Xmx256m, to see that the file never has to fit in memory. The
+ * generated files are deleted afterwards.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see TextFileStemmer
+ */
+public class StemFileBenchmark {
+
+	/** Sizes in megabytes of the files read both ways. */
+	private static final int[] SMALL = { 1, 2, 4 };
+
+	/** Number of generated lines to pick from. */
+	private static final int LINES = 10000;
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the size in megabytes of the large file and a directory of
+	 *             text files, both optional
+	 * @throws IOException if unable to write or read the files
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		List<String> lines;
+
+		if (args.length > 1) {
+
+			lines = TextParserFuzz.readLines(Path.of(args[1]));
+
+		} else {
+
+			Random random = new Random(17);
+			String[] generated = new String[LINES];
+
+			for (int i = 0; i < LINES; i++) {
+
+				StringBuilder line = new StringBuilder();
+
+				for (int j = random.nextInt(15); j >= 0; j--) {
+					line.append(IndexContentionBenchmark.word(random)).append(' ');
+				}
+
+				generated[i] = line.toString();
+			}
+
+			lines = List.of(generated);
+		}
+
+		System.out.printf("Max heap %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+
+		for (int size : SMALL) {
+
+			Path file = generate(lines, size);
+
+			try {
+
+				long start = System.nanoTime();
+				TreeSet<String> concatenated = concatenated(file);
+				long middle = System.nanoTime();
+				TreeSet<String> streamed = TextFileStemmer.uniqueStems(file);
+				long end = System.nanoTime();
+
+				System.out.printf("%d MB: whole text %.2f s, line by line %.2f s, %s%n", size, (middle - start) / 1e9,
+						(end - middle) / 1e9, concatenated.equals(streamed) ? "same stems" : "DIFFERENT STEMS");
+
+			} finally {
+
+				Files.delete(file);
+			}
+		}
+
+		Path file = generate(lines, megabytes);
+
+		try {
+
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				pool.resetPeakUsage();
+			}
+
+			long start = System.nanoTime();
+			TreeSet<String> stems = TextFileStemmer.uniqueStems(file);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long peak = 0;
+
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+
+				if (pool.getType() == MemoryType.HEAP) {
+
+					peak += pool.getPeakUsage().getUsed();
+				}
+			}
+
+			System.out.printf("%d MB: line by line %.1f s, %.1f MB/s, %d stems, peak heap %d MB%n", megabytes, seconds,
+					megabytes / seconds, stems.size(), peak >> 20);
+
+		} finally {
+
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Writes random lines to a temporary file until it reaches a size.
+	 *
+	 * @param lines     the lines to pick from
+	 * @param megabytes the size of the file in megabytes
+	 * @return the file
+	 * @throws IOException if unable to write the file
+	 */
+	private static Path generate(List<String> lines, int megabytes) throws IOException {
+
+		Path file = Files.createTempFile("stems", ".txt");
+		Random random = new Random(megabytes);
+		long remaining = (long) megabytes << 20;
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+
+			while (remaining > 0) {
+
+				String line = lines.get(random.nextInt(lines.size()));
+				writer.write(line);
+				writer.newLine();
+				remaining -= line.length() + 1;
+			}
+		}
+
+		return file;
+	}
+
+	/**
+	 * Finds the unique stems of a file the way {@link TextFileStemmer} used to,
+	 * by adding every line to one string and parsing that.
+	 *
+	 * @param file the file
+	 * @return the stems
+	 * @throws IOException if unable to read the file
+	 */
+	private static TreeSet<String> concatenated(Path file) throws IOException {
+
+		String text = "";
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+				text += line + " ";
+			}
+		}
+
+		return TextFileStemmer.uniqueStems(text);
+	}
+}
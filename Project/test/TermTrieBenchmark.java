@@ -0,0 +1,211 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures how long it takes to find every word that starts with a prefix in
+ * {@link TermTrie#forEachPrefixed(String, java.util.function.IntConsumer)},
+ * against scanning {@link TreeMap#tailMap(Object)} until a word no longer
+ * starts with the prefix, the way the term dictionary was searched before. The
+ * prefixes are the starts of words of the index, from one to five characters,
+ * and both ways must find the same terms.
+ *
+ * Run with an optional directory of text files to index, otherwise the index is
+ * generated the same way as in {@link IndexContentionBenchmark}. Each prefix
+ * length is timed after a warm up, and a whole partial search is timed too.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see TermTrie
+ */
+public class TermTrieBenchmark {
+
+	/** Nanoseconds each case is run for. */
+	private static final long DURATION = 2_000_000_000L;
+
+	/** Number of prefixes of each length. */
+	private static final int PREFIXES = 20000;
+
+	/** Lengths of the prefixes. */
+	private static final int[] LENGTHS = { 1, 2, 3, 5 };
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the directory of text files, optional
+	 * @throws IOException if unable to read the text files
+	 */
+	public static void main(String[] args) throws IOException {
+
+		Random random = new Random(7);
+		InvertedIndex index = new InvertedIndex();
+
+		if (args.length > 0) {
+
+			new IndexBuilder(index).create(Path.of(args[0]));
+
+		} else {
+
+			for (int page = 0; page < 2000; page++) {
+				index.addAll(IndexContentionBenchmark.page("page" + page, random));
+			}
+		}
+
+		TreeMap<String, Integer> tree = new TreeMap<>();
+		TermTrie trie = new TermTrie();
+		int term = 0;
+
+		for (String word : index.getWords()) {
+
+			tree.put(word, term);
+			trie.add(word, term);
+			term++;
+		}
+
+		ArrayList<String> words = new ArrayList<>(tree.keySet());
+		System.out.printf("%d terms%n", words.size());
+
+		for (int length : LENGTHS) {
+
+			String[] prefixes = new String[PREFIXES];
+
+			for (int i = 0; i < prefixes.length; i++) {
+
+				String word = words.get(random.nextInt(words.size()));
+				prefixes[i] = word.substring(0, Math.min(length, word.length()));
+			}
+
+			long[] scanned = { 0, 0 };
+			long[] walked = { 0, 0 };
+			long matches = 0;
+
+			for (String prefix : prefixes) {
+				matches += trie.count(prefix);
+			}
+
+			for (int round = 0; round < 2; round++) {
+				// The first round warms up
+				scanned = time(() -> tailMap(tree, prefixes));
+				walked = time(() -> trie(trie, prefixes));
+			}
+
+			if (scanned[1] != walked[1]) {
+
+				throw new IllegalStateException("The trie found other terms than the tree for prefix length " + length);
+			}
+
+			System.out.printf("prefix length %d, %.1f terms each: tailMap %.2f us, trie %.2f us per prefix%n", length,
+					(double) matches / PREFIXES, scanned[0] / 1e3 / PREFIXES,
+					walked[0] / 1e3 / PREFIXES);
+		}
+
+		ArrayList<List<String>> queries = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+
+			ArrayList<String> query = new ArrayList<>();
+
+			for (int j = 0; j < 3; j++) {
+
+				String word = words.get(random.nextInt(words.size()));
+				query.add(word.substring(0, Math.min(3, word.length())));
+			}
+
+			queries.add(query);
+		}
+
+		long[] searched = { 0, 0 };
+
+		for (int round = 0; round < 2; round++) {
+
+			searched = time(() -> {
+
+				long found = 0;
+
+				for (List<String> query : queries) {
+					found += index.partialSearch(query).size();
+				}
+
+				return found;
+			});
+		}
+
+		System.out.printf("partial search of 3 prefixes of 3 characters: %.1f us per search%n",
+				searched[0] / 1e3 / queries.size());
+	}
+
+	/**
+	 * Finds the terms of every prefix by scanning the tail of a sorted map.
+	 *
+	 * @param tree     the sorted map from word to term
+	 * @param prefixes the prefixes
+	 * @return the sum of the terms found, to compare with the trie
+	 */
+	private static long tailMap(TreeMap<String, Integer> tree, String[] prefixes) {
+
+		long sum = 0;
+
+		for (String prefix : prefixes) {
+
+			for (Map.Entry<String, Integer> entry : tree.tailMap(prefix).entrySet()) {
+
+				if (!entry.getKey().startsWith(prefix)) {
+
+					break;
+				}
+
+				sum += entry.getValue();
+			}
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Finds the terms of every prefix by walking the trie.
+	 *
+	 * @param trie     the trie
+	 * @param prefixes the prefixes
+	 * @return the sum of the terms found, to compare with the tree
+	 */
+	private static long trie(TermTrie trie, String[] prefixes) {
+
+		long[] sum = { 0 };
+
+		for (String prefix : prefixes) {
+			trie.forEachPrefixed(prefix, term -> sum[0] += term);
+		}
+
+		return sum[0];
+	}
+
+	/**
+	 * Runs a task over and over for a few seconds, at least once.
+	 *
+	 * @param task the task, returning a checksum of what it found
+	 * @return the nanoseconds of one run on average and the checksum of one run
+	 */
+	private static long[] time(LongSupplier task) {
+
+		long start = System.nanoTime();
+		long sum = 0;
+		int runs = 0;
+
+		do {
+
+			sum = task.getAsLong();
+			runs++;
+
+		} while (System.nanoTime() - start < DURATION);
+
+		return new long[] { (System.nanoTime() - start) / runs, sum };
+	}
+}
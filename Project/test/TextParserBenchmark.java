@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the throughput and allocation of
+ * {@link TextParser#parse(String, java.util.Collection)} against
+ * {@link TextParser#split(String)} applied to {@link TextParser#clean(String)},
+ * on plain ASCII lines, on the mixed-script lines of {@link TextParserFuzz} and
+ * optionally on the lines of a directory of text files.
+ *
+ * Run with an optional directory. Each case is run for a few seconds after a
+ * warm up, and the best of the runs is printed.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see TextParserFuzz
+ */
+public class TextParserBenchmark {
+
+	/** Nanoseconds each case is run for. */
+	private static final long DURATION = 3_000_000_000L;
+
+	/** Number of times each case is run. */
+	private static final int ROUNDS = 2;
+
+	/** Number of generated lines. */
+	private static final int LINES = 20000;
+
+	/** Words of the plain ASCII lines. */
+	private static final String[] ASCII = { "the", "Index", "of", "words", "and", "their", "positions,", "in",
+			"files", "3", "times", "(or", "more)", "don't", "e-mail", "SEARCH", "engine." };
+
+	/** The thread statistics, for allocation. */
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the directory of text files, optional
+	 * @throws IOException if unable to read the text files
+	 */
+	public static void main(String[] args) throws IOException {
+
+		Random random = new Random(3);
+		ArrayList<String> ascii = new ArrayList<>();
+		ArrayList<String> mixed = new ArrayList<>();
+
+		for (int i = 0; i < LINES; i++) {
+
+			StringBuilder line = new StringBuilder();
+			int length = random.nextInt(20);
+
+			for (int j = 0; j < length; j++) {
+				line.append(ASCII[random.nextInt(ASCII.length)]).append(' ');
+			}
+
+			ascii.add(line.toString());
+			mixed.add(TextParserFuzz.generate(random));
+		}
+
+		run("ASCII lines", ascii);
+		run("mixed-script lines", mixed);
+
+		if (args.length > 0) {
+
+			run(args[0], TextParserFuzz.readLines(Path.of(args[0])));
+		}
+	}
+
+	/**
+	 * Prints the time and memory both parsers take on some lines.
+	 *
+	 * @param name  the name of the lines
+	 * @param lines the lines
+	 */
+	private static void run(String name, List<String> lines) {
+
+		long chars = lines.stream().mapToLong(String::length).sum();
+
+		time(lines, true);
+		time(lines, false);
+
+		double[] regex = { Double.MAX_VALUE, 0, 0 };
+		double[] pass = { Double.MAX_VALUE, 0, 0 };
+
+		for (int round = 0; round < ROUNDS; round++) {
+
+			double[] time = time(lines, true);
+			regex = time[0] < regex[0] ? time : regex;
+
+			time = time(lines, false);
+			pass = time[0] < pass[0] ? time : pass;
+		}
+
+		System.out.printf("%s, %d lines, %d KB, %.0f tokens:%n", name, lines.size(), chars >> 10, pass[2]);
+		print("regex", regex, chars, lines.size());
+		print("single pass", pass, chars, lines.size());
+	}
+
+	/**
+	 * Prints the time and memory one parser took.
+	 *
+	 * @param name  the name of the parser
+	 * @param time  the milliseconds, bytes allocated and tokens of one run
+	 * @param chars the number of characters of the lines
+	 * @param lines the number of lines
+	 */
+	private static void print(String name, double[] time, long chars, int lines) {
+		System.out.printf("  %-12s %8.1f ms, %5.1f MB/s, %5.1f ns/token, %5.0f bytes/line%n", name, time[0],
+				chars / 1e3 / time[0], time[0] * 1e6 / time[2], time[1] / lines);
+	}
+
+	/**
+	 * Parses all lines over and over for a few seconds, at least once.
+	 *
+	 * @param lines the lines
+	 * @param regex whether to clean and split with the regular expressions,
+	 *              otherwise the lines are parsed in a single pass into a reused
+	 *              list
+	 * @return the milliseconds and bytes allocated to parse all lines once on
+	 *         average, and the number of tokens
+	 */
+	private static double[] time(List<String> lines, boolean regex) {
+
+		long thread = Thread.currentThread().getId();
+		long allocated = THREADS.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		ArrayList<String> words = new ArrayList<>();
+		long tokens = 0;
+		int runs = 0;
+
+		do {
+
+			for (String line : lines) {
+
+				if (regex) {
+
+					tokens += TextParser.split(TextParser.clean(line)).length;
+
+				} else {
+
+					words.clear();
+					TextParser.parse(line, words);
+					tokens += words.size();
+				}
+			}
+
+			runs++;
+
+		} while (System.nanoTime() - start < DURATION);
+
+		double time = (System.nanoTime() - start) / 1e6 / runs;
+		return new double[] { time, (THREADS.getThreadAllocatedBytes(thread) - allocated) / (double) runs,
+				(double) tokens / runs };
+	}
+}
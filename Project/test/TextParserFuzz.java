@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks that {@link TextParser#parse(String, java.util.Collection)} gives the
+ * same tokens as {@link TextParser#split(String)} applied to
+ * {@link TextParser#clean(String)}, the regular expressions the single pass
+ * replaced. Lines are made of mixed-script words with combining marks, final
+ * sigma, case mappings that change length, unusual whitespace and random code
+ * points, then every code point is checked alone and between letters, and some
+ * lines are checked again under default locales that lower case differently.
+ *
+ * Run with an optional seed, number of lines and directory of text files whose
+ * lines are checked too. The first few differences are printed, and the exit
+ * status is 1 if there were any.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see TextParserBenchmark
+ */
+public class TextParserFuzz {
+
+	/** Words and pieces of words in several scripts. */
+	static final String[] WORDS = { "hello", "World", "caf\u00e9", "cafe\u0301", "nai\u0308ve", "o\u0308\u0301",
+			"Stra\u00dfe", "\u0130stanbul", "\u0131s\u0131k", "\u039f\u0394\u03a5\u03a3\u03a3\u0395\u03a5\u03a3",
+			"\u03c3\u03bf\u03c6\u03cc\u03c2", "\u03a3", "\u03b1\u0345", "\u1f08", "\u041f\u0440\u0438\u0432\u0435\u0442",
+			"\u0439", "\u0438\u0306", "\u4e2d\u6587", "\u65e5\u672c\u8a9e", "\u0645\u0631\u062d\u0628\u0627",
+			"\u05e9\u05dc\u05d5\u05dd", "\u0939\u093f\u0928\u094d\u0926\u0940", "\u0e20\u0e32\u0e29\u0e32",
+			"\ufb01le", "\u01c5", "\u1e9e", "\u212a", "\ud835\udc00bc", "\ud83d\ude00", "x\u20dd", "a\u0332\u0332",
+			"\u00bd", "\u0663\u0664", "don't", "e-mail", "3rd", "\u2160", "\u24b6", "\u02b0", "\u3005", "\u00aa" };
+
+	/** Whitespace, punctuation and other characters between words. */
+	static final String[] BETWEEN = { " ", "  ", "\t", "\n", "\u000B", "\f", "\r", "\u001c", "\u001f", "\u0085",
+			"\u00a0", "\u1680", "\u2007", "\u2028", "\u202f", "\u3000", "\u200b", "\ufeff", ", ", ". ", "-", "_",
+			"'", "\u0301", "\u0345", "\ud800", "\udc00", "" };
+
+	/** Default locales whose lower casing differs from the root locale. */
+	private static final String[] LOCALES = { "tr", "az", "lt", "el", "nl" };
+
+	/** Most differences printed. */
+	private static final int SHOWN = 5;
+
+	/** Number of differences printed so far. */
+	private static int printed = 0;
+
+	/**
+	 * Runs the checks.
+	 *
+	 * @param args the seed, number of lines and directory of text files, all
+	 *             optional
+	 * @throws IOException if unable to read the text files
+	 */
+	public static void main(String[] args) throws IOException {
+
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		Random random = new Random(seed);
+
+		int lines = 0;
+		int differences = 0;
+
+		if (args.length > 2) {
+
+			for (String line : readLines(Path.of(args[2]))) {
+
+				differences += check(line);
+				lines++;
+			}
+
+			System.out.printf("Text files: %d differences in %d lines%n", differences, lines);
+		}
+
+		int generated = 0;
+
+		for (int i = 0; i < count; i++) {
+			generated += check(generate(random));
+		}
+
+		System.out.printf("Mixed scripts: %d differences in %d lines%n", generated, count);
+
+		int single = 0;
+
+		for (int c = 0; c <= Character.MAX_CODE_POINT; c++) {
+
+			String code = new String(Character.toChars(c));
+			single += check(code) + check("a" + code + "B") + check(code + "\u03a3 x");
+		}
+
+		System.out.printf("Code points: %d differences in %d lines%n", single, (Character.MAX_CODE_POINT + 1) * 3);
+
+		Locale initial = Locale.getDefault();
+		int localized = 0;
+
+		for (String locale : LOCALES) {
+
+			Locale.setDefault(new Locale(locale));
+
+			for (int i = 0; i < count / 10; i++) {
+				localized += check(generate(random) + " I\u0130i\u0131J\u00cc");
+			}
+		}
+
+		Locale.setDefault(initial);
+		System.out.printf("Default locales %s: %d differences in %d lines%n", Arrays.toString(LOCALES), localized,
+				count / 10 * LOCALES.length);
+
+		if (differences + generated + single + localized > 0) {
+
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reads the lines of every file under a directory.
+	 *
+	 * @param directory the directory
+	 * @return the lines
+	 * @throws IOException if unable to read a file
+	 */
+	static List<String> readLines(Path directory) throws IOException {
+
+		ArrayList<String> lines = new ArrayList<>();
+		List<Path> files;
+
+		try (Stream<Path> walk = Files.walk(directory)) {
+			files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+
+		for (Path file : files) {
+			// Malformed bytes are replaced, the same as any other odd character
+			lines.addAll(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).lines()
+					.collect(Collectors.toList()));
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Joins random words, separators and code points into a line.
+	 *
+	 * @param random the random numbers
+	 * @return the line
+	 */
+	static String generate(Random random) {
+
+		StringBuilder line = new StringBuilder();
+		int length = random.nextInt(16);
+
+		for (int i = 0; i < length; i++) {
+
+			switch (random.nextInt(6)) {
+
+				case 0:
+					line.appendCodePoint(random.nextInt(Character.MAX_CODE_POINT + 1));
+					break;
+
+				case 1:
+					line.append(BETWEEN[random.nextInt(BETWEEN.length)]);
+					break;
+
+				default:
+					line.append(WORDS[random.nextInt(WORDS.length)]);
+					line.append(BETWEEN[random.nextInt(BETWEEN.length)]);
+			}
+		}
+
+		return line.toString();
+	}
+
+	/**
+	 * Compares the tokens of the single pass with those of the regular
+	 * expressions, printing the first few differences.
+	 *
+	 * @param line the line
+	 * @return 1 if the tokens differ, otherwise 0
+	 */
+	private static int check(String line) {
+
+		List<String> expected = Arrays.asList(TextParser.split(TextParser.clean(line)));
+		ArrayList<String> actual = new ArrayList<>();
+		TextParser.parse(line, actual);
+
+		if (expected.equals(actual)) {
+
+			return 0;
+		}
+
+		if (printed++ < SHOWN) {
+
+			System.out.println("line:     " + escape(line));
+			System.out.println("  expected: " + expected);
+			System.out.println("  actual:   " + actual);
+		}
+
+		return 1;
+	}
+
+	/**
+	 * Shows every character that is not printable ASCII as a Unicode escape, so
+	 * a line fits on one line and its code points can be seen.
+	 *
+	 * @param text the text
+	 * @return the escaped text
+	 */
+	private static String escape(String text) {
+
+		StringBuilder escaped = new StringBuilder();
+
+		for (int i = 0; i < text.length(); i++) {
+
+			char c = text.charAt(i);
+
+			if (c >= ' ' && c < 0x7f) {
+
+				escaped.append(c);
+
+			} else {
+
+				escaped.append(String.format("\\u%04x", (int) c));
+			}
+		}
+
+		return escaped.toString();
+	}
+}
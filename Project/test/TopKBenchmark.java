@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how long a search takes when only the results of one page are
+ * ranked, as {@link SearchServlet} asks for, against sorting every result. The
+ * queries are prefixes and common words, so most searches match most pages,
+ * which is when ranking only a few results matters.
+ *
+ * Run with an optional number of pages. The index is generated the same way as
+ * in {@link IndexContentionBenchmark}, and each search is run for a few seconds
+ * on the index and on its frozen copy.
+ *
+ * @author CS 212 Software Development
+ * @author University of San Francisco
+ * @author Yen Dah Hsiang
+ * @version Fall 2019
+ *
+ * @see SearchableIndex#top(ArrayList, int)
+ */
+public class TopKBenchmark {
+
+	/** Nanoseconds each case is run for. */
+	private static final long DURATION = 2_000_000_000L;
+
+	/** Number of results asked for: one page, the fifth page and one more, all. */
+	private static final int[] RANKS = { SearchServlet.RESULTS_PER_PAGE, 5 * SearchServlet.RESULTS_PER_PAGE + 1,
+			Integer.MAX_VALUE };
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args the number of pages, optional
+	 */
+	public static void main(String[] args) {
+
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		Random random = new Random(13);
+		InvertedIndex index = new InvertedIndex();
+
+		for (int page = 0; page < pages; page++) {
+			index.addAll(IndexContentionBenchmark.page("page" + page, random));
+		}
+
+		FrozenIndex frozen = index.freeze();
+		ArrayList<List<String>> prefixes = new ArrayList<>();
+		ArrayList<List<String>> common = new ArrayList<>();
+
+		for (int i = 0; i < 20; i++) {
+
+			prefixes.add(List.of(IndexContentionBenchmark.word(random).substring(0, 1)));
+			common.add(Arrays.asList(IndexContentionBenchmark.word(random), IndexContentionBenchmark.word(random)));
+		}
+
+		System.out.printf("%d pages, %d words%n", pages, index.getTotalWords());
+
+		for (int round = 0; round < 2; round++) {
+			// The first round warms up
+			for (int k : RANKS) {
+
+				String ranked = k == Integer.MAX_VALUE ? "all sorted" : "k=" + k;
+
+				double partial = time(index, prefixes, false, k);
+				double exact = time(index, common, true, k);
+				double frozenPartial = time(frozen, prefixes, false, k);
+				double frozenExact = time(frozen, common, true, k);
+
+				if (round > 0) {
+
+					System.out.printf("%-10s index: partial %.3f ms, exact %.3f ms; frozen: partial %.3f ms, "
+							+ "exact %.3f ms%n", ranked, partial, exact, frozenPartial, frozenExact);
+				}
+			}
+		}
+
+		System.out.printf("Results per search: partial %.0f, exact %.0f on average%n", average(index, prefixes, false),
+				average(index, common, true));
+	}
+
+	/**
+	 * Runs searches over and over for a few seconds.
+	 *
+	 * @param index   the index to search
+	 * @param queries the queries, searched in turn
+	 * @param exact   whether to search exactly
+	 * @param k       the number of results ranked
+	 * @return the milliseconds one search took on average
+	 */
+	private static double time(SearchableIndex index, List<List<String>> queries, boolean exact, int k) {
+
+		long start = System.nanoTime();
+		int runs = 0;
+
+		do {
+
+			index.search(queries.get(runs % queries.size()), exact, k);
+			runs++;
+
+		} while (System.nanoTime() - start < DURATION);
+
+		return (System.nanoTime() - start) / 1e6 / runs;
+	}
+
+	/**
+	 * Returns the number of results of the queries on average.
+	 *
+	 * @param index   the index to search
+	 * @param queries the queries
+	 * @param exact   whether to search exactly
+	 * @return the average number of results
+	 */
+	private static double average(SearchableIndex index, List<List<String>> queries, boolean exact) {
+
+		long total = 0;
+
+		for (List<String> query : queries) {
+			total += index.search(query, exact).size();
+		}
+
+		return (double) total / queries.size();
+	}
+}